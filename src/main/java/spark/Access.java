@@ -31,4 +31,8 @@ public final class Access {
         request.changeMatch(match);
     }
 
+    public static Validator getValidator(RouteImpl route) {
+        return route.getValidator();
+    }
+
 }
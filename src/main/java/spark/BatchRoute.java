@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark;
+
+import java.util.List;
+
+/**
+ * A route handling a batch of concurrent requests in one invocation, e.g. inserting all rows in one statement. See
+ * {@link Service#microBatch(String, int, long, BatchRoute)}.
+ */
+@FunctionalInterface
+public interface BatchRoute {
+
+    /**
+     * Invoked with the requests collected over the batch window
+     *
+     * @param requests The requests, in arrival order
+     * @return One result per request, in the same order. A result is serialized as a route result, or handled as an
+     * exception thrown by a route if it is an {@link Exception} (e.g. a {@link HaltException})
+     * @throws java.lang.Exception implementation can choose to throw exception, it's then handled for every request
+     */
+    List<?> handle(List<Request> requests) throws Exception;
+
+}
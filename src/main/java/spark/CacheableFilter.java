@@ -0,0 +1,29 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark;
+
+/**
+ * A before filter whose effect is part of the cached response, e.g. setting headers or loading data for the route.
+ * It is skipped when a request is served from the response cache, see {@link Service#cache(String, long)}. Filters
+ * that must run for every request, e.g. authentication, should implement {@link Filter} instead.
+ * <p>
+ * Usage: {@code before("/api/*", (CacheableFilter) (request, response) -> response.type("application/json"));}
+ */
+@FunctionalInterface
+public interface CacheableFilter extends Filter {
+
+}
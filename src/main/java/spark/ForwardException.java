@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark;
+
+/**
+ * Exception used for stopping the execution of a route and forwarding the request to another route, see
+ * {@link Request#forward(String)}.
+ */
+public class ForwardException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String method;
+    private final String path;
+
+    ForwardException(String method, String path) {
+        super(null, null, false, false);
+        this.method = method;
+        this.path = path;
+    }
+
+    /**
+     * @return the HTTP method to forward with, or null to keep the method of the request
+     */
+    public String method() {
+        return method;
+    }
+
+    /**
+     * @return the path to forward to
+     */
+    public String path() {
+        return path;
+    }
+
+}
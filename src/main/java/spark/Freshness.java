@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark;
+
+import spark.utils.ConditionalUtils;
+
+/**
+ * The freshness validators (ETag and/or Last-Modified) of a resource, as returned by a {@link Validator}.
+ */
+public final class Freshness {
+
+    private final String etag;
+    private final long lastModified;
+
+    /**
+     * Creates validators from a version, e.g. a row version or a hash. The version becomes a strong ETag unless it is
+     * already a quoted (possibly weak) entity tag.
+     *
+     * @param version the version.
+     * @return the validators.
+     */
+    public static Freshness etag(Object version) {
+        return new Freshness(toETag(version), -1);
+    }
+
+    /**
+     * Creates validators from a last modified time.
+     *
+     * @param lastModified the last modified time in milliseconds since epoch.
+     * @return the validators.
+     */
+    public static Freshness lastModified(long lastModified) {
+        return new Freshness(null, lastModified);
+    }
+
+    /**
+     * Creates validators from a version and a last modified time, see {@link #etag(Object)}.
+     *
+     * @param version      the version.
+     * @param lastModified the last modified time in milliseconds since epoch.
+     * @return the validators.
+     */
+    public static Freshness of(Object version, long lastModified) {
+        return new Freshness(toETag(version), lastModified);
+    }
+
+    private Freshness(String etag, long lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the ETag, or null if not set.
+     */
+    public String getETag() {
+        return etag;
+    }
+
+    /**
+     * @return the last modified time in milliseconds since epoch, or -1 if not set.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    private static String toETag(Object version) {
+        if (version == null) {
+            return null;
+        }
+
+        String value = version.toString();
+
+        if (value.startsWith("\"") || value.startsWith("W/\"")) {
+            return value;
+        }
+        return ConditionalUtils.etag(value);
+    }
+
+}
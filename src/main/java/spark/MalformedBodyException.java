@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark;
+
+/**
+ * Thrown when reading a request body that can't be decoded, e.g. a request body sent with 'Content-Encoding: gzip'
+ * that isn't valid gzip data. Halts the request with '400 Bad Request'.
+ */
+public class MalformedBodyException extends HaltException {
+    private static final long serialVersionUID = 1L;
+
+    private static final int BAD_REQUEST = 400;
+
+    /**
+     * Constructor
+     *
+     * @param cause the error that occurred when decoding the body
+     */
+    public MalformedBodyException(Throwable cause) {
+        super(BAD_REQUEST, "<html><body><h2>400 Bad Request</h2></body></html>");
+        initCause(cause);
+    }
+
+}
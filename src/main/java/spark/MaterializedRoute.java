@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import spark.serialization.SerializerChain;
+import spark.utils.ConditionalUtils;
+
+/**
+ * A route serving the latest snapshot of a body computed in the background by a {@link Materializer}. The snapshot is
+ * serialized once per refresh and published atomically, so requests never wait for the computation, except the ones
+ * arriving before the first refresh completed. A failed refresh keeps the previous snapshot.
+ */
+final class MaterializedRoute extends RouteImpl {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(MaterializedRoute.class);
+
+    private final String contentType;
+    private final Materializer materializer;
+    private final SerializerChain serializerChain = new SerializerChain();
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    // completed by the first successful refresh, replaced when a refresh fails before
+    private volatile CompletableFuture<Snapshot> firstSnapshot = new CompletableFuture<>();
+
+    MaterializedRoute(String path, String contentType, Materializer materializer) {
+        super(path);
+        this.contentType = contentType;
+        this.materializer = materializer;
+
+        // the snapshot's ETag answers conditional requests without touching the body
+        withValidator(request -> {
+            Snapshot current = snapshot.get();
+            return current != null ? Freshness.etag(current.etag) : null;
+        });
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        Snapshot current = snapshot.get();
+
+        if (current == null) {
+            current = awaitFirstSnapshot();
+        }
+
+        if (contentType != null) {
+            response.type(contentType);
+        }
+        response.header(ConditionalUtils.ETAG, current.etag);
+        return current.body;
+    }
+
+    /**
+     * Computes and publishes a new snapshot, keeping the previous one on failure. Refreshes run one at a time, so the
+     * snapshots are published in the order they are computed.
+     */
+    synchronized void refresh() {
+        try {
+            publish();
+        } catch (Exception e) {
+            LOG.warn("Refreshing materialized route [" + getPath() + "] failed, serving the previous snapshot", e);
+
+            if (snapshot.get() == null) {
+                // the requests waiting for this refresh fail, the next ones wait for the next refresh
+                CompletableFuture<Snapshot> failed = firstSnapshot;
+                firstSnapshot = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the first refresh, requested before it completed.
+     */
+    private Snapshot awaitFirstSnapshot() throws Exception {
+        CompletableFuture<Snapshot> first = firstSnapshot;
+        Snapshot current = snapshot.get();
+
+        if (current != null) {
+            return current;
+        }
+        try {
+            return first.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private void publish() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializerChain.process(bytes, materializer.materialize());
+
+        Snapshot next = new Snapshot(bytes.toByteArray());
+        snapshot.set(next);
+        firstSnapshot.complete(next);
+    }
+
+    private static final class Snapshot {
+
+        private final byte[] body;
+        private final String etag;
+
+        private Snapshot(byte[] body) {
+            this.body = body;
+            this.etag = ConditionalUtils.etag(body, 0, body.length);
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark;
+
+/**
+ * Computes the body of a materialized route, see {@link Service#materialize(String, long, Materializer)}. It is
+ * invoked on a background thread, independently of any request.
+ */
+@FunctionalInterface
+public interface Materializer {
+
+    /**
+     * Invoked periodically to compute the latest body of the route
+     *
+     * @return The content to be served, serialized as route results are (String, byte[], InputStream or toString())
+     * @throws java.lang.Exception implementation can choose to throw exception, the previous body is then kept
+     */
+    Object materialize() throws Exception;
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark;
+
+/**
+ * Thrown when reading a request body that exceeds the configured size limit, e.g. when a compressed request body
+ * inflates beyond the limit set with {@link Service#requestDecompression(long)}.
+ * Halts the request with '413 Payload Too Large'.
+ */
+public class PayloadTooLargeException extends HaltException {
+    private static final long serialVersionUID = 1L;
+
+    private static final int PAYLOAD_TOO_LARGE = 413;
+
+    private final long limit;
+
+    /**
+     * Constructor
+     *
+     * @param limit the size limit in bytes that was exceeded
+     */
+    public PayloadTooLargeException(long limit) {
+        super(PAYLOAD_TOO_LARGE, "<html><body><h2>413 Payload Too Large</h2></body></html>");
+        this.limit = limit;
+    }
+
+    /**
+     * @return the size limit in bytes that was exceeded
+     */
+    public long limit() {
+        return limit;
+    }
+
+}
@@ -16,6 +16,16 @@
  */
 package spark;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import spark.http.matching.ExactRedirect;
+
 /**
  * Provides redirect utility methods.
  */
@@ -133,6 +143,90 @@ public final class Redirect {
         http.delete(fromPath, redirectRoute(toPath, status));
     }
 
+    /**
+     * Redirects GET, POST, PUT and DELETE requests on each exact 'fromPath' of the table to its 'toPath'. Unlike the
+     * redirects mapped as routes the table is held in a hash index which is looked up in constant time before the
+     * routes are matched, so it can hold many thousands of redirects, e.g. the legacy URLs of a site migration.
+     * The 'fromPath's can't contain params or wildcards.
+     *
+     * @param redirects the 'toPath' by 'fromPath'
+     */
+    public void table(Map<String, String> redirects) {
+        table(redirects, null);
+    }
+
+    /**
+     * Redirects the exact paths of the table with the provided redirect 'status' code, see {@link #table(Map)}.
+     *
+     * @param redirects the 'toPath' by 'fromPath'
+     * @param status    the redirect status code, or null for the default '302 Found'
+     */
+    public void table(Map<String, String> redirects, Status status) {
+        int statusCode = status != null ? status.intValue() : -1;
+
+        for (Map.Entry<String, String> redirect : redirects.entrySet()) {
+            http.addExact(redirect.getKey(), ExactRedirect.create(redirect.getValue(), statusCode));
+        }
+    }
+
+    /**
+     * Loads a redirect table from a file, see {@link #table(Map)}. Each line holds a 'fromPath' and a 'toPath' and
+     * optionally a 3XX status code, separated by whitespace. Empty lines and lines starting with '#' are ignored.
+     *
+     * @param file the file
+     * @return the number of loaded redirects
+     * @throws IOException if the file can't be read
+     */
+    public int load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    /**
+     * Loads a redirect table, e.g. from a classpath resource, see {@link #load(Path)}.
+     *
+     * @param reader the reader of the table, not closed
+     * @return the number of loaded redirects
+     * @throws IOException if the table can't be read
+     */
+    public int load(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        int count = 0;
+        int lineNumber = 0;
+
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            String trimmed = line.trim();
+
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            String[] columns = trimmed.split("\\s+");
+
+            if (columns.length < 2 || columns.length > 3) {
+                throw new IllegalArgumentException("Invalid redirect on line " + lineNumber + ": " + line);
+            }
+
+            int statusCode = -1;
+            if (columns.length == 3) {
+                try {
+                    statusCode = Integer.parseInt(columns[2]);
+                } catch (NumberFormatException e) {
+                    statusCode = 0;
+                }
+                if (statusCode < 300 || statusCode > 399) {
+                    throw new IllegalArgumentException("Invalid redirect status on line " + lineNumber + ": " + line);
+                }
+            }
+
+            http.addExact(columns[0], ExactRedirect.create(columns[1], statusCode));
+            count++;
+        }
+        return count;
+    }
+
     private static Route redirectRoute(String toPath, Status status) {
         return (req, res) -> {
             if (status != null) {
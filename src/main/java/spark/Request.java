@@ -30,6 +30,7 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
+import spark.http.matching.Dispatcher;
 import spark.routematch.RouteMatch;
 import spark.utils.IOUtils;
 import spark.utils.SparkUtils;
@@ -244,6 +245,8 @@ public class Request {
     private void readBodyAsBytes() {
         try {
             bodyAsBytes = IOUtils.toByteArray(servletRequest.getInputStream());
+        } catch (HaltException e) {
+            throw e;
         } catch (Exception e) {
             LOG.warn("Exception when reading body", e);
         }
@@ -463,6 +466,47 @@ public class Request {
         return servletRequest.getProtocol();
     }
 
+    /**
+     * Forwards the request to the route mapped to the path, with the same HTTP method. The route matching is re-entered
+     * within the same exchange, so unlike a redirect there is no extra round trip. The forwarded route shares this
+     * request (including the already read body) and the response, and its result becomes the body of the response.
+     * Like halt, forwarding stops the execution of the current route. Only supported in routes.
+     *
+     * @param path the path, without query string
+     */
+    public void forward(String path) {
+        throw new ForwardException(null, path);
+    }
+
+    /**
+     * Forwards the request to the route mapped to the HTTP method and path, see {@link #forward(String)}.
+     *
+     * @param method the HTTP method, e.g. "GET"
+     * @param path   the path, without query string
+     */
+    public void forward(String method, String path) {
+        throw new ForwardException(method, path);
+    }
+
+    /**
+     * Invokes the route mapped to the HTTP method and path within the same exchange and returns its result, e.g. to
+     * compose a response of other routes. The invoked route shares this request and the response. Nested forwards
+     * and dispatches are limited to {@value Dispatcher#MAX_DEPTH} levels.
+     *
+     * @param method the HTTP method, e.g. "GET"
+     * @param path   the path, without query string
+     * @return the result of the route, or null if no route is mapped to the method and path
+     * @throws Exception the exception thrown by the route
+     */
+    public Object dispatch(String method, String path) throws Exception {
+        Dispatcher dispatcher = (Dispatcher) raw().getAttribute(Dispatcher.ATTRIBUTE);
+
+        if (dispatcher == null) {
+            throw new IllegalStateException("Dispatching is only supported while Spark handles the request");
+        }
+        return dispatcher.dispatch(method, path);
+    }
+
     private static Map<String, String> getParams(List<String> request, List<String> matched) {
         LOG.debug("get params");
 
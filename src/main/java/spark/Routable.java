@@ -40,6 +40,22 @@ abstract class Routable {
      */
     protected abstract void addFilter(String httpMethod, FilterImpl filter);
 
+    /**
+     * Adds a response cache policy
+     *
+     * @param path      the path
+     * @param ttlMillis how long a response is cached, in milliseconds
+     */
+    protected abstract void addCache(String path, long ttlMillis);
+
+    /**
+     * Adds a target for an exact path, looked up before the routes, e.g. a redirect
+     *
+     * @param path   the exact path
+     * @param target the target
+     */
+    protected abstract void addExact(String path, Object target);
+
     /////////////////////////////
     // Default implementations //
 
@@ -543,6 +559,60 @@ abstract class Routable {
     // END Template View Routes
     //////////////////////////////////////////////////
 
+    //////////////////////////////////////////////////
+    // BEGIN Validated Routes
+    //////////////////////////////////////////////////
+
+    /**
+     * Map the route for HTTP GET requests. The validator is evaluated against the 'If-None-Match' and
+     * 'If-Modified-Since' headers before the route is invoked. If the client's copy is up to date '304 Not Modified'
+     * is sent and the route isn't invoked.
+     *
+     * @param path      the path
+     * @param validator the freshness validator
+     * @param route     The route
+     */
+    public void get(String path, Validator validator, Route route) {
+        addRoute(HttpMethod.get.name(), RouteImpl.create(path, route).withValidator(validator));
+    }
+
+    /**
+     * Map the route for HTTP GET requests, see {@link #get(String, Validator, Route)}
+     *
+     * @param path       the path
+     * @param acceptType the accept type
+     * @param validator  the freshness validator
+     * @param route      The route
+     */
+    public void get(String path, String acceptType, Validator validator, Route route) {
+        addRoute(HttpMethod.get.name(), RouteImpl.create(path, acceptType, route).withValidator(validator));
+    }
+
+    //////////////////////////////////////////////////
+    // END Validated Routes
+    //////////////////////////////////////////////////
+
+    //////////////////////////////////////////////////
+    // BEGIN Cached Routes
+    //////////////////////////////////////////////////
+
+    /**
+     * Caches the '200 OK' responses of the GET routes matching the path. The serialized response is cached per path,
+     * query string and negotiated Accept/Accept-Encoding. A request served from the cache skips the before filters
+     * marked as {@link CacheableFilter}, the route, the after filters and the serialization. Responses setting
+     * cookies, marked 'private'/'no-store' or varying on other headers are not cached.
+     *
+     * @param path      the path, e.g. "/api/feed" or "/api/users/:id"
+     * @param ttlMillis how long a response is cached, in milliseconds
+     */
+    public void cache(String path, long ttlMillis) {
+        addCache(path, ttlMillis);
+    }
+
+    //////////////////////////////////////////////////
+    // END Cached Routes
+    //////////////////////////////////////////////////
+
     //////////////////////////////////////////////////
     // BEGIN Response Transforming Routes
     //////////////////////////////////////////////////
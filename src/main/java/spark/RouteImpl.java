@@ -31,6 +31,7 @@ public abstract class RouteImpl implements Route, Wrapper {
     private String path;
     private String acceptType;
     private Route delegate;
+    private Validator validator;
 
     /**
      * Wraps the route in RouteImpl
@@ -135,6 +136,24 @@ public abstract class RouteImpl implements Route, Wrapper {
         return this.path;
     }
 
+    /**
+     * Sets the freshness validator evaluated before the route is invoked
+     *
+     * @param validator the validator
+     * @return this route
+     */
+    RouteImpl withValidator(Validator validator) {
+        this.validator = validator;
+        return this;
+    }
+
+    /**
+     * @return the freshness validator, or null if the route has none
+     */
+    Validator getValidator() {
+        return this.validator;
+    }
+
     /**
      * @return the route used to create the route implementation
      */
@@ -20,16 +20,35 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import spark.cache.CachePolicy;
+import spark.cache.CoalescingPolicy;
+import spark.cache.ConstantResponse;
+import spark.cache.ResponseCache;
 import spark.embeddedserver.EmbeddedServer;
 import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.inprocess.InProcessClient;
+import spark.http.matching.BatchEndpoint;
+import spark.http.matching.ConditionalGet;
+import spark.http.matching.MatcherFilter;
+import spark.http.matching.MicroBatcher;
+import spark.route.HttpMethod;
 import spark.route.Routes;
 import spark.route.ServletRoutes;
 import spark.ssl.SslStores;
+import spark.staticfiles.BandwidthLimit;
 import spark.staticfiles.StaticFilesConfiguration;
+import spark.utils.AdaptiveCompression;
+import spark.utils.Assert;
+import spark.utils.SparkUtils;
 
 import static java.util.Objects.requireNonNull;
 import static spark.globalstate.ServletFlag.isRunningFromServlet;
@@ -81,6 +100,13 @@ public final class Service extends Routable {
 
     private final StaticFilesConfiguration staticFilesConfiguration;
 
+    private final ResponseCache responseCache = ResponseCache.create();
+
+    private ScheduledExecutorService materializedRoutesScheduler;
+
+    private long maxDecompressedRequestSize = 0;
+    private AdaptiveCompression adaptiveCompression = null;
+
     /**
      * Creates a new Service (a Spark instance). This should be used instead of the static API if the user wants
      * multiple services in one process.
@@ -131,6 +157,19 @@ public final class Service extends Routable {
         return this;
     }
 
+    /**
+     * Runs Spark in-process, without listening on a port. The routes are only reachable through the
+     * {@link #client() in-process client}, which makes route level tests and benchmarks much faster. This has to be
+     * called before any route mapping is done.
+     */
+    public synchronized Service inProcess() {
+        if (initialized) {
+            throwBeforeRouteMappingException();
+        }
+        this.embeddedServerIdentifier = EmbeddedServers.Identifiers.IN_PROCESS;
+        return this;
+    }
+
     /**
      * Set the connection to be secure, using the specified keystore and
      * truststore. This has to be called before any route mapping is done. You
@@ -191,6 +230,43 @@ public final class Service extends Routable {
         return this;
     }
 
+    /**
+     * Enables load-adaptive GZIP compression. While the server is CPU-bound or its worker pool is busy the compression
+     * level is lowered, and mid-sized bodies are sent uncompressed when saturated. Normal compression is restored when
+     * load drops. The current decision can be read from the provided policy, e.g. to publish it as a metric.
+     * This has to be called before any route mapping is done. Observe: when Spark runs in a servlet container only the
+     * static files are compressed adaptively, using the CPU load alone.
+     *
+     * @param adaptiveCompression the adaptive compression policy, null to disable.
+     */
+    public synchronized Service adaptiveCompression(AdaptiveCompression adaptiveCompression) {
+        if (initialized) {
+            throwBeforeRouteMappingException();
+        }
+        this.adaptiveCompression = adaptiveCompression;
+        staticFilesConfiguration.setAdaptiveCompression(adaptiveCompression);
+        return this;
+    }
+
+    /**
+     * Enables transparent decompression of request bodies sent with 'Content-Encoding: gzip' or
+     * 'Content-Encoding: deflate'. Bodies are inflated while they are read, both through {@link Request#body()} and
+     * when streamed from {@link Request#raw()}. Requests inflating beyond the limit are halted with
+     * '413 Payload Too Large'. This has to be called before any route mapping is done. When Spark runs in a servlet
+     * container the limit is set with the init parameter '{@value spark.servlet.SparkFilter#REQUEST_DECOMPRESSION_PARAM}'
+     * of the {@link spark.servlet.SparkFilter} instead.
+     *
+     * @param maxDecompressedSize the max size in bytes of a decompressed request body, 0 to disable.
+     */
+    public synchronized Service requestDecompression(long maxDecompressedSize) {
+        if (initialized) {
+            throwBeforeRouteMappingException();
+        }
+        Assert.isTrue(maxDecompressedSize >= 0, "'maxDecompressedSize' must not be negative");
+        this.maxDecompressedRequestSize = maxDecompressedSize;
+        return this;
+    }
+
     /**
      * Sets the folder in classpath serving static files. Observe: this method
      * must be called before all other methods.
@@ -311,6 +387,12 @@ public final class Service extends Routable {
         }
 
         staticFilesConfiguration.clear();
+        responseCache.invalidateAll();
+
+        if (materializedRoutesScheduler != null) {
+            materializedRoutesScheduler.shutdownNow();
+            materializedRoutesScheduler = null;
+        }
         initialized = false;
     }
 
@@ -326,6 +408,91 @@ public final class Service extends Routable {
         routes.add(httpMethod + " '" + filter.getPath() + "'", filter.getAcceptType(), filter);
     }
 
+    @Override
+    public void addCache(String path, long ttlMillis) {
+        init();
+        routes.addOption(HttpMethod.get, path, CachePolicy.create(responseCache, ttlMillis));
+    }
+
+    @Override
+    public void addExact(String path, Object target) {
+        init();
+        routes.addExact(path, target);
+    }
+
+    /**
+     * Maps a materialized GET route. The body is computed by the materializer on a background thread every refresh
+     * interval, serialized once and published atomically. Requests are always served the latest snapshot from memory
+     * (with an ETag), so their latency doesn't depend on the computation. If a refresh fails the previous snapshot
+     * is kept.
+     *
+     * @param path                  the path
+     * @param refreshIntervalMillis the time between the end of a refresh and the start of the next, in milliseconds
+     * @param materializer          computes the body
+     */
+    public void materialize(String path, long refreshIntervalMillis, Materializer materializer) {
+        materialize(path, null, refreshIntervalMillis, materializer);
+    }
+
+    /**
+     * Maps a materialized GET route, see {@link #materialize(String, long, Materializer)}.
+     *
+     * @param path                  the path
+     * @param contentType           the content type of the body, e.g. "application/json"
+     * @param refreshIntervalMillis the time between the end of a refresh and the start of the next, in milliseconds
+     * @param materializer          computes the body
+     */
+    public synchronized void materialize(String path,
+                                         String contentType,
+                                         long refreshIntervalMillis,
+                                         Materializer materializer) {
+        Assert.isTrue(refreshIntervalMillis > 0, "'refreshIntervalMillis' must be positive");
+
+        MaterializedRoute route = new MaterializedRoute(path, contentType, materializer);
+
+        if (materializedRoutesScheduler == null) {
+            materializedRoutesScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "spark-materialized-routes");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        materializedRoutesScheduler.scheduleWithFixedDelay(route::refresh,
+                                                           0,
+                                                           refreshIntervalMillis,
+                                                           TimeUnit.MILLISECONDS);
+        addRoute(HttpMethod.get.name(), route);
+    }
+
+    /**
+     * Gets the response cache of the routes cached with {@link #cache(String, long)}. Use it to bound the cache size,
+     * to invalidate responses when the underlying data changes and to read hit ratio, evictions and memory use.
+     *
+     * @return the response cache.
+     */
+    public ResponseCache responseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Creates a client running requests directly through the routes of this service, without sockets. Requests run
+     * the same filters, routes, exception mapping and serialization as requests received by the server. See
+     * {@link #inProcess()} to not start the server at all.
+     *
+     * @return the in-process client.
+     */
+    public InProcessClient client() {
+        init();
+        MatcherFilter matcherFilter =
+                new MatcherFilter(routes,
+                                  staticFilesConfiguration,
+                                  false,
+                                  false,
+                                  maxDecompressedRequestSize,
+                                  adaptiveCompression);
+        return InProcessClient.create(matcherFilter);
+    }
+
     public synchronized void init() {
         if (!initialized) {
 
@@ -342,7 +509,9 @@ public final class Service extends Routable {
                     server = EmbeddedServers.create(embeddedServerIdentifier,
                                                     routes,
                                                     staticFilesConfiguration,
-                                                    hasMultipleHandlers());
+                                                    hasMultipleHandlers(),
+                                                    maxDecompressedRequestSize,
+                                                    adaptiveCompression);
 
                     server.configureWebSockets(webSocketHandlers, webSocketIdleTimeoutMillis);
 
@@ -368,6 +537,138 @@ public final class Service extends Routable {
         }
     }
 
+    //////////////////////////////////////////////////
+    // CONSTANT RESPONSES
+    //////////////////////////////////////////////////
+
+    /**
+     * Maps a constant '200 OK' GET response, see {@link #constant(String, int, Map, Object)}.
+     *
+     * @param path the exact path, e.g. "/robots.txt"
+     * @param body the body, e.g. a String or a byte array
+     */
+    public void constant(String path, Object body) {
+        constant(path, HttpServletResponse.SC_OK, null, body);
+    }
+
+    /**
+     * Maps a constant GET response, e.g. a health check, robots.txt or a version banner. The body is serialized,
+     * given an ETag and compressed once, so serving it is a single buffer write that skips the static files, the
+     * filters and the routes. Mapping the path again replaces the response atomically, e.g. to publish a new
+     * feature flag snapshot.
+     *
+     * @param path    the exact path, without params or wildcards, e.g. "/robots.txt"
+     * @param status  the HTTP status
+     * @param headers the headers, may be null. The content type defaults to "text/html; charset=utf-8"
+     * @param body    the body, e.g. a String or a byte array
+     */
+    public synchronized void constant(String path, int status, Map<String, String> headers, Object body) {
+        Assert.isTrue(!path.contains("*") && !path.contains("/:"), "'path' must be exact: " + path);
+
+        addExact(path, ConstantResponse.create(status, headers, body));
+    }
+
+    //////////////////////////////////////////////////
+    // CONDITIONAL GET
+    //////////////////////////////////////////////////
+
+    /**
+     * Enables conditional GET for all GET routes of this service. The serialized body of a '200 OK' response gets a
+     * strong ETag (unless the route sets one) and a request with a matching 'If-None-Match' header is answered with
+     * a bodiless '304 Not Modified', skipping compression and transmission of the body.
+     */
+    public synchronized void conditionalGet() {
+        conditionalGet(SparkUtils.ALL_PATHS);
+    }
+
+    /**
+     * Enables conditional GET for the GET routes matching the path, see {@link #conditionalGet()}.
+     *
+     * @param path the path, e.g. "/api/feed" or "/api/users/:id"
+     */
+    public synchronized void conditionalGet(String path) {
+        init();
+        routes.addOption(HttpMethod.get, path, ConditionalGet.create());
+    }
+
+    //////////////////////////////////////////////////
+    // REQUEST COALESCING
+    //////////////////////////////////////////////////
+
+    /**
+     * Coalesces identical concurrent GET requests to the routes matching the path (single-flight). Only one request
+     * runs the route while identical requests arriving in the meantime wait for it and are served its serialized
+     * response, or get its exception. Requests are identical if method, path, query string, 'Accept', whether gzip is
+     * accepted and the given headers are equal. Responses setting cookies are never shared.
+     *
+     * @param path          the path, e.g. "/api/feed" or "/api/users/:id"
+     * @param maxWaitMillis how long an identical request waits, in milliseconds. When it times out it runs the route
+     *                      itself.
+     * @param headers       the request headers that are part of the identity of a request, e.g. "Authorization"
+     * @return the coalescing policy, exposing the number of coalesced requests.
+     */
+    public synchronized CoalescingPolicy coalesce(String path, long maxWaitMillis, String... headers) {
+        CoalescingPolicy policy = CoalescingPolicy.create(maxWaitMillis, headers);
+        init();
+        routes.addOption(HttpMethod.get, path, policy);
+        return policy;
+    }
+
+    //////////////////////////////////////////////////
+    // MICRO-BATCHING
+    //////////////////////////////////////////////////
+
+    /**
+     * Maps a micro-batching POST route. Concurrent requests are collected until the batch holds max batch size
+     * requests or the first one has waited max delay, and the batch route is then invoked once with all of them,
+     * e.g. to insert all rows in one statement. Waiting requests are handled asynchronously and don't hold a server
+     * thread. The before filters run for each request as usual, the after filters once the batch has been handled.
+     * When running in a servlet container the Spark filter must be declared with async support.
+     *
+     * @param path           the path
+     * @param maxBatchSize   the maximum number of requests in a batch
+     * @param maxDelayMillis the maximum time a request waits for its batch to fill up, in milliseconds
+     * @param route          the batch route, returning one result per request
+     * @return the micro-batcher, exposing the number of batches and batched requests.
+     */
+    public synchronized MicroBatcher microBatch(String path, int maxBatchSize, long maxDelayMillis, BatchRoute route) {
+        MicroBatcher batcher = MicroBatcher.create(route, maxBatchSize, maxDelayMillis);
+        init();
+        routes.add(HttpMethod.post.name() + " '" + path + "'", DEFAULT_ACCEPT_TYPE, batcher);
+        return batcher;
+    }
+
+    //////////////////////////////////////////////////
+    // BATCH REQUESTS
+    //////////////////////////////////////////////////
+
+    /**
+     * Maps a batch endpoint, e.g. "/_batch", running many sub-requests through the routes in one HTTP call. The body
+     * of a batch is a JSON array of sub-requests with "method", "path", "headers" and "body", the response is a JSON
+     * array of results with "status", "headers" and "body". Sub-requests run the same filters, routes and exception
+     * mapping as real requests and inherit the headers (e.g. authorization) of the batch request. Consecutive GET, HEAD
+     * and OPTIONS sub-requests run in parallel, others run one at a time in order. Allows 50 sub-requests per batch
+     * and as many parallel sub-requests as there are processors.
+     *
+     * @param path the path of the batch endpoint
+     */
+    public synchronized void batch(String path) {
+        batch(path, 50, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Maps a batch endpoint, see {@link #batch(String)}.
+     *
+     * @param path        the path of the batch endpoint
+     * @param maxRequests the maximum number of sub-requests in a batch
+     * @param parallelism the maximum number of sub-requests running in parallel, over all batches
+     */
+    public synchronized void batch(String path, int maxRequests, int parallelism) {
+        BatchEndpoint endpoint = BatchEndpoint.create(maxRequests, parallelism);
+        init();
+        routes.addOption(HttpMethod.post, path, endpoint);
+    }
+
     //////////////////////////////////////////////////
     // EXCEPTION mapper
     //////////////////////////////////////////////////
@@ -480,6 +781,17 @@ public final class Service extends Routable {
             staticFilesConfiguration.putCustomHeader(key, value);
         }
 
+        /**
+         * Registers the content type of the static resources with an extension, replacing the default one. The
+         * content type also tells if they are worth compressing.
+         *
+         * @param extension   the extension, e.g. "csv", without the dot.
+         * @param contentType the content type, e.g. "text/csv".
+         */
+        public void registerMimeType(String extension, String contentType) {
+            staticFilesConfiguration.registerMimeType(extension, contentType);
+        }
+
         /**
          * Sets the expire-time for static resources
          *
@@ -490,5 +802,84 @@ public final class Service extends Routable {
             staticFilesConfiguration.setExpireTimeSeconds(seconds);
         }
 
+        /**
+         * Restricts the static files to requests with a path starting with one of the prefixes, e.g. "/assets/".
+         * Other requests go straight to the routes, without static file lookups.
+         *
+         * @param prefixes the path prefixes.
+         */
+        public void include(String... prefixes) {
+            staticFilesConfiguration.include(prefixes);
+        }
+
+        /**
+         * Excludes requests with a path starting with one of the prefixes, e.g. "/api/", from the static files.
+         * They go straight to the routes, without static file lookups.
+         *
+         * @param prefixes the path prefixes.
+         */
+        public void exclude(String... prefixes) {
+            staticFilesConfiguration.exclude(prefixes);
+        }
+
+        /**
+         * Caches the content of static files in memory, together with its gzip compressed form. The least recently
+         * used files are evicted when the maximum size is exceeded. Files in the external folder are loaded again
+         * when they are modified.
+         *
+         * @param maximumSize      the maximum total size in bytes of the cached content.
+         * @param maximumEntrySize the maximum size in bytes of a cached file, larger files are always streamed.
+         */
+        public void cache(long maximumSize, long maximumEntrySize) {
+            cache(maximumSize, maximumEntrySize, false);
+        }
+
+        /**
+         * Caches the content of static files in memory, together with its gzip compressed form. The least recently
+         * used files are evicted when the maximum size is exceeded. Files in the external folder are loaded again
+         * when they are modified.
+         *
+         * @param maximumSize      the maximum total size in bytes of the cached content.
+         * @param maximumEntrySize the maximum size in bytes of a cached file, larger files are always streamed.
+         * @param preload          if the files of the static file locations should be loaded right away, until the
+         *                         cache is full.
+         */
+        public void cache(long maximumSize, long maximumEntrySize, boolean preload) {
+            staticFilesConfiguration.enableContentCache(maximumSize, maximumEntrySize, true, preload);
+        }
+
+        /**
+         * Sends the static files in the file system from a size with non-blocking IO, so slow clients downloading
+         * them don't hold server threads. Smaller files and jar resources are always sent with blocking IO.
+         *
+         * @param minimumSize the minimum size in bytes of the files sent with non-blocking IO.
+         */
+        public void asyncTransfer(long minimumSize) {
+            staticFilesConfiguration.enableAsyncTransfer(minimumSize);
+        }
+
+        /**
+         * Limits the rate at which large static files in the file system are sent, per download and for all of them
+         * together, so they don't saturate the network for the other responses. Smaller files and routes are never
+         * limited.
+         *
+         * @param bandwidthLimit the bandwidth limit, e.g. {@code BandwidthLimit.create().total(50_000_000)}, or null
+         *                       for no limit.
+         */
+        public void bandwidthLimit(BandwidthLimit bandwidthLimit) {
+            staticFilesConfiguration.setBandwidthLimit(bandwidthLimit);
+        }
+
+        /**
+         * Keeps the small entries of a static file location in a jar inflated in memory, the smallest first. The
+         * entries of the jar are always indexed once, this also saves inflating them for every request.
+         *
+         * @param maximumEntrySize the maximum size in bytes of an inflated entry.
+         * @param maximumSize      the maximum total size in bytes of the inflated entries.
+         */
+        public void inflateJarEntries(long maximumEntrySize, long maximumSize) {
+            staticFilesConfiguration.inflateJarEntries(maximumEntrySize, maximumSize);
+        }
+
     }
 }
@@ -16,6 +16,14 @@
  */
 package spark;
 
+import java.util.Map;
+
+import spark.cache.CoalescingPolicy;
+import spark.cache.ResponseCache;
+import spark.embeddedserver.inprocess.InProcessClient;
+import spark.http.matching.MicroBatcher;
+import spark.utils.AdaptiveCompression;
+
 import static spark.Service.ignite;
 
 /**
@@ -598,6 +606,118 @@ public class Spark {
     // END Template View Routes
     //////////////////////////////////////////////////
 
+    //////////////////////////////////////////////////
+    // BEGIN Validated Routes
+    //////////////////////////////////////////////////
+
+    /**
+     * Map the route for HTTP GET requests. The validator is evaluated against the 'If-None-Match' and
+     * 'If-Modified-Since' headers before the route is invoked. If the client's copy is up to date '304 Not Modified'
+     * is sent and the route isn't invoked.
+     *
+     * @param path      the path
+     * @param validator the freshness validator
+     * @param route     The route
+     */
+    public static void get(String path, Validator validator, Route route) {
+        getInstance().get(path, validator, route);
+    }
+
+    /**
+     * Map the route for HTTP GET requests, see {@link #get(String, Validator, Route)}
+     *
+     * @param path       the path
+     * @param acceptType the accept type
+     * @param validator  the freshness validator
+     * @param route      The route
+     */
+    public static void get(String path, String acceptType, Validator validator, Route route) {
+        getInstance().get(path, acceptType, validator, route);
+    }
+
+    //////////////////////////////////////////////////
+    // END Validated Routes
+    //////////////////////////////////////////////////
+
+    //////////////////////////////////////////////////
+    // BEGIN Cached Routes
+    //////////////////////////////////////////////////
+
+    /**
+     * Caches the '200 OK' responses of the GET routes matching the path. The serialized response is cached per path,
+     * query string and negotiated Accept/Accept-Encoding. A request served from the cache skips the before filters
+     * marked as {@link CacheableFilter}, the route, the after filters and the serialization. Responses setting
+     * cookies, marked 'private'/'no-store' or varying on other headers are not cached.
+     *
+     * @param path      the path, e.g. "/api/feed" or "/api/users/:id"
+     * @param ttlMillis how long a response is cached, in milliseconds
+     */
+    public static void cache(String path, long ttlMillis) {
+        getInstance().cache(path, ttlMillis);
+    }
+
+    /**
+     * Maps a materialized GET route. The body is computed by the materializer on a background thread every refresh
+     * interval, serialized once and published atomically. Requests are always served the latest snapshot from memory
+     * (with an ETag), so their latency doesn't depend on the computation. If a refresh fails the previous snapshot
+     * is kept.
+     *
+     * @param path                  the path
+     * @param refreshIntervalMillis the time between the end of a refresh and the start of the next, in milliseconds
+     * @param materializer          computes the body
+     */
+    public static void materialize(String path, long refreshIntervalMillis, Materializer materializer) {
+        getInstance().materialize(path, refreshIntervalMillis, materializer);
+    }
+
+    /**
+     * Maps a materialized GET route, see {@link #materialize(String, long, Materializer)}.
+     *
+     * @param path                  the path
+     * @param contentType           the content type of the body, e.g. "application/json"
+     * @param refreshIntervalMillis the time between the end of a refresh and the start of the next, in milliseconds
+     * @param materializer          computes the body
+     */
+    public static void materialize(String path,
+                                   String contentType,
+                                   long refreshIntervalMillis,
+                                   Materializer materializer) {
+        getInstance().materialize(path, contentType, refreshIntervalMillis, materializer);
+    }
+
+    /**
+     * Gets the response cache of the routes cached with {@link #cache(String, long)}. Use it to bound the cache size,
+     * to invalidate responses when the underlying data changes and to read hit ratio, evictions and memory use.
+     *
+     * @return the response cache.
+     */
+    public static ResponseCache responseCache() {
+        return getInstance().responseCache();
+    }
+
+    //////////////////////////////////////////////////
+    // END Cached Routes
+    //////////////////////////////////////////////////
+
+    //////////////////////////////////////////////////
+    // BEGIN In-process Client
+    //////////////////////////////////////////////////
+
+    /**
+     * Creates a client running requests directly through the routes, without sockets. Requests run the same filters,
+     * routes, exception mapping and serialization as requests received by the server. See {@link #inProcess()} to not
+     * start the server at all.
+     *
+     * @return the in-process client.
+     */
+    public static InProcessClient client() {
+        return getInstance().client();
+    }
+
+    //////////////////////////////////////////////////
+    // END In-process Client
+    //////////////////////////////////////////////////
+
     //////////////////////////////////////////////////
     // BEGIN Response Transforming Routes
     //////////////////////////////////////////////////
@@ -828,6 +948,127 @@ public class Spark {
     // END Response Transforming Routes
     //////////////////////////////////////////////////
 
+    //////////////////////////////////////////////////
+    // CONSTANT RESPONSES
+    //////////////////////////////////////////////////
+
+    /**
+     * Maps a constant '200 OK' GET response, see {@link #constant(String, int, Map, Object)}.
+     *
+     * @param path the exact path, e.g. "/robots.txt"
+     * @param body the body, e.g. a String or a byte array
+     */
+    public static void constant(String path, Object body) {
+        getInstance().constant(path, body);
+    }
+
+    /**
+     * Maps a constant GET response, e.g. a health check, robots.txt or a version banner. The body is serialized,
+     * given an ETag and compressed once, so serving it is a single buffer write that skips the static files, the
+     * filters and the routes. Mapping the path again replaces the response atomically, e.g. to publish a new
+     * feature flag snapshot.
+     *
+     * @param path    the exact path, without params or wildcards, e.g. "/robots.txt"
+     * @param status  the HTTP status
+     * @param headers the headers, may be null. The content type defaults to "text/html; charset=utf-8"
+     * @param body    the body, e.g. a String or a byte array
+     */
+    public static void constant(String path, int status, Map<String, String> headers, Object body) {
+        getInstance().constant(path, status, headers, body);
+    }
+
+    //////////////////////////////////////////////////
+    // CONDITIONAL GET
+    //////////////////////////////////////////////////
+
+    /**
+     * Enables conditional GET for all GET routes. The serialized body of a '200 OK' response gets a strong ETag
+     * (unless the route sets one) and a request with a matching 'If-None-Match' header is answered with a bodiless
+     * '304 Not Modified', skipping compression and transmission of the body.
+     */
+    public static void conditionalGet() {
+        getInstance().conditionalGet();
+    }
+
+    /**
+     * Enables conditional GET for the GET routes matching the path, see {@link #conditionalGet()}.
+     *
+     * @param path the path, e.g. "/api/feed" or "/api/users/:id"
+     */
+    public static void conditionalGet(String path) {
+        getInstance().conditionalGet(path);
+    }
+
+    //////////////////////////////////////////////////
+    // REQUEST COALESCING
+    //////////////////////////////////////////////////
+
+    /**
+     * Coalesces identical concurrent GET requests to the routes matching the path (single-flight). Only one request
+     * runs the route while identical requests arriving in the meantime wait for it and are served its serialized
+     * response, or get its exception. Requests are identical if method, path, query string, 'Accept', whether gzip is
+     * accepted and the given headers are equal. Responses setting cookies are never shared.
+     *
+     * @param path          the path, e.g. "/api/feed" or "/api/users/:id"
+     * @param maxWaitMillis how long an identical request waits, in milliseconds. When it times out it runs the route
+     *                      itself.
+     * @param headers       the request headers that are part of the identity of a request, e.g. "Authorization"
+     * @return the coalescing policy, exposing the number of coalesced requests.
+     */
+    public static CoalescingPolicy coalesce(String path, long maxWaitMillis, String... headers) {
+        return getInstance().coalesce(path, maxWaitMillis, headers);
+    }
+
+    //////////////////////////////////////////////////
+    // MICRO-BATCHING
+    //////////////////////////////////////////////////
+
+    /**
+     * Maps a micro-batching POST route. Concurrent requests are collected until the batch holds max batch size
+     * requests or the first one has waited max delay, and the batch route is then invoked once with all of them,
+     * e.g. to insert all rows in one statement. Waiting requests are handled asynchronously and don't hold a server
+     * thread. The before filters run for each request as usual, the after filters once the batch has been handled.
+     * When running in a servlet container the Spark filter must be declared with async support.
+     *
+     * @param path           the path
+     * @param maxBatchSize   the maximum number of requests in a batch
+     * @param maxDelayMillis the maximum time a request waits for its batch to fill up, in milliseconds
+     * @param route          the batch route, returning one result per request
+     * @return the micro-batcher, exposing the number of batches and batched requests.
+     */
+    public static MicroBatcher microBatch(String path, int maxBatchSize, long maxDelayMillis, BatchRoute route) {
+        return getInstance().microBatch(path, maxBatchSize, maxDelayMillis, route);
+    }
+
+    //////////////////////////////////////////////////
+    // BATCH REQUESTS
+    //////////////////////////////////////////////////
+
+    /**
+     * Maps a batch endpoint, e.g. "/_batch", running many sub-requests through the routes in one HTTP call. The body
+     * of a batch is a JSON array of sub-requests with "method", "path", "headers" and "body", the response is a JSON
+     * array of results with "status", "headers" and "body". Sub-requests run the same filters, routes and exception
+     * mapping as real requests and inherit the headers (e.g. authorization) of the batch request. Consecutive GET, HEAD
+     * and OPTIONS sub-requests run in parallel, others run one at a time in order. Allows 50 sub-requests per batch
+     * and as many parallel sub-requests as there are processors.
+     *
+     * @param path the path of the batch endpoint
+     */
+    public static void batch(String path) {
+        getInstance().batch(path);
+    }
+
+    /**
+     * Maps a batch endpoint, see {@link #batch(String)}.
+     *
+     * @param path        the path of the batch endpoint
+     * @param maxRequests the maximum number of sub-requests in a batch
+     * @param parallelism the maximum number of sub-requests running in parallel, over all batches
+     */
+    public static void batch(String path, int maxRequests, int parallelism) {
+        getInstance().batch(path, maxRequests, parallelism);
+    }
+
     //////////////////////////////////////////////////
     // EXCEPTION mapper
     //////////////////////////////////////////////////
@@ -935,6 +1176,15 @@ public class Spark {
         getInstance().port(port);
     }
 
+    /**
+     * Runs Spark in-process, without listening on a port. The routes are only reachable through the
+     * {@link #client() in-process client}, which makes route level tests and benchmarks much faster. This has to be
+     * called before any route mapping is done.
+     */
+    public static void inProcess() {
+        getInstance().inProcess();
+    }
+
     /**
      * Set the connection to be secure, using the specified keystore and
      * truststore. This has to be called before any route mapping is done. You
@@ -1000,6 +1250,29 @@ public class Spark {
         getInstance().threadPool(maxThreads, minThreads, idleTimeoutMillis);
     }
 
+    /**
+     * Enables load-adaptive GZIP compression. While the server is CPU-bound or its worker pool is busy the compression
+     * level is lowered, and mid-sized bodies are sent uncompressed when saturated. Normal compression is restored when
+     * load drops. The current decision can be read from the provided policy, e.g. to publish it as a metric.
+     * This has to be called before any route mapping is done.
+     *
+     * @param adaptiveCompression the adaptive compression policy, null to disable.
+     */
+    public static void adaptiveCompression(AdaptiveCompression adaptiveCompression) {
+        getInstance().adaptiveCompression(adaptiveCompression);
+    }
+
+    /**
+     * Enables transparent decompression of request bodies sent with 'Content-Encoding: gzip' or
+     * 'Content-Encoding: deflate'. Requests inflating beyond the limit are halted with '413 Payload Too Large'.
+     * This has to be called before any route mapping is done.
+     *
+     * @param maxDecompressedSize the max size in bytes of a decompressed request body, 0 to disable.
+     */
+    public static void requestDecompression(long maxDecompressedSize) {
+        getInstance().requestDecompression(maxDecompressedSize);
+    }
+
     /**
      * Sets the folder in classpath serving static files. Observe: this method
      * must be called before all other methods.
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark;
+
+/**
+ * A cheap freshness check registered next to a route, e.g. looking up a row version in a cache. It is evaluated
+ * against 'If-None-Match' and 'If-Modified-Since' before the route is invoked and, when the client's copy is up to
+ * date, '304 Not Modified' is sent without invoking the route at all.
+ */
+@FunctionalInterface
+public interface Validator {
+
+    /**
+     * Invoked before the route for requests on the route's path.
+     *
+     * @param request The request object providing information about the HTTP request
+     * @return the current validators of the requested resource, or null if unknown in which case the route is invoked
+     * @throws java.lang.Exception implementation can choose to throw exception
+     */
+    Freshness validate(Request request) throws Exception;
+
+}
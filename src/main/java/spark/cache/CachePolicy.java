@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.cache;
+
+/**
+ * Route option caching the responses of the routes matching a path in a {@link ResponseCache}.
+ */
+public final class CachePolicy {
+
+    private final ResponseCache cache;
+    private final long ttlMillis;
+
+    /**
+     * Creates a cache policy.
+     *
+     * @param cache     the cache to store the responses in.
+     * @param ttlMillis how long a response is cached, in milliseconds.
+     * @return the cache policy.
+     */
+    public static CachePolicy create(ResponseCache cache, long ttlMillis) {
+        return new CachePolicy(cache, ttlMillis);
+    }
+
+    private CachePolicy(ResponseCache cache, long ttlMillis) {
+        this.cache = cache;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the cache to store the responses in.
+     */
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return how long a response is cached, in milliseconds.
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.cache;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import spark.utils.ConditionalUtils;
+
+/**
+ * An immutable, fully serialized response (status, headers and encoded body bytes) that can be written to any
+ * number of requests.
+ */
+public final class CachedResponse {
+
+    // rough per entry overhead of the object, the key and the map entry
+    private static final int OVERHEAD = 128;
+
+    private final int status;
+    private final String contentType;
+    private final List<Map.Entry<String, String>> headers;
+    private final byte[] body;
+    private final long expiresAt;
+
+    /**
+     * Creates a cached response.
+     *
+     * @param status      the HTTP status.
+     * @param contentType the content type, may be null.
+     * @param headers     the headers (name, value), excluding Content-Type and Content-Length.
+     * @param body        the encoded body bytes.
+     * @param expiresAt   the time in milliseconds since epoch when the response expires, or -1 if it never expires.
+     * @return the cached response.
+     */
+    public static CachedResponse create(int status,
+                                        String contentType,
+                                        List<Map.Entry<String, String>> headers,
+                                        byte[] body,
+                                        long expiresAt) {
+        return new CachedResponse(status, contentType, headers, body, expiresAt);
+    }
+
+    /**
+     * Creates a header entry.
+     *
+     * @param name  the header name.
+     * @param value the header value.
+     * @return the header entry.
+     */
+    public static Map.Entry<String, String> header(String name, String value) {
+        return new AbstractMap.SimpleImmutableEntry<>(name, value);
+    }
+
+    private CachedResponse(int status,
+                           String contentType,
+                           List<Map.Entry<String, String>> headers,
+                           byte[] body,
+                           long expiresAt) {
+        this.status = status;
+        this.contentType = contentType;
+        this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+        this.body = body;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Writes the response. If the response has an ETag matching the request's 'If-None-Match' header a bodiless
+     * '304 Not Modified' is written instead.
+     *
+     * @param request  the HTTP servlet request.
+     * @param response the HTTP servlet response.
+     * @throws IOException in case of IO error.
+     */
+    public void writeTo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(status);
+
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        Set<String> written = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+        for (Map.Entry<String, String> header : headers) {
+            // replaces a header already set on the response, e.g. by a before filter
+            if (written.add(header.getKey())) {
+                response.setHeader(header.getKey(), header.getValue());
+            } else {
+                response.addHeader(header.getKey(), header.getValue());
+            }
+        }
+
+        String etag = getHeader(ConditionalUtils.ETAG);
+
+        if (etag != null && ConditionalUtils.matches(request.getHeader(ConditionalUtils.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        response.getOutputStream().flush();
+    }
+
+    /**
+     * @param now the current time in milliseconds since epoch.
+     * @return true if the response has expired.
+     */
+    public boolean isExpired(long now) {
+        return expiresAt >= 0 && now >= expiresAt;
+    }
+
+    /**
+     * @param name the header name.
+     * @return the first value of the header, or null if not present.
+     */
+    public String getHeader(String name) {
+        for (Map.Entry<String, String> header : headers) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the HTTP status.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the content type, or null if not set.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the length of the encoded body.
+     */
+    public int getContentLength() {
+        return body.length;
+    }
+
+    /**
+     * @return the approximate memory used by the response in bytes.
+     */
+    public long weight() {
+        long weight = OVERHEAD + body.length;
+
+        for (Map.Entry<String, String> header : headers) {
+            weight += 2 * (header.getKey().length() + header.getValue().length());
+        }
+        return weight;
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletRequest;
+
+import spark.utils.Assert;
+
+/**
+ * Route option coalescing identical concurrent requests (single-flight). The first request runs the route while
+ * identical requests arriving in the meantime wait for, and share, its serialized response or its exception.
+ * Requests are identical if method, path, query string, validators ('If-None-Match' and 'If-Modified-Since') and the
+ * configured headers are equal. Only '200 OK' responses are shared, the waiting requests run the route themselves
+ * otherwise.
+ */
+public final class CoalescingPolicy {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1024 * 1024;
+
+    private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private final long maxWaitMillis;
+    private final String[] headers;
+
+    private volatile long maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+    private final LongAdder coalescedRequests = new LongAdder();
+    private final LongAdder timedOutRequests = new LongAdder();
+
+    /**
+     * Creates a coalescing policy.
+     *
+     * @param maxWaitMillis how long an identical request waits for the running one, in milliseconds. When it times
+     *                      out it runs the route itself.
+     * @param headers       the request headers that are part of the identity of a request, e.g. "Authorization".
+     *                      'Accept', the validators and whether gzip is accepted are always part of it.
+     * @return the coalescing policy.
+     */
+    public static CoalescingPolicy create(long maxWaitMillis, String... headers) {
+        return new CoalescingPolicy(maxWaitMillis, headers);
+    }
+
+    private CoalescingPolicy(long maxWaitMillis, String... headers) {
+        Assert.isTrue(maxWaitMillis >= 0, "'maxWaitMillis' must not be negative");
+        this.maxWaitMillis = maxWaitMillis;
+        this.headers = headers.clone();
+    }
+
+    /**
+     * Sets the maximum size of a shared response body. Requests with larger responses aren't shared, the waiting
+     * requests then run the route themselves.
+     *
+     * @param bytes the size in bytes.
+     * @return this policy.
+     */
+    public CoalescingPolicy maximumSize(long bytes) {
+        Assert.isTrue(bytes >= 0, "'bytes' must not be negative");
+        this.maximumSize = bytes;
+        return this;
+    }
+
+    /**
+     * @return the maximum size of a shared response body.
+     */
+    public long maximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Creates the identity of a request.
+     *
+     * @param request     the HTTP servlet request.
+     * @param method      the HTTP method.
+     * @param path        the request path.
+     * @param acceptsGzip if the request accepts gzip.
+     * @return the key.
+     */
+    public String key(HttpServletRequest request, String method, String path, boolean acceptsGzip) {
+        StringBuilder key = new StringBuilder()
+                .append(method).append('\n')
+                .append(path).append('\n')
+                .append(request.getQueryString()).append('\n')
+                .append(request.getHeader("Accept")).append('\n')
+                .append(request.getHeader("If-None-Match")).append('\n')
+                .append(request.getHeader("If-Modified-Since")).append('\n')
+                .append(acceptsGzip);
+
+        for (String header : headers) {
+            key.append('\n').append(request.getHeader(header));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Joins the flight of identical requests, starting a new flight if there is none.
+     *
+     * @param key the identity of the request.
+     * @return the flight, led by the request if {@link Flight#isLeader()}.
+     */
+    public Flight join(String key) {
+        Flight started = new Flight(key, true);
+        Flight running = inFlight.putIfAbsent(key, started);
+
+        return running == null ? started : new Flight(key, running.result);
+    }
+
+    /**
+     * @return the number of requests served with the response of an identical request.
+     */
+    public long coalescedRequests() {
+        return coalescedRequests.sum();
+    }
+
+    /**
+     * @return the number of requests that timed out waiting for an identical request.
+     */
+    public long timedOutRequests() {
+        return timedOutRequests.sum();
+    }
+
+    /**
+     * The running request for a key, as seen by the leader (running the route) or by a follower (waiting).
+     */
+    public final class Flight {
+
+        private final String key;
+        private final boolean leader;
+        private final CompletableFuture<CachedResponse> result;
+
+        private Flight(String key, boolean leader) {
+            this.key = key;
+            this.leader = leader;
+            this.result = new CompletableFuture<>();
+        }
+
+        private Flight(String key, CompletableFuture<CachedResponse> result) {
+            this.key = key;
+            this.leader = false;
+            this.result = result;
+        }
+
+        /**
+         * @return true if this request runs the route for the identical requests.
+         */
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * Waits for the leader's response.
+         *
+         * @return the shared response, or null if it can't be shared or the wait timed out.
+         * @throws Exception the exception thrown by the leader's route.
+         */
+        public CachedResponse await() throws Exception {
+            try {
+                CachedResponse response = result.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+
+                if (response != null) {
+                    coalescedRequests.increment();
+                }
+                return response;
+            } catch (TimeoutException e) {
+                timedOutRequests.increment();
+                return null;
+            } catch (ExecutionException e) {
+                coalescedRequests.increment();
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+
+        /**
+         * Shares the leader's response with the waiting requests and ends the flight.
+         *
+         * @param response the response, or null if it can't be shared.
+         */
+        public void complete(CachedResponse response) {
+            if (leader) {
+                inFlight.remove(key, this);
+                result.complete(response);
+            }
+        }
+
+        /**
+         * Shares the exception thrown by the leader's route with the waiting requests and ends the flight.
+         *
+         * @param exception the exception.
+         */
+        public void fail(Exception exception) {
+            if (leader) {
+                inFlight.remove(key, this);
+                result.completeExceptionally(exception);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import spark.serialization.SerializerChain;
+import spark.utils.ConditionalUtils;
+import spark.utils.GzipUtils;
+
+/**
+ * A constant response, e.g. a health check, robots.txt or a version banner. The body is serialized, hashed into an
+ * ETag and compressed once when it is created, so serving it is a single buffer write that skips the filters, the
+ * route and the serialization.
+ */
+public final class ConstantResponse {
+
+    private static final String DEFAULT_CONTENT_TYPE = "text/html; charset=utf-8";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String VARY = "Vary";
+
+    private final CachedResponse identity;
+    private final CachedResponse gzipped;
+
+    /**
+     * Creates a constant response.
+     *
+     * @param status  the HTTP status.
+     * @param headers the headers, may be null. The content type defaults to "text/html; charset=utf-8".
+     * @param body    the body, serialized like the result of a route, e.g. a String or a byte array.
+     * @return the constant response.
+     */
+    public static ConstantResponse create(int status, Map<String, String> headers, Object body) {
+        return new ConstantResponse(status, headers, body);
+    }
+
+    private ConstantResponse(int status, Map<String, String> headers, Object body) {
+        byte[] bytes = serialize(body);
+        byte[] compressed = compress(bytes);
+
+        String contentType = DEFAULT_CONTENT_TYPE;
+        String etag = ConditionalUtils.etag(bytes, 0, bytes.length);
+        List<Map.Entry<String, String>> identityHeaders = new ArrayList<>();
+
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (CONTENT_TYPE.equalsIgnoreCase(header.getKey())) {
+                    contentType = header.getValue();
+                } else if (ConditionalUtils.ETAG.equalsIgnoreCase(header.getKey())) {
+                    // a given ETag takes precedence
+                    etag = header.getValue();
+                } else {
+                    identityHeaders.add(CachedResponse.header(header.getKey(), header.getValue()));
+                }
+            }
+        }
+
+        // only worth sending compressed if it's smaller
+        boolean compressible = compressed.length < bytes.length;
+
+        List<Map.Entry<String, String>> gzipHeaders = new ArrayList<>(identityHeaders);
+
+        if (compressible) {
+            identityHeaders.add(CachedResponse.header(VARY, "Accept-Encoding"));
+            gzipHeaders.add(CachedResponse.header(VARY, "Accept-Encoding"));
+            gzipHeaders.add(CachedResponse.header(CONTENT_ENCODING, "gzip"));
+            gzipHeaders.add(CachedResponse.header(ConditionalUtils.ETAG, gzipVariant(etag)));
+        }
+        identityHeaders.add(CachedResponse.header(ConditionalUtils.ETAG, etag));
+
+        this.identity = CachedResponse.create(status, contentType, identityHeaders, bytes, -1);
+        this.gzipped = compressible ? CachedResponse.create(status, contentType, gzipHeaders, compressed, -1) : null;
+    }
+
+    /**
+     * Writes the response, compressed if the client accepts gzip. A request with a matching 'If-None-Match' header is
+     * answered with a bodiless '304 Not Modified'.
+     *
+     * @param request  the HTTP servlet request.
+     * @param response the HTTP servlet response.
+     * @throws IOException in case of IO error.
+     */
+    public void writeTo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (gzipped != null && GzipUtils.acceptsGzip(request)) {
+            gzipped.writeTo(request, response);
+        } else {
+            identity.writeTo(request, response);
+        }
+    }
+
+    /**
+     * @return the length of the uncompressed body.
+     */
+    public int getContentLength() {
+        return identity.getContentLength();
+    }
+
+    /**
+     * @return the ETag of the uncompressed body.
+     */
+    public String getETag() {
+        return identity.getHeader(ConditionalUtils.ETAG);
+    }
+
+    private static byte[] serialize(Object body) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new SerializerChain().process(bytes, body != null ? body : "");
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] compress(byte[] bytes) {
+        try {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+            return compressed.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String gzipVariant(String etag) {
+        if (etag.endsWith("\"")) {
+            return etag.substring(0, etag.length() - 1) + "--gzip\"";
+        }
+        return etag + "--gzip";
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.ToLongFunction;
+
+import spark.utils.Assert;
+
+/**
+ * A thread safe least recently used cache bounded by the total weight (typically the size in bytes) of its values.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+public final class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ToLongFunction<V> weigher;
+
+    private long maximumWeight;
+    private long weight = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumWeight the maximum total weight of the values.
+     * @param weigher       calculates the weight of a value.
+     * @param <K>           the key type.
+     * @param <V>           the value type.
+     * @return the cache.
+     */
+    public static <K, V> LruCache<K, V> create(long maximumWeight, ToLongFunction<V> weigher) {
+        return new LruCache<>(maximumWeight, weigher);
+    }
+
+    private LruCache(long maximumWeight, ToLongFunction<V> weigher) {
+        Assert.isTrue(maximumWeight >= 0, "'maximumWeight' must not be negative");
+        Assert.notNull(weigher, "'weigher' must not be null");
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Gets a value and marks it as most recently used.
+     *
+     * @param key the key.
+     * @return the value, or null if not cached.
+     */
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Puts a value, evicting the least recently used values if the maximum weight is exceeded. Values heavier than
+     * the maximum weight are not cached.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return true if the value was cached.
+     */
+    public synchronized boolean put(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+
+        remove(key);
+
+        if (valueWeight > maximumWeight) {
+            return false;
+        }
+
+        entries.put(key, value);
+        weight += valueWeight;
+        evict();
+        return true;
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param key the key.
+     * @return the removed value, or null if not cached.
+     */
+    public synchronized V remove(K key) {
+        V removed = entries.remove(key);
+
+        if (removed != null) {
+            weight -= weigher.applyAsLong(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the values matching the predicate.
+     *
+     * @param predicate the predicate.
+     * @return the number of removed values.
+     */
+    public synchronized int removeIf(BiPredicate<K, V> predicate) {
+        int removed = 0;
+
+        for (Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<K, V> entry = it.next();
+
+            if (predicate.test(entry.getKey(), entry.getValue())) {
+                weight -= weigher.applyAsLong(entry.getValue());
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all values.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Sets the maximum total weight, evicting values if it's exceeded.
+     *
+     * @param maximumWeight the maximum total weight.
+     */
+    public synchronized void maximumWeight(long maximumWeight) {
+        Assert.isTrue(maximumWeight >= 0, "'maximumWeight' must not be negative");
+        this.maximumWeight = maximumWeight;
+        evict();
+    }
+
+    /**
+     * @return the maximum total weight.
+     */
+    public synchronized long maximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * @return the total weight of the cached values.
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    /**
+     * @return the number of cached values.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of lookups that found a value.
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that didn't find a value.
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of values evicted due to the maximum weight.
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private void evict() {
+        for (Iterator<V> it = entries.values().iterator(); weight > maximumWeight && it.hasNext(); ) {
+            V eldest = it.next();
+            weight -= weigher.applyAsLong(eldest);
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+}
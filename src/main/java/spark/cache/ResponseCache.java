@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.cache;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import spark.utils.Assert;
+
+/**
+ * Server-side cache of serialized route responses, bounded by the total size of the cached responses. The least
+ * recently used responses are evicted when the bound is exceeded. Routes are cached with
+ * {@link spark.Service#cache(String, long)}.
+ * <p>
+ * Cached responses are keyed by request path and a variant made of the method, the query string and the negotiated
+ * Accept/Accept-Encoding. Hit ratio, evictions and memory use are exposed so that they can be published as metrics.
+ */
+public final class ResponseCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAXIMUM_ENTRY_SIZE = 1024 * 1024;
+
+    private static final String WILDCARD = "*";
+
+    private final LruCache<Key, CachedResponse> cache = LruCache.create(DEFAULT_MAXIMUM_SIZE, CachedResponse::weight);
+
+    private volatile long maximumEntrySize = DEFAULT_MAXIMUM_ENTRY_SIZE;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a response cache with default bounds.
+     *
+     * @return the response cache.
+     */
+    public static ResponseCache create() {
+        return new ResponseCache();
+    }
+
+    private ResponseCache() {
+        // hidden
+    }
+
+    /**
+     * Sets the maximum total size of the cached responses.
+     *
+     * @param bytes the size in bytes.
+     * @return this cache.
+     */
+    public ResponseCache maximumSize(long bytes) {
+        cache.maximumWeight(bytes);
+        return this;
+    }
+
+    /**
+     * Sets the maximum size of a single response body. Larger responses are not cached.
+     *
+     * @param bytes the size in bytes.
+     * @return this cache.
+     */
+    public ResponseCache maximumEntrySize(long bytes) {
+        Assert.isTrue(bytes >= 0, "'bytes' must not be negative");
+        this.maximumEntrySize = bytes;
+        return this;
+    }
+
+    /**
+     * @return the maximum size of a single response body.
+     */
+    public long maximumEntrySize() {
+        return maximumEntrySize;
+    }
+
+    /**
+     * Gets a cached response.
+     *
+     * @param path    the request path.
+     * @param variant the variant of the request (method, query, negotiated headers).
+     * @return the response, or null if not cached or expired.
+     */
+    public CachedResponse get(String path, String variant) {
+        Key key = new Key(path, variant);
+        CachedResponse response = cache.get(key);
+
+        if (response != null && response.isExpired(System.currentTimeMillis())) {
+            cache.remove(key);
+            response = null;
+        }
+
+        if (response != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return response;
+    }
+
+    /**
+     * Caches a response.
+     *
+     * @param path     the request path.
+     * @param variant  the variant of the request (method, query, negotiated headers).
+     * @param response the response.
+     */
+    public void put(String path, String variant, CachedResponse response) {
+        if (response.getContentLength() <= maximumEntrySize) {
+            cache.put(new Key(path, variant), response);
+        }
+    }
+
+    /**
+     * Invalidates the cached responses of a path, e.g. after the underlying data has changed.
+     *
+     * @param path the request path, or a path prefix ending with '*', e.g. "/api/users/*".
+     * @return the number of invalidated responses.
+     */
+    public int invalidate(String path) {
+        if (path.endsWith(WILDCARD)) {
+            String prefix = path.substring(0, path.length() - 1);
+            return cache.removeIf((key, response) -> key.path.startsWith(prefix));
+        }
+        return cache.removeIf((key, response) -> key.path.equals(path));
+    }
+
+    /**
+     * Invalidates all cached responses.
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    /**
+     * @return the number of requests served from the cache.
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of requests to cached routes that weren't served from the cache.
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the ratio (0.0 - 1.0) of requests to cached routes served from the cache.
+     */
+    public double hitRatio() {
+        long hitCount = hitCount();
+        long total = hitCount + missCount();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return the number of responses evicted due to the maximum size.
+     */
+    public long evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * @return the approximate memory used by the cached responses in bytes.
+     */
+    public long memoryUsage() {
+        return cache.weight();
+    }
+
+    /**
+     * @return the number of cached responses.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    private static final class Key {
+
+        private final String path;
+        private final String variant;
+
+        private Key(String path, String variant) {
+            this.path = path;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return path.equals(key.path) && variant.equals(key.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, variant);
+        }
+    }
+
+}
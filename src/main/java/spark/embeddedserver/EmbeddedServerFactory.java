@@ -18,6 +18,7 @@ package spark.embeddedserver;
 
 import spark.route.Routes;
 import spark.staticfiles.StaticFilesConfiguration;
+import spark.utils.AdaptiveCompression;
 
 /**
  * @author Per Wendel
@@ -28,4 +29,23 @@ public interface EmbeddedServerFactory {
      * Creates an embedded server instance.
      */
     public EmbeddedServer create(Routes routeMatcher, StaticFilesConfiguration staticFilesConfiguration, boolean hasMultipleHandler);
+
+    /**
+     * Creates an embedded server instance which inflates compressed request bodies up to the provided size and
+     * compresses responses with the provided adaptive compression policy.
+     */
+    default EmbeddedServer create(Routes routeMatcher,
+                                  StaticFilesConfiguration staticFilesConfiguration,
+                                  boolean hasMultipleHandler,
+                                  long maxDecompressedRequestSize,
+                                  AdaptiveCompression adaptiveCompression) {
+
+        if (maxDecompressedRequestSize > 0) {
+            NotSupportedException.raise(getClass().getSimpleName(), "Request decompression");
+        }
+        if (adaptiveCompression != null) {
+            NotSupportedException.raise(getClass().getSimpleName(), "Adaptive compression");
+        }
+        return create(routeMatcher, staticFilesConfiguration, hasMultipleHandler);
+    }
 }
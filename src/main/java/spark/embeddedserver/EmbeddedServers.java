@@ -19,9 +19,11 @@ package spark.embeddedserver;
 import java.util.HashMap;
 import java.util.Map;
 
+import spark.embeddedserver.inprocess.EmbeddedInProcessFactory;
 import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 import spark.route.Routes;
 import spark.staticfiles.StaticFilesConfiguration;
+import spark.utils.AdaptiveCompression;
 
 /**
  * Holds and uses the factories for creating different Embedded servers.
@@ -30,13 +32,15 @@ public class EmbeddedServers {
 
     // Default alternatives.
     public enum Identifiers {
-        JETTY
+        JETTY,
+        IN_PROCESS
     }
 
     private static Map<Object, EmbeddedServerFactory> factories = new HashMap<>();
 
     public static void initialize() {
         add(Identifiers.JETTY, new EmbeddedJettyFactory());
+        add(Identifiers.IN_PROCESS, new EmbeddedInProcessFactory());
     }
 
     public static Identifiers defaultIdentifier() {
@@ -50,11 +54,28 @@ public class EmbeddedServers {
                                         Routes routeMatcher,
                                         StaticFilesConfiguration staticFilesConfiguration,
                                         boolean multipleHandlers) {
+        return create(identifier, routeMatcher, staticFilesConfiguration, multipleHandlers, 0, null);
+    }
+
+    /**
+     * Creates an embedded server of type corresponding to the provided identifier, which inflates compressed request
+     * bodies up to the provided size and compresses responses with the provided adaptive compression policy.
+     */
+    public static EmbeddedServer create(Object identifier,
+                                        Routes routeMatcher,
+                                        StaticFilesConfiguration staticFilesConfiguration,
+                                        boolean multipleHandlers,
+                                        long maxDecompressedRequestSize,
+                                        AdaptiveCompression adaptiveCompression) {
 
         EmbeddedServerFactory factory = factories.get(identifier);
 
         if (factory != null) {
-            return factory.create(routeMatcher, staticFilesConfiguration, multipleHandlers);
+            return factory.create(routeMatcher,
+                                  staticFilesConfiguration,
+                                  multipleHandlers,
+                                  maxDecompressedRequestSize,
+                                  adaptiveCompression);
         } else {
             throw new RuntimeException("No embedded server matching the identifier");
         }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.embeddedserver.inprocess;
+
+import spark.embeddedserver.EmbeddedServer;
+import spark.embeddedserver.EmbeddedServerFactory;
+import spark.route.Routes;
+import spark.staticfiles.StaticFilesConfiguration;
+import spark.utils.AdaptiveCompression;
+
+/**
+ * Creates instances of in-process servers, which don't listen on a port.
+ */
+public class EmbeddedInProcessFactory implements EmbeddedServerFactory {
+
+    public EmbeddedServer create(Routes routeMatcher, StaticFilesConfiguration staticFilesConfiguration, boolean hasMultipleHandler) {
+        return new EmbeddedInProcessServer();
+    }
+
+    @Override
+    public EmbeddedServer create(Routes routeMatcher,
+                                 StaticFilesConfiguration staticFilesConfiguration,
+                                 boolean hasMultipleHandler,
+                                 long maxDecompressedRequestSize,
+                                 AdaptiveCompression adaptiveCompression) {
+        // requests are handled by the in-process client, which is given the settings by the service
+        return new EmbeddedInProcessServer();
+    }
+
+}
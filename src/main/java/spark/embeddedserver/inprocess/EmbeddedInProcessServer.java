@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.embeddedserver.inprocess;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import spark.embeddedserver.EmbeddedServer;
+import spark.embeddedserver.NotSupportedException;
+import spark.ssl.SslStores;
+
+/**
+ * Embedded server that doesn't open a socket. The routes are only reachable through an {@link InProcessClient}, e.g.
+ * in tests and benchmarks.
+ */
+public class EmbeddedInProcessServer implements EmbeddedServer {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Override
+    public void ignite(String host,
+                       int port,
+                       SslStores sslStores,
+                       CountDownLatch latch,
+                       int maxThreads,
+                       int minThreads,
+                       int threadIdleTimeoutMillis) {
+
+        logger.info("== Spark is running in-process, no port is listened on");
+        latch.countDown();
+    }
+
+    @Override
+    public void configureWebSockets(Map<String, Class<?>> webSocketHandlers,
+                                    Optional<Integer> webSocketIdleTimeoutMillis) {
+
+        if (webSocketHandlers != null && !webSocketHandlers.isEmpty()) {
+            NotSupportedException.raise(getClass().getSimpleName(), "Web Sockets");
+        }
+    }
+
+    @Override
+    public void extinguish() {
+        // nothing to release
+    }
+
+}
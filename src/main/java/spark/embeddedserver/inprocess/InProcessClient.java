@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.embeddedserver.inprocess;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.Filter;
+import javax.servlet.ServletException;
+
+import spark.http.matching.InMemoryRequest;
+import spark.http.matching.InMemoryResponse;
+
+/**
+ * Socket-free client running requests directly through the Spark pipeline ({@link spark.http.matching.MatcherFilter}),
+ * with requests and responses held in memory. It exercises the same filters, routes, exception mapping and
+ * serialization as requests received by the embedded server, without the cost of loopback networking. Requests
+ * without a parent don't support sessions. The client is thread safe.
+ */
+public final class InProcessClient {
+
+    private final Filter pipeline;
+
+    /**
+     * Creates a client.
+     *
+     * @param pipeline the filter handling the requests, i.e. the matcher filter of a service.
+     * @return the client.
+     */
+    public static InProcessClient create(Filter pipeline) {
+        return new InProcessClient(pipeline);
+    }
+
+    private InProcessClient(Filter pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Runs a GET request.
+     *
+     * @param uri the path, optionally followed by a query string.
+     * @return the response, holding status, headers and body.
+     * @throws IOException in case of IO error.
+     */
+    public InMemoryResponse get(String uri) throws IOException {
+        return request("GET", uri, null);
+    }
+
+    /**
+     * Runs a request.
+     *
+     * @param method the HTTP method, e.g. "POST".
+     * @param uri    the path, optionally followed by a query string.
+     * @param body   the body, or null.
+     * @return the response, holding status, headers and body.
+     * @throws IOException in case of IO error.
+     */
+    public InMemoryResponse request(String method, String uri, String body) throws IOException {
+        return request(method, uri, null, body);
+    }
+
+    /**
+     * Runs a request.
+     *
+     * @param method  the HTTP method, e.g. "POST".
+     * @param uri     the path, optionally followed by a query string.
+     * @param headers the request headers, or null.
+     * @param body    the body, or null.
+     * @return the response, holding status, headers and body.
+     * @throws IOException in case of IO error.
+     */
+    public InMemoryResponse request(String method,
+                                    String uri,
+                                    Map<String, String> headers,
+                                    String body) throws IOException {
+
+        InMemoryRequest request = InMemoryRequest.create(method, uri);
+
+        if (headers != null) {
+            headers.forEach(request::header);
+        }
+        return execute(request.body(body));
+    }
+
+    /**
+     * Runs a request.
+     *
+     * @param request the request.
+     * @return the response, holding status, headers and body.
+     * @throws IOException in case of IO error.
+     */
+    public InMemoryResponse execute(InMemoryRequest request) throws IOException {
+        InMemoryResponse response = InMemoryResponse.create();
+
+        try {
+            pipeline.doFilter(request, response, null);
+        } catch (ServletException e) {
+            throw new IOException(e);
+        }
+        return response;
+    }
+
+}
@@ -21,6 +21,7 @@ import spark.embeddedserver.EmbeddedServerFactory;
 import spark.http.matching.MatcherFilter;
 import spark.route.Routes;
 import spark.staticfiles.StaticFilesConfiguration;
+import spark.utils.AdaptiveCompression;
 
 /**
  * Creates instances of embedded jetty containers.
@@ -28,11 +29,26 @@ import spark.staticfiles.StaticFilesConfiguration;
 public class EmbeddedJettyFactory implements EmbeddedServerFactory {
 
     public EmbeddedServer create(Routes routeMatcher, StaticFilesConfiguration staticFilesConfiguration, boolean hasMultipleHandler) {
-        MatcherFilter matcherFilter = new MatcherFilter(routeMatcher, staticFilesConfiguration, false, hasMultipleHandler);
+        return create(routeMatcher, staticFilesConfiguration, hasMultipleHandler, 0, null);
+    }
+
+    @Override
+    public EmbeddedServer create(Routes routeMatcher,
+                                 StaticFilesConfiguration staticFilesConfiguration,
+                                 boolean hasMultipleHandler,
+                                 long maxDecompressedRequestSize,
+                                 AdaptiveCompression adaptiveCompression) {
+
+        MatcherFilter matcherFilter = new MatcherFilter(routeMatcher,
+                                                        staticFilesConfiguration,
+                                                        false,
+                                                        hasMultipleHandler,
+                                                        maxDecompressedRequestSize,
+                                                        adaptiveCompression);
         matcherFilter.init(null);
 
         JettyHandler handler = new JettyHandler(matcherFilter);
-        return new EmbeddedJettyServer(handler);
+        return new EmbeddedJettyServer(handler, adaptiveCompression);
     }
 
 }
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
+import java.util.function.DoubleSupplier;
 
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
@@ -30,12 +31,14 @@ import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.thread.ThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import spark.ssl.SslStores;
 import spark.embeddedserver.EmbeddedServer;
 import spark.embeddedserver.jetty.websocket.WebSocketServletContextHandlerFactory;
+import spark.utils.AdaptiveCompression;
 
 /**
  * Spark server implementation
@@ -50,13 +53,24 @@ public class EmbeddedJettyServer implements EmbeddedServer {
     private Handler handler;
     private Server server;
 
+    private final AdaptiveCompression adaptiveCompression;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private Map<String, Class<?>> webSocketHandlers;
     private Optional<Integer> webSocketIdleTimeoutMillis;
 
     public EmbeddedJettyServer(Handler handler) {
+        this(handler, null);
+    }
+
+    /**
+     * @param handler             the handler.
+     * @param adaptiveCompression the adaptive compression policy sampling the worker pool of this server, or null.
+     */
+    public EmbeddedJettyServer(Handler handler, AdaptiveCompression adaptiveCompression) {
         this.handler = handler;
+        this.adaptiveCompression = adaptiveCompression;
     }
 
     @Override
@@ -101,6 +115,10 @@ public class EmbeddedJettyServer implements EmbeddedServer {
         server = connector.getServer();
         server.setConnectors(new Connector[] {connector});
 
+        if (adaptiveCompression != null) {
+            adaptiveCompression.workerPool(workerPoolUtilisation(server.getThreadPool()));
+        }
+
         ServletContextHandler webSocketServletContextHandler =
                 WebSocketServletContextHandlerFactory.create(webSocketHandlers, webSocketIdleTimeoutMillis);
 
@@ -134,6 +152,22 @@ public class EmbeddedJettyServer implements EmbeddedServer {
         }
     }
 
+    /**
+     * @return the utilisation (busy threads / max threads) of the thread pool, or null if it can't be determined.
+     */
+    private static DoubleSupplier workerPoolUtilisation(ThreadPool threadPool) {
+        if (!(threadPool instanceof ThreadPool.SizedThreadPool)) {
+            return null;
+        }
+
+        ThreadPool.SizedThreadPool pool = (ThreadPool.SizedThreadPool) threadPool;
+
+        return () -> {
+            int max = pool.getMaxThreads();
+            return max > 0 ? (double) (pool.getThreads() - pool.getIdleThreads()) / max : 0.0;
+        };
+    }
+
     /**
      * {@inheritDoc}
      */
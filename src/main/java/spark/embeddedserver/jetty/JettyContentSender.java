@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.embeddedserver.jetty;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * Sends content through Jetty's {@link HttpOutput}, which writes buffers and channels to the connection without copying
+ * them through a heap buffer. Only loaded when Jetty is in the class path.
+ */
+public final class JettyContentSender {
+
+    // Hide constructor
+    private JettyContentSender() {
+
+    }
+
+    /**
+     * @param outputStream the output stream of a response.
+     * @return true if the content can be sent through the output stream.
+     */
+    public static boolean supports(OutputStream outputStream) {
+        return outputStream instanceof HttpOutput;
+    }
+
+    /**
+     * Sends a buffer, e.g. a memory mapped file, as the content of a response.
+     *
+     * @param outputStream the output stream of the response.
+     * @param content      the content.
+     * @throws IOException in case of IO error.
+     */
+    public static void send(OutputStream outputStream, ByteBuffer content) throws IOException {
+        ((HttpOutput) outputStream).sendContent(content);
+    }
+
+    /**
+     * Sends a channel, e.g. a file channel, as the content of a response.
+     *
+     * @param outputStream the output stream of the response.
+     * @param content      the content.
+     * @throws IOException in case of IO error.
+     */
+    public static void send(OutputStream outputStream, ReadableByteChannel content) throws IOException {
+        ((HttpOutput) outputStream).sendContent(content);
+    }
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import spark.utils.AdaptiveCompression;
+import spark.utils.Assert;
+import spark.utils.GzipUtils;
+import spark.utils.IOUtils;
+import spark.utils.JsonUtils;
+
+/**
+ * Endpoint running many sub-requests through the Spark pipeline in one HTTP call. The body of the batch request is a
+ * JSON array of sub-requests:
+ * <pre>
+ * [{"method": "GET", "path": "/users/1?fields=name", "headers": {"Accept": "application/json"}},
+ *  {"method": "POST", "path": "/events", "body": "{...}"}]
+ * </pre>
+ * and the response is a JSON array with one result per sub-request, in the same order:
+ * <pre>
+ * [{"status": 200, "headers": {"Content-Type": "application/json"}, "body": "{...}"}, ...]
+ * </pre>
+ * A body that isn't text is base64 encoded and marked with {@code "bodyEncoding": "base64"}.
+ * <p>
+ * Sub-requests run the same filters, routes and exception mapping as real requests. They inherit the headers (e.g.
+ * authorization and cookies), session and connection information of the batch request, their own headers take
+ * precedence. The information is copied before the sub-requests run, so they don't share the batch request across
+ * threads. The 'Accept' and body describing headers are not inherited. Consecutive safe sub-requests (GET, HEAD,
+ * OPTIONS) run in parallel on a bounded executor, any other sub-request runs on its own, after the preceding ones have
+ * completed. A sub-request can't target a batch endpoint, it's answered with a 400 (Bad Request).
+ */
+public final class BatchEndpoint {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(BatchEndpoint.class);
+
+    private static final Set<String> SAFE_METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS"));
+
+    // headers of the batch request describing its own body and representation, not inherited by the sub-requests
+    private static final Set<String> NOT_INHERITED_HEADERS = new HashSet<>(Arrays.asList(
+            "accept", "accept-encoding", "content-type", "content-length", "content-encoding", "transfer-encoding",
+            "x-http-method-override"));
+
+    // marks the sub-requests, so they can't run a batch of their own
+    private static final String SUB_REQUEST_ATTRIBUTE = BatchEndpoint.class.getName() + ".subRequest";
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final int maxRequests;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates a batch endpoint.
+     *
+     * @param maxRequests the maximum number of sub-requests in a batch.
+     * @param parallelism the maximum number of sub-requests running in parallel, over all batches.
+     * @return the batch endpoint.
+     */
+    public static BatchEndpoint create(int maxRequests, int parallelism) {
+        return new BatchEndpoint(maxRequests, parallelism);
+    }
+
+    private BatchEndpoint(int maxRequests, int parallelism) {
+        Assert.isTrue(maxRequests > 0, "'maxRequests' must be positive");
+        Assert.isTrue(parallelism > 0, "'parallelism' must be positive");
+
+        this.maxRequests = maxRequests;
+
+        // when all threads are busy and the queue is full the sub-request runs on the thread handling the batch
+        this.executor = new ThreadPoolExecutor(parallelism,
+                                               parallelism,
+                                               60,
+                                               TimeUnit.SECONDS,
+                                               new ArrayBlockingQueue<>(parallelism * 4),
+                                               runnable -> {
+                                                   Thread thread = new Thread(
+                                                           runnable,
+                                                           "spark-batch-" + THREAD_NUMBER.incrementAndGet());
+                                                   thread.setDaemon(true);
+                                                   return thread;
+                                               },
+                                               new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the maximum number of sub-requests in a batch.
+     */
+    public int maxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * Handles a batch request.
+     *
+     * @param httpRequest         the batch request.
+     * @param httpResponse        the batch response.
+     * @param pipeline            the filter running the sub-requests.
+     * @param adaptiveCompression the adaptive compression policy of the service, or null.
+     */
+    void handle(HttpServletRequest httpRequest,
+                HttpServletResponse httpResponse,
+                Filter pipeline,
+                AdaptiveCompression adaptiveCompression) throws IOException {
+
+        if (httpRequest.getAttribute(SUB_REQUEST_ATTRIBUTE) != null) {
+            // a sub-request targeting a batch endpoint would multiply the sub-requests of its batch
+            badRequest(httpResponse, "Batch requests can't be nested");
+            return;
+        }
+
+        // the sub-requests running in parallel use a copy, not the request handled by this thread
+        ParentRequest parent = ParentRequest.of(httpRequest);
+
+        List<InMemoryRequest> requests;
+        try {
+            requests = parse(httpRequest, parent);
+        } catch (IllegalArgumentException e) {
+            badRequest(httpResponse, "Invalid batch: " + e.getMessage());
+            return;
+        }
+
+        InMemoryResponse[] responses = new InMemoryResponse[requests.size()];
+        List<Future<?>> parallel = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                InMemoryRequest request = requests.get(i);
+                InMemoryResponse response = InMemoryResponse.create();
+                responses[i] = response;
+
+                if (SAFE_METHODS.contains(request.getMethod())) {
+                    parallel.add(executor.submit(() -> run(pipeline, request, response)));
+                } else {
+                    // an unsafe sub-request must see the effects of the preceding ones and vice versa
+                    await(parallel);
+                    run(pipeline, request, response);
+                }
+            }
+            await(parallel);
+        } finally {
+            // sub-requests still running, e.g. when interrupted, must not use the request once it completes
+            parent.close();
+        }
+
+        List<Object> results = new ArrayList<>(responses.length);
+        for (InMemoryResponse response : responses) {
+            results.add(result(response));
+        }
+
+        byte[] json = JsonUtils.toJson(results).getBytes(StandardCharsets.UTF_8);
+
+        httpResponse.setContentType("application/json; charset=utf-8");
+
+        OutputStream responseStream =
+                GzipUtils.checkAndWrap(httpRequest, httpResponse, false, json.length, adaptiveCompression);
+        responseStream.write(json);
+        responseStream.flush();
+        responseStream.close();
+    }
+
+    private static void badRequest(HttpServletResponse httpResponse, String message) throws IOException {
+        httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        httpResponse.setContentType("text/plain; charset=utf-8");
+        httpResponse.getOutputStream().write(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<InMemoryRequest> parse(HttpServletRequest httpRequest, ParentRequest parent) throws IOException {
+        String encoding = httpRequest.getCharacterEncoding() != null
+                ? httpRequest.getCharacterEncoding()
+                : StandardCharsets.UTF_8.name();
+
+        Object json = JsonUtils.parse(new String(IOUtils.toByteArray(httpRequest.getInputStream()), encoding));
+
+        if (!(json instanceof List)) {
+            throw new IllegalArgumentException("Expected an array of sub-requests");
+        }
+
+        List<?> array = (List<?>) json;
+        if (array.size() > maxRequests) {
+            throw new IllegalArgumentException(array.size() + " sub-requests exceed the maximum of " + maxRequests);
+        }
+
+        List<InMemoryRequest> requests = new ArrayList<>(array.size());
+
+        for (Object element : array) {
+            if (!(element instanceof Map)) {
+                throw new IllegalArgumentException("Expected a sub-request object");
+            }
+
+            Map<?, ?> object = (Map<?, ?>) element;
+            Object method = object.get("method");
+            Object path = object.get("path");
+
+            if (!(path instanceof String) || !((String) path).startsWith("/")) {
+                throw new IllegalArgumentException("Expected an absolute path in every sub-request");
+            }
+
+            InMemoryRequest request = InMemoryRequest
+                    .create(method instanceof String ? (String) method : "GET", (String) path)
+                    .withParent(parent);
+            request.setAttribute(SUB_REQUEST_ATTRIBUTE, Boolean.TRUE);
+
+            Map<?, ?> headers = object.get("headers") instanceof Map
+                    ? (Map<?, ?>) object.get("headers")
+                    : Collections.emptyMap();
+
+            for (String name : Collections.list(httpRequest.getHeaderNames())) {
+                if (!NOT_INHERITED_HEADERS.contains(name.toLowerCase(Locale.ROOT))
+                        && !containsIgnoreCase(headers, name)) {
+                    for (String value : Collections.list(httpRequest.getHeaders(name))) {
+                        request.header(name, value);
+                    }
+                }
+            }
+            for (Map.Entry<?, ?> header : headers.entrySet()) {
+                request.header(String.valueOf(header.getKey()), String.valueOf(header.getValue()));
+            }
+
+            Object body = object.get("body");
+            if (body != null) {
+                request.body(body instanceof String ? (String) body : JsonUtils.toJson(body));
+            }
+
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private static boolean containsIgnoreCase(Map<?, ?> headers, String name) {
+        for (Object key : headers.keySet()) {
+            if (name.equalsIgnoreCase(String.valueOf(key))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void run(Filter pipeline, InMemoryRequest request, InMemoryResponse response) {
+        try {
+            pipeline.doFilter(request, response, null);
+        } catch (Exception e) {
+            // the exception mappers have already run, this is a failure of the pipeline itself
+            LOG.error("Batched request [" + request.getMethod() + " " + request.getPathInfo() + "] failed", e);
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static void await(List<Future<?>> futures) throws IOException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for batched requests", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            futures.clear();
+        }
+    }
+
+    private static Map<String, Object> result(InMemoryResponse response) throws UnsupportedEncodingException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", response.getStatus());
+
+        Map<String, Object> headers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : response.headers().entrySet()) {
+            List<String> values = header.getValue();
+            headers.put(header.getKey(), values.size() == 1 ? values.get(0) : values);
+        }
+        result.put("headers", headers);
+
+        byte[] body = response.body();
+        if (isText(response.getContentType())) {
+            result.put("body", new String(body, response.getCharacterEncoding()));
+        } else {
+            result.put("body", Base64.getEncoder().encodeToString(body));
+            result.put("bodyEncoding", "base64");
+        }
+        return result;
+    }
+
+    private static boolean isText(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/")
+                || type.contains("json")
+                || type.contains("xml")
+                || type.contains("javascript")
+                || type.startsWith("application/x-www-form-urlencoded");
+    }
+
+}
@@ -18,6 +18,7 @@ package spark.http.matching;
 
 import java.util.List;
 
+import spark.CacheableFilter;
 import spark.FilterImpl;
 import spark.Request;
 import spark.RequestResponseFactory;
@@ -30,6 +31,17 @@ import spark.routematch.RouteMatch;
 final class BeforeFilters {
 
     static void execute(RouteContext context) throws Exception {
+        execute(context, false);
+    }
+
+    /**
+     * Executes the Before filters
+     *
+     * @param context       the route context
+     * @param skipCacheable if filters marked as {@link CacheableFilter} should be skipped, i.e. when the response is
+     *                      served from the cache
+     */
+    static void execute(RouteContext context, boolean skipCacheable) throws Exception {
         Object content = context.body().get();
 
         List<RouteMatch> matchSet = context.routeMatcher().findMultiple(HttpMethod.before, context.uri(), context.acceptType());
@@ -38,10 +50,14 @@ final class BeforeFilters {
             Object filterTarget = filterMatch.getTarget();
 
             if (filterTarget instanceof FilterImpl) {
-                Request request = RequestResponseFactory.create(filterMatch, context.httpRequest());
-
                 FilterImpl filter = (FilterImpl) filterTarget;
 
+                if (skipCacheable && filter.delegate() instanceof CacheableFilter) {
+                    continue;
+                }
+
+                Request request = RequestResponseFactory.create(filterMatch, context.httpRequest());
+
                 context.requestWrapper().setDelegate(request);
                 context.responseWrapper().setDelegate(context.response());
 
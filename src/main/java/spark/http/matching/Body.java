@@ -16,12 +16,17 @@
  */
 package spark.http.matching;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import spark.utils.AdaptiveCompression;
+import spark.utils.ConditionalUtils;
 import spark.utils.GzipUtils;
 import spark.serialization.SerializerChain;
 
@@ -59,14 +64,49 @@ final class Body {
     public void serializeTo(HttpServletResponse httpResponse,
                             SerializerChain serializerChain,
                             HttpServletRequest httpRequest) throws IOException {
+        serializeTo(httpResponse, serializerChain, httpRequest, false);
+    }
+
+    public void serializeTo(HttpServletResponse httpResponse,
+                            SerializerChain serializerChain,
+                            HttpServletRequest httpRequest,
+                            boolean conditional) throws IOException {
+        serializeTo(httpResponse, serializerChain, httpRequest, conditional, null);
+    }
+
+    /**
+     * Serializes the body to the response.
+     *
+     * @param httpResponse        the HTTP servlet response.
+     * @param serializerChain     the serializer chain.
+     * @param httpRequest         the HTTP servlet request.
+     * @param conditional         if a '200 OK' body should get an ETag and be answered with '304 Not Modified' when
+     *                            it matches the 'If-None-Match' header of the request.
+     * @param adaptiveCompression the adaptive compression policy of the service, or null.
+     * @throws IOException in case of IO error.
+     */
+    public void serializeTo(HttpServletResponse httpResponse,
+                            SerializerChain serializerChain,
+                            HttpServletRequest httpRequest,
+                            boolean conditional,
+                            AdaptiveCompression adaptiveCompression) throws IOException {
 
         if (!httpResponse.isCommitted()) {
             if (httpResponse.getContentType() == null) {
                 httpResponse.setContentType("text/html; charset=utf-8");
             }
 
+            // Streams are not buffered in memory, so they are always sent
+            if (conditional
+                    && httpResponse.getStatus() == HttpServletResponse.SC_OK
+                    && !(content instanceof InputStream)) {
+                serializeConditionallyTo(httpResponse, serializerChain, httpRequest, adaptiveCompression);
+                return;
+            }
+
             // Check if gzip is wanted/accepted and in that case handle that
-            OutputStream responseStream = GzipUtils.checkAndWrap(httpRequest, httpResponse, true);
+            OutputStream responseStream =
+                    GzipUtils.checkAndWrap(httpRequest, httpResponse, true, contentLength(), adaptiveCompression);
 
             // serialize the body to output stream
             serializerChain.process(responseStream, content);
@@ -76,5 +116,60 @@ final class Body {
         }
     }
 
+    private void serializeConditionallyTo(HttpServletResponse httpResponse,
+                                          SerializerChain serializerChain,
+                                          HttpServletRequest httpRequest,
+                                          AdaptiveCompression adaptiveCompression) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializerChain.process(bytes, content);
+
+        byte[] serialized = bytes.toByteArray();
+
+        // an ETag set by the route takes precedence
+        String etag = httpResponse.getHeader(ConditionalUtils.ETAG);
+        if (etag == null) {
+            etag = ConditionalUtils.etag(serialized, 0, serialized.length);
+        }
+
+        // the representation differs when compressed, so the compressed one gets its own tag
+        String gzipEtag = gzipVariant(etag);
+        String ifNoneMatch = httpRequest.getHeader(ConditionalUtils.IF_NONE_MATCH);
+
+        if (ConditionalUtils.matches(ifNoneMatch, etag) || ConditionalUtils.matches(ifNoneMatch, gzipEtag)) {
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            httpResponse.setHeader(ConditionalUtils.ETAG, etag);
+            return;
+        }
+
+        OutputStream responseStream =
+                GzipUtils.checkAndWrap(httpRequest, httpResponse, true, serialized.length, adaptiveCompression);
+
+        httpResponse.setHeader(ConditionalUtils.ETAG, responseStream instanceof GZIPOutputStream ? gzipEtag : etag);
+
+        responseStream.write(serialized);
+        responseStream.flush();
+        responseStream.close();
+    }
+
+    private static String gzipVariant(String etag) {
+        if (etag.endsWith("\"")) {
+            return etag.substring(0, etag.length() - 1) + "--gzip\"";
+        }
+        return etag + "--gzip";
+    }
+
+    /**
+     * @return the (approximate) length of the content in bytes, or -1 if it isn't known before serialization.
+     */
+    private long contentLength() {
+        if (content instanceof byte[]) {
+            return ((byte[]) content).length;
+        } else if (content instanceof String) {
+            return ((String) content).length();
+        }
+        return -1;
+    }
+
 
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import spark.cache.CachedResponse;
+
+/**
+ * Response wrapper that keeps a copy of the status, headers and body bytes written to the response so that it can be
+ * replayed from a cache.
+ */
+final class CapturingResponseWrapper extends HttpServletResponseWrapper {
+
+    private static final String SET_COOKIE = "Set-Cookie";
+    private static final String VARY = "Vary";
+    private static final String CACHE_CONTROL = "Cache-Control";
+
+    // headers that describe the connection or the body framing, or are added by the server
+    private static final Set<String> NOT_CAPTURED = caseInsensitiveSet(
+            "Content-Type", "Content-Length", "Transfer-Encoding", "Connection", "Date", "Server");
+
+    // the cache key includes these, so they may vary
+    private static final Set<String> VARY_IN_KEY = caseInsensitiveSet("Accept", "Accept-Encoding");
+
+    private final long maxSize;
+
+    private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    CapturingResponseWrapper(HttpServletResponse response, long maxSize) {
+        super(response);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        resetCaptured();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        resetCaptured();
+    }
+
+    /**
+     * Creates a cached response from the captured response.
+     *
+     * @param expiresAt the time in milliseconds since epoch when the response expires.
+     * @return the cached response, or null if the response must not be cached.
+     */
+    CachedResponse toCachedResponse(long expiresAt) {
+        flushWriter();
+
+        if (getStatus() != HttpServletResponse.SC_OK || !isCacheable()) {
+            return null;
+        }
+        return snapshot(expiresAt);
+    }
+
+    /**
+     * Creates a response from the captured response that can be shared with identical concurrent requests.
+     *
+     * @return the shared response, or null if the response must not be shared.
+     */
+    CachedResponse toSharedResponse() {
+        flushWriter();
+
+        // e.g. a '304 Not Modified' answers the validators of the leading request only
+        if (getStatus() != HttpServletResponse.SC_OK) {
+            return null;
+        }
+        if (containsHeader(SET_COOKIE)) {
+            // never hand out another client's cookies
+            return null;
+        }
+        return snapshot(-1);
+    }
+
+    private CachedResponse snapshot(long expiresAt) {
+        if (captured == null) {
+            return null;
+        }
+
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+
+        for (String name : getHeaderNames()) {
+            if (!NOT_CAPTURED.contains(name)) {
+                for (String value : getHeaders(name)) {
+                    headers.add(CachedResponse.header(name, value));
+                }
+            }
+        }
+
+        return CachedResponse.create(getStatus(), getContentType(), headers, captured.toByteArray(), expiresAt);
+    }
+
+    private void flushWriter() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private boolean isCacheable() {
+        if (containsHeader(SET_COOKIE)) {
+            return false;
+        }
+
+        String cacheControl = getHeader(CACHE_CONTROL);
+        if (cacheControl != null && (cacheControl.contains("no-store") || cacheControl.contains("private"))) {
+            return false;
+        }
+
+        for (String vary : getHeaders(VARY)) {
+            for (String name : vary.split(",")) {
+                if (!VARY_IN_KEY.contains(name.trim())) {
+                    // varies on something not in the cache key, e.g. '*' or 'Cookie'
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void resetCaptured() {
+        if (captured != null) {
+            captured.reset();
+        }
+    }
+
+    private void capture(byte[] bytes, int offset, int length) {
+        if (captured != null) {
+            if (captured.size() + length > maxSize) {
+                // too large to be cached
+                captured = null;
+            } else {
+                captured.write(bytes, offset, length);
+            }
+        }
+    }
+
+    private static Set<String> caseInsensitiveSet(String... values) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(Arrays.asList(values));
+        return set;
+    }
+
+    /**
+     * Output stream writing to the response while keeping a copy of the bytes.
+     */
+    private class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private CapturingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            capture(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+
+}
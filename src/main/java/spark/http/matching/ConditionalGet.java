@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+/**
+ * Route option enabling conditional GET for dynamic responses. The serialized body of a '200 OK' response gets a
+ * strong ETag and requests with a matching 'If-None-Match' header are answered with a bodiless '304 Not Modified'.
+ */
+public final class ConditionalGet {
+
+    private static final ConditionalGet INSTANCE = new ConditionalGet();
+
+    /**
+     * @return the conditional GET option.
+     */
+    public static ConditionalGet create() {
+        return INSTANCE;
+    }
+
+    private ConditionalGet() {
+        // hidden
+    }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import spark.MalformedBodyException;
+import spark.PayloadTooLargeException;
+
+/**
+ * Transparently inflates request bodies sent with 'Content-Encoding: gzip' or 'Content-Encoding: deflate'.
+ * The body is inflated while it is read, both when read by {@link spark.Request#body()} and when streamed from
+ * {@link spark.Request#raw()}. Reading more than the configured number of decompressed bytes halts the request with
+ * '413 Payload Too Large' to defend against decompression bombs, a body that isn't valid compressed data halts it with
+ * '400 Bad Request'.
+ */
+final class DecompressingRequestWrapper extends HttpServletRequestWrapper {
+
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String encoding;
+    private final long maxDecompressedSize;
+
+    // the same stream is returned by every call, as the container does with the compressed one
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+
+    /**
+     * Wraps the request if the body is encoded with a supported content encoding.
+     *
+     * @param request             the HTTP servlet request.
+     * @param maxDecompressedSize the max number of decompressed bytes that may be read.
+     * @return the wrapped request or the unchanged request if the body isn't compressed.
+     */
+    static HttpServletRequest wrapIfCompressed(HttpServletRequest request, long maxDecompressedSize) {
+        String contentEncoding = request.getHeader(CONTENT_ENCODING);
+
+        if (contentEncoding == null) {
+            return request;
+        }
+
+        String encoding = contentEncoding.trim().toLowerCase();
+
+        if (GZIP.equals(encoding) || X_GZIP.equals(encoding) || DEFLATE.equals(encoding)) {
+            return new DecompressingRequestWrapper(request, encoding, maxDecompressedSize);
+        }
+        return request;
+    }
+
+    private DecompressingRequestWrapper(HttpServletRequest request, String encoding, long maxDecompressedSize) {
+        super(request);
+        this.encoding = encoding;
+        this.maxDecompressedSize = maxDecompressedSize;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            try {
+                inputStream = new InflatingServletInputStream(inflate(super.getInputStream()), maxDecompressedSize);
+            } catch (ZipException | EOFException e) {
+                // the gzip header is read right away
+                throw new MalformedBodyException(e);
+            }
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            String characterEncoding = getCharacterEncoding();
+            reader = new BufferedReader(new InputStreamReader(getInputStream(),
+                                                              characterEncoding != null
+                                                                      ? characterEncoding
+                                                                      : "ISO-8859-1"));
+        }
+        return reader;
+    }
+
+    @Override
+    public int getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return -1;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return isHidden(name) ? null : super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        List<String> names = new ArrayList<>();
+
+        for (String name : Collections.list(super.getHeaderNames())) {
+            if (!isHidden(name)) {
+                names.add(name);
+            }
+        }
+        return Collections.enumeration(names);
+    }
+
+    /**
+     * The encoding and length headers describe the compressed body and are hidden from handlers.
+     */
+    private static boolean isHidden(String name) {
+        return CONTENT_ENCODING.equalsIgnoreCase(name) || CONTENT_LENGTH.equalsIgnoreCase(name);
+    }
+
+    private InputStream inflate(InputStream compressed) throws IOException {
+        if (DEFLATE.equals(encoding)) {
+            // 'deflate' should be zlib wrapped but some clients send raw deflate data
+            PushbackInputStream pushback = new PushbackInputStream(compressed, 2);
+            int first = pushback.read();
+            int second = pushback.read();
+
+            if (second != -1) {
+                pushback.unread(second);
+            }
+            if (first != -1) {
+                pushback.unread(first);
+            }
+
+            boolean zlibWrapped = first != -1 && second != -1
+                    && (first & 0x0F) == 8 && ((first << 8) | second) % 31 == 0;
+
+            return new InflaterInputStream(pushback, new Inflater(!zlibWrapped), BUFFER_SIZE);
+        }
+        return new GZIPInputStream(compressed, BUFFER_SIZE);
+    }
+
+    /**
+     * Servlet input stream that counts the inflated bytes and halts when the limit is exceeded.
+     */
+    private static class InflatingServletInputStream extends ServletInputStream {
+
+        private final InputStream inflated;
+        private final long limit;
+
+        private long count = 0;
+        private boolean finished = false;
+
+        InflatingServletInputStream(InputStream inflated, long limit) {
+            this.inflated = inflated;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            try {
+                b = inflated.read();
+            } catch (ZipException | EOFException e) {
+                throw new MalformedBodyException(e);
+            }
+
+            if (b == -1) {
+                finished = true;
+            } else {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read;
+            try {
+                read = inflated.read(b, off, len);
+            } catch (ZipException | EOFException e) {
+                // corrupt or truncated
+                throw new MalformedBodyException(e);
+            }
+
+            if (read == -1) {
+                finished = true;
+            } else {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflated.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new IllegalStateException("Non-blocking reads are not supported for compressed request bodies");
+        }
+
+        private void count(int read) {
+            count += read;
+
+            if (limit > 0 && count > limit) {
+                throw new PayloadTooLargeException(limit);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+import spark.ForwardException;
+import spark.route.HttpMethod;
+import spark.routematch.RouteMatch;
+import spark.utils.Assert;
+
+/**
+ * Re-enters the route matching for another path or method within the same exchange, without an HTTP round trip.
+ * The request, including its already read body, and the response are shared. One dispatcher exists per exchange and
+ * limits the depth of nested forwards and dispatches to prevent loops.
+ */
+public final class Dispatcher {
+
+    /**
+     * The name of the request attribute holding the dispatcher of the exchange.
+     */
+    public static final String ATTRIBUTE = Dispatcher.class.getName();
+
+    /**
+     * The maximum number of nested forwards and dispatches of an exchange.
+     */
+    public static final int MAX_DEPTH = 10;
+
+    private final RouteContext context;
+
+    private int depth;
+
+    static Dispatcher create(RouteContext context) {
+        return new Dispatcher(context);
+    }
+
+    private Dispatcher(RouteContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Executes the route matching the context, following the forwards of the routes.
+     */
+    void execute(RouteContext routeContext) throws Exception {
+        try {
+            Routes.execute(routeContext);
+        } catch (ForwardException forward) {
+            HttpMethod method = forward.method() != null ? method(forward.method()) : routeContext.httpMethod();
+
+            enter(forward.path());
+            try {
+                // the forwarded route produces the body of the exchange
+                execute(routeContext(method, forward.path(), routeContext.body()));
+            } finally {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Invokes the route mapped to the method and path and returns its result, e.g. to compose a response of other
+     * routes. The route can set headers and the status of the shared response.
+     *
+     * @param method the HTTP method, e.g. "GET"
+     * @param path   the path, without query string
+     * @return the result of the route, or null if no route is mapped to the method and path
+     * @throws Exception the exception thrown by the route
+     */
+    public Object dispatch(String method, String path) throws Exception {
+        Assert.notNull(path, "'path' must not be null");
+
+        RequestWrapper requestWrapper = context.requestWrapper();
+        RouteMatch match = requestWrapper.getMatch();
+
+        enter(path);
+        try {
+            RouteContext dispatched = routeContext(method(method), path, Body.create());
+            execute(dispatched);
+            return dispatched.body().get();
+        } finally {
+            depth--;
+            if (match != null) {
+                // the params of the dispatching route
+                requestWrapper.changeMatch(match);
+            }
+        }
+    }
+
+    private void enter(String path) {
+        if (depth >= MAX_DEPTH) {
+            throw new IllegalStateException("Maximum dispatch depth of " + MAX_DEPTH + " exceeded for [" + path + "]");
+        }
+        depth++;
+    }
+
+    private RouteContext routeContext(HttpMethod method, String path, Body body) {
+        return RouteContext.create()
+                .withMatcher(context.routeMatcher())
+                .withHttpRequest(context.httpRequest())
+                .withUri(path)
+                .withAcceptType(context.acceptType())
+                .withBody(body)
+                .withRequestWrapper(context.requestWrapper())
+                .withResponseWrapper(context.responseWrapper())
+                .withResponse(context.response())
+                .withHttpMethod(method);
+    }
+
+    private static HttpMethod method(String method) {
+        HttpMethod httpMethod = HttpMethod.get(method.toLowerCase());
+        Assert.isTrue(httpMethod != HttpMethod.unsupported, "Unsupported HTTP method: " + method);
+        return httpMethod;
+    }
+
+}
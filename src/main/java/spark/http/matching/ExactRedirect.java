@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A redirect of an exact path, held in the exact path index of the routes so that large redirect tables are looked
+ * up in constant time instead of being scanned as routes. See {@link spark.Redirect#table(java.util.Map)}.
+ */
+public final class ExactRedirect {
+
+    private final String location;
+    private final int status;
+
+    /**
+     * Creates a redirect.
+     *
+     * @param location the location to redirect to.
+     * @param status   the 3XX status code, or -1 for the default '302 Found'.
+     * @return the redirect.
+     */
+    public static ExactRedirect create(String location, int status) {
+        return new ExactRedirect(location, status);
+    }
+
+    private ExactRedirect(String location, int status) {
+        this.location = location;
+        this.status = status;
+    }
+
+    /**
+     * @return the location to redirect to.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return the 3XX status code, or -1 for the default '302 Found'.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Checks if the redirect applies to a request method. Like {@link spark.Redirect#any(String, String)} it applies
+     * to GET, POST, PUT and DELETE requests, and to HEAD requests like all GET routes.
+     *
+     * @param method the HTTP method.
+     * @return true if the redirect applies.
+     */
+    boolean appliesTo(String method) {
+        switch (method.toUpperCase()) {
+            case "GET":
+            case "HEAD":
+            case "POST":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Writes the redirect.
+     *
+     * @param response the HTTP servlet response.
+     * @throws IOException in case of IO error.
+     */
+    void writeTo(HttpServletResponse response) throws IOException {
+        if (status < 0) {
+            response.sendRedirect(location);
+        } else {
+            response.setStatus(status);
+            response.setHeader("Location", location);
+            response.setContentLength(0);
+        }
+    }
+
+}
@@ -0,0 +1,678 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ReadListener;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpUpgradeHandler;
+import javax.servlet.http.Part;
+
+/**
+ * An HTTP servlet request held in memory, used to run requests through the Spark pipeline without a connection. The
+ * connection, session and security information is copied from the parent request if there is one, e.g. the request
+ * carrying a batch, so the request can run on another thread. Asynchronous processing and multipart bodies are not
+ * supported.
+ */
+public final class InMemoryRequest implements HttpServletRequest {
+
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final String method;
+    private final String path;
+    private final String queryString;
+
+    private ParentRequest parent;
+
+    // the names in lower case, mapped to the name as added and its values
+    private final Map<String, Map.Entry<String, List<String>>> headers = new LinkedHashMap<>();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+    private byte[] body = new byte[0];
+    private String characterEncoding;
+
+    private Map<String, String[]> parameters;
+    private boolean bodyRead;
+
+    /**
+     * Creates a request.
+     *
+     * @param method the HTTP method, e.g. "GET".
+     * @param uri    the path, optionally followed by a query string, e.g. "/users?page=2".
+     * @return the request.
+     */
+    public static InMemoryRequest create(String method, String uri) {
+        return new InMemoryRequest(method, uri);
+    }
+
+    private InMemoryRequest(String method, String uri) {
+        this.method = method.toUpperCase(Locale.ROOT);
+
+        int query = uri.indexOf('?');
+        this.path = query < 0 ? uri : uri.substring(0, query);
+        this.queryString = query < 0 ? null : uri.substring(query + 1);
+    }
+
+    /**
+     * Sets the request to take the connection, session and security information from. The information is copied
+     * right away, on the calling thread.
+     *
+     * @param parent the parent request.
+     * @return this request.
+     */
+    public InMemoryRequest withParent(HttpServletRequest parent) {
+        return withParent(ParentRequest.of(parent));
+    }
+
+    /**
+     * Sets the copied information of the parent request, e.g. shared by the sub-requests of a batch.
+     *
+     * @param parent the copied information of the parent request.
+     * @return this request.
+     */
+    InMemoryRequest withParent(ParentRequest parent) {
+        this.parent = parent;
+        return this;
+    }
+
+    /**
+     * Adds a header value.
+     *
+     * @param name  the header name.
+     * @param value the value.
+     * @return this request.
+     */
+    public InMemoryRequest header(String name, String value) {
+        headers.computeIfAbsent(name.toLowerCase(Locale.ROOT),
+                                key -> new AbstractMap.SimpleImmutableEntry<>(name, new ArrayList<>()))
+                .getValue()
+                .add(value);
+        return this;
+    }
+
+    /**
+     * Sets the body.
+     *
+     * @param body the body bytes.
+     * @return this request.
+     */
+    public InMemoryRequest body(byte[] body) {
+        this.body = body != null ? body : new byte[0];
+        return this;
+    }
+
+    /**
+     * Sets the body, encoded in UTF-8 unless the content type header specifies another charset.
+     *
+     * @param body the body.
+     * @return this request.
+     */
+    public InMemoryRequest body(String body) {
+        try {
+            return body(body != null ? body.getBytes(getCharacterEncoding()) : null);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    //////////////////////////////////////////////////
+    // Request line and headers
+    //////////////////////////////////////////////////
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return path;
+    }
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    @Override
+    public String getContextPath() {
+        return parent != null ? parent.getContextPath() : "";
+    }
+
+    @Override
+    public String getRequestURI() {
+        return getContextPath() + path;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        StringBuffer url = new StringBuffer();
+        url.append(getScheme()).append("://").append(getServerName());
+
+        int port = getServerPort();
+        if (port > 0 && !(port == 80 && "http".equals(getScheme())) && !(port == 443 && "https".equals(getScheme()))) {
+            url.append(':').append(port);
+        }
+        return url.append(getRequestURI());
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getPathTranslated() {
+        return null;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        Map.Entry<String, List<String>> header = headers.get(name.toLowerCase(Locale.ROOT));
+        return header != null ? header.getValue().get(0) : null;
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        Map.Entry<String, List<String>> header = headers.get(name.toLowerCase(Locale.ROOT));
+        return Collections.enumeration(header != null ? header.getValue() : Collections.<String>emptyList());
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, List<String>> header : headers.values()) {
+            names.add(header.getKey());
+        }
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format.parse(value).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Cannot parse date header '" + name + "': " + value);
+        }
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value != null ? Integer.parseInt(value) : -1;
+    }
+
+    @Override
+    public Cookie[] getCookies() {
+        List<Cookie> cookies = new ArrayList<>();
+
+        for (String header : Collections.list(getHeaders("Cookie"))) {
+            for (String pair : header.split(";")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    cookies.add(new Cookie(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim()));
+                }
+            }
+        }
+        return cookies.isEmpty() ? null : cookies.toArray(new Cookie[cookies.size()]);
+    }
+
+    @Override
+    public Locale getLocale() {
+        return parent != null ? parent.getLocale() : Locale.getDefault();
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return parent != null ? parent.getLocales() : Collections.enumeration(Collections.singletonList(getLocale()));
+    }
+
+    //////////////////////////////////////////////////
+    // Body and parameters
+    //////////////////////////////////////////////////
+
+    @Override
+    public String getCharacterEncoding() {
+        if (characterEncoding != null) {
+            return characterEncoding;
+        }
+
+        String contentType = getContentType();
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                    return trimmed.substring("charset=".length()).replace("\"", "");
+                }
+            }
+        }
+        return StandardCharsets.UTF_8.name();
+    }
+
+    @Override
+    public void setCharacterEncoding(String env) {
+        this.characterEncoding = env;
+    }
+
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        bodyRead = true;
+        ByteArrayInputStream input = new ByteArrayInputStream(body);
+
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return input.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new IllegalStateException("Asynchronous IO is not supported by in-memory requests");
+            }
+
+            @Override
+            public int read() {
+                return input.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return input.read(b, off, len);
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(getInputStream(), getCharacterEncoding()));
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = getParameterMap().get(name);
+        return values != null ? values[0] : null;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(getParameterMap().keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return getParameterMap().get(name);
+    }
+
+    @Override
+    public synchronized Map<String, String[]> getParameterMap() {
+        if (parameters == null) {
+            Map<String, List<String>> values = new LinkedHashMap<>();
+            parseParameters(queryString, values);
+
+            // like a container, a form body is only parsed if it hasn't been read as a stream
+            String contentType = getContentType();
+            if (!bodyRead
+                    && contentType != null
+                    && contentType.toLowerCase(Locale.ROOT).startsWith(FORM_CONTENT_TYPE)) {
+                try {
+                    parseParameters(new String(body, getCharacterEncoding()), values);
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            Map<String, String[]> map = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+                map.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+            }
+            parameters = Collections.unmodifiableMap(map);
+        }
+        return parameters;
+    }
+
+    private void parseParameters(String encoded, Map<String, List<String>> values) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+
+        for (String pair : encoded.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String name = decode(separator < 0 ? pair : pair.substring(0, separator));
+            String value = separator < 0 ? "" : decode(pair.substring(separator + 1));
+
+            values.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        }
+    }
+
+    private String decode(String value) {
+        try {
+            return URLDecoder.decode(value, getCharacterEncoding());
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    @Override
+    public Collection<Part> getParts() throws ServletException {
+        throw new ServletException("Multipart bodies are not supported by in-memory requests");
+    }
+
+    @Override
+    public Part getPart(String name) throws ServletException {
+        throw new ServletException("Multipart bodies are not supported by in-memory requests");
+    }
+
+    //////////////////////////////////////////////////
+    // Attributes
+    //////////////////////////////////////////////////
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object o) {
+        if (o == null) {
+            removeAttribute(name);
+        } else {
+            attributes.put(name, o);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    //////////////////////////////////////////////////
+    // Connection
+    //////////////////////////////////////////////////
+
+    @Override
+    public String getProtocol() {
+        return parent != null ? parent.getProtocol() : "HTTP/1.1";
+    }
+
+    @Override
+    public String getScheme() {
+        return parent != null ? parent.getScheme() : "http";
+    }
+
+    @Override
+    public String getServerName() {
+        return parent != null ? parent.getServerName() : "localhost";
+    }
+
+    @Override
+    public int getServerPort() {
+        return parent != null ? parent.getServerPort() : 80;
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        return parent != null ? parent.getRemoteAddr() : "127.0.0.1";
+    }
+
+    @Override
+    public String getRemoteHost() {
+        return parent != null ? parent.getRemoteHost() : "localhost";
+    }
+
+    @Override
+    public int getRemotePort() {
+        return parent != null ? parent.getRemotePort() : 0;
+    }
+
+    @Override
+    public String getLocalName() {
+        return parent != null ? parent.getLocalName() : "localhost";
+    }
+
+    @Override
+    public String getLocalAddr() {
+        return parent != null ? parent.getLocalAddr() : "127.0.0.1";
+    }
+
+    @Override
+    public int getLocalPort() {
+        return parent != null ? parent.getLocalPort() : 80;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return parent != null ? parent.isSecure() : false;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return parent != null ? parent.getServletContext() : null;
+    }
+
+    @Override
+    public RequestDispatcher getRequestDispatcher(String path) {
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public String getRealPath(String path) {
+        return null;
+    }
+
+    //////////////////////////////////////////////////
+    // Session and security
+    //////////////////////////////////////////////////
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        if (parent != null) {
+            return parent.getSession(create);
+        }
+        if (create) {
+            throw new IllegalStateException("Sessions are not supported by in-memory requests without parent");
+        }
+        return null;
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    @Override
+    public String changeSessionId() {
+        if (parent != null) {
+            return parent.changeSessionId();
+        }
+        throw new IllegalStateException("Sessions are not supported by in-memory requests without parent");
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+        return parent != null ? parent.getRequestedSessionId() : null;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        return parent != null && parent.isRequestedSessionIdValid();
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromCookie() {
+        return parent != null && parent.isRequestedSessionIdFromCookie();
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromURL() {
+        return parent != null && parent.isRequestedSessionIdFromURL();
+    }
+
+    @Override
+    @Deprecated
+    public boolean isRequestedSessionIdFromUrl() {
+        return isRequestedSessionIdFromURL();
+    }
+
+    @Override
+    public String getAuthType() {
+        return parent != null ? parent.getAuthType() : null;
+    }
+
+    @Override
+    public String getRemoteUser() {
+        return parent != null ? parent.getRemoteUser() : null;
+    }
+
+    @Override
+    public boolean isUserInRole(String role) {
+        return parent != null && parent.isUserInRole(role);
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return parent != null ? parent.getUserPrincipal() : null;
+    }
+
+    @Override
+    public boolean authenticate(HttpServletResponse response) throws IOException, ServletException {
+        return parent != null && parent.authenticate(response);
+    }
+
+    @Override
+    public void login(String username, String password) throws ServletException {
+        if (parent == null) {
+            throw new ServletException("Login is not supported by in-memory requests without parent");
+        }
+        parent.login(username, password);
+    }
+
+    @Override
+    public void logout() throws ServletException {
+        if (parent != null) {
+            parent.logout();
+        }
+    }
+
+    //////////////////////////////////////////////////
+    // Asynchronous processing
+    //////////////////////////////////////////////////
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("Asynchronous processing is not supported by in-memory requests");
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        throw new IllegalStateException("Asynchronous processing is not supported by in-memory requests");
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext getAsyncContext() {
+        throw new IllegalStateException("Asynchronous processing is not supported by in-memory requests");
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+        return DispatcherType.REQUEST;
+    }
+
+    @Override
+    public <T extends HttpUpgradeHandler> T upgrade(Class<T> handlerClass) throws ServletException {
+        throw new ServletException("Protocol upgrades are not supported by in-memory requests");
+    }
+
+}
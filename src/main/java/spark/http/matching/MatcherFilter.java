@@ -17,6 +17,7 @@
 package spark.http.matching;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -30,10 +31,16 @@ import javax.servlet.http.HttpServletResponse;
 import spark.HaltException;
 import spark.RequestResponseFactory;
 import spark.Response;
+import spark.cache.CachePolicy;
+import spark.cache.CachedResponse;
+import spark.cache.CoalescingPolicy;
+import spark.cache.ConstantResponse;
 import spark.embeddedserver.jetty.HttpRequestWrapper;
 import spark.route.HttpMethod;
 import spark.serialization.SerializerChain;
 import spark.staticfiles.StaticFilesConfiguration;
+import spark.utils.AdaptiveCompression;
+import spark.utils.GzipUtils;
 
 /**
  * Matches Spark routes and filters.
@@ -47,6 +54,11 @@ public class MatcherFilter implements Filter {
     private static final String ACCEPT_TYPE_REQUEST_MIME_HEADER = "Accept";
     private static final String HTTP_METHOD_OVERRIDE_HEADER = "X-HTTP-Method-Override";
 
+    private static final byte[] NOT_FOUND = "<html><body><h2>404 Not found</h2></body></html>"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final NotFoundLog NOT_FOUND_LOG = NotFoundLog.create(LOG, 1000);
+
     private final StaticFilesConfiguration staticFiles;
 
     private spark.route.Routes routeMatcher;
@@ -55,6 +67,9 @@ public class MatcherFilter implements Filter {
     private boolean externalContainer;
     private boolean hasOtherHandlers;
 
+    private final long maxDecompressedRequestSize;
+    private final AdaptiveCompression adaptiveCompression;
+
     /**
      * Constructor
      *
@@ -67,11 +82,32 @@ public class MatcherFilter implements Filter {
                          StaticFilesConfiguration staticFiles,
                          boolean externalContainer,
                          boolean hasOtherHandlers) {
+        this(routeMatcher, staticFiles, externalContainer, hasOtherHandlers, 0, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param routeMatcher               The route matcher
+     * @param externalContainer          Tells the filter that Spark is run in an external web container.
+     *                                   If true, chain.doFilter will be invoked if request is not consumed by Spark.
+     * @param hasOtherHandlers           If true, do nothing if request is not consumed by Spark in order to let others handlers process the request.
+     * @param maxDecompressedRequestSize The max size in bytes of a decompressed request body, 0 to not decompress request bodies.
+     * @param adaptiveCompression        The adaptive compression policy of the responses, null to always compress with the default level.
+     */
+    public MatcherFilter(spark.route.Routes routeMatcher,
+                         StaticFilesConfiguration staticFiles,
+                         boolean externalContainer,
+                         boolean hasOtherHandlers,
+                         long maxDecompressedRequestSize,
+                         AdaptiveCompression adaptiveCompression) {
 
         this.routeMatcher = routeMatcher;
         this.staticFiles = staticFiles;
         this.externalContainer = externalContainer;
         this.hasOtherHandlers = hasOtherHandlers;
+        this.maxDecompressedRequestSize = maxDecompressedRequestSize;
+        this.adaptiveCompression = adaptiveCompression;
         this.serializerChain = new SerializerChain();
     }
 
@@ -87,6 +123,22 @@ public class MatcherFilter implements Filter {
         HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
         HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
 
+        if (maxDecompressedRequestSize > 0) {
+            httpRequest = DecompressingRequestWrapper.wrapIfCompressed(httpRequest, maxDecompressedRequestSize);
+        }
+
+        Object exactTarget = routeMatcher.findExact(httpRequest.getPathInfo());
+
+        if (exactTarget != null && writeExactTarget(exactTarget, httpRequest, httpResponse)) {
+            return;
+        }
+
+        if (!routeMatcher.mayMatch(httpRequest.getPathInfo()) && !staticFiles.mayContain(httpRequest)) {
+            // nothing can match the first segment of the path, e.g. random paths probed by a scanner
+            notFound(servletRequest, httpRequest, httpResponse, chain);
+            return;
+        }
+
         // handle static resources
         boolean consumedByStaticFile = staticFiles.consume(httpRequest, httpResponse);
 
@@ -105,10 +157,46 @@ public class MatcherFilter implements Filter {
         RequestWrapper requestWrapper = RequestWrapper.create();
         ResponseWrapper responseWrapper = ResponseWrapper.create();
 
-        Response response = RequestResponseFactory.create(httpResponse);
-
         HttpMethod httpMethod = HttpMethod.get(httpMethodStr);
 
+        if (httpMethod == HttpMethod.post) {
+            BatchEndpoint batchEndpoint = routeMatcher.findOption(httpMethod, uri, BatchEndpoint.class);
+
+            if (batchEndpoint != null) {
+                // the sub-requests run through this filter
+                batchEndpoint.handle(httpRequest, httpResponse, this, adaptiveCompression);
+                return;
+            }
+        }
+
+        CachePolicy cachePolicy = null;
+        CoalescingPolicy coalescingPolicy = null;
+
+        if (httpMethod == HttpMethod.get) {
+            cachePolicy = routeMatcher.findOption(httpMethod, uri, CachePolicy.class);
+            coalescingPolicy = routeMatcher.findOption(httpMethod, uri, CoalescingPolicy.class);
+        }
+
+        String cacheVariant = null;
+        CachedResponse cachedResponse = null;
+        CapturingResponseWrapper capturingResponse = null;
+
+        if (cachePolicy != null) {
+            cacheVariant = cacheVariant(httpRequest, method, acceptType);
+            cachedResponse = cachePolicy.getCache().get(uri, cacheVariant);
+        }
+
+        if (cachedResponse == null && (cachePolicy != null || coalescingPolicy != null)) {
+            // keep a copy of the response to cache it or to share it with identical requests
+            long maxSize = Math.max(cachePolicy != null ? cachePolicy.getCache().maximumEntrySize() : 0,
+                                    coalescingPolicy != null ? coalescingPolicy.maximumSize() : 0);
+
+            capturingResponse = new CapturingResponseWrapper(httpResponse, maxSize);
+            httpResponse = capturingResponse;
+        }
+
+        Response response = RequestResponseFactory.create(httpResponse);
+
         RouteContext context = RouteContext.create()
                 .withMatcher(routeMatcher)
                 .withHttpRequest(httpRequest)
@@ -118,47 +206,111 @@ public class MatcherFilter implements Filter {
                 .withRequestWrapper(requestWrapper)
                 .withResponseWrapper(responseWrapper)
                 .withResponse(response)
-                .withHttpMethod(httpMethod);
+                .withHttpMethod(httpMethod)
+                .withAdaptiveCompression(adaptiveCompression);
+
+        // lets routes forward the request or dispatch it internally
+        Dispatcher dispatcher = Dispatcher.create(context);
+        httpRequest.setAttribute(Dispatcher.ATTRIBUTE, dispatcher);
+
+        CoalescingPolicy.Flight flight = null;
 
         try {
 
-            BeforeFilters.execute(context);
-            Routes.execute(context);
-            AfterFilters.execute(context);
+            BeforeFilters.execute(context, cachedResponse != null);
+
+            if (cachedResponse != null && body.notSet()) {
+                // the route and the after filters ran when the response was cached
+                cachedResponse.writeTo(httpRequest, httpResponse);
+                return;
+            }
+
+            if (coalescingPolicy != null && body.notSet()) {
+                flight = coalescingPolicy.join(
+                        coalescingPolicy.key(httpRequest, method, uri, GzipUtils.acceptsGzip(httpRequest)));
+
+                if (!flight.isLeader()) {
+                    // an identical request is running the route, wait for its response
+                    CachedResponse sharedResponse = flight.await();
+
+                    if (sharedResponse != null) {
+                        sharedResponse.writeTo(httpRequest, httpResponse);
+                        return;
+                    }
+                    // not shareable or timed out
+                    flight = null;
+                }
+            }
+
+            dispatcher.execute(context);
+
+            if (!httpRequest.isAsyncStarted()) {
+                AfterFilters.execute(context);
+            }
 
         } catch (HaltException halt) {
 
+            failFlight(flight, halt);
             Halt.modify(httpResponse, body, halt);
 
         } catch (Exception generalException) {
 
+            failFlight(flight, generalException);
             GeneralError.modify(httpResponse, body, requestWrapper, responseWrapper, generalException);
 
         }
 
-        // If redirected and content is null set to empty string to not throw NotConsumedException
-        if (body.notSet() && responseWrapper.isRedirected()) {
-            body.set("");
+        if (httpRequest.isAsyncStarted()) {
+            // the response is completed asynchronously, e.g. by a micro-batching route
+            return;
         }
 
-        if (body.notSet() && hasOtherHandlers) {
-            if (servletRequest instanceof HttpRequestWrapper) {
-                ((HttpRequestWrapper) servletRequest).notConsumed(true);
-                return;
+        try {
+            // If redirected and content is null set to empty string to not throw NotConsumedException
+            if (body.notSet() && responseWrapper.isRedirected()) {
+                body.set("");
             }
-        }
 
-        if (body.notSet() && !externalContainer) {
-            LOG.info("The requested route [" + uri + "] has not been mapped in Spark");
-            httpResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            body.set(String.format(NOT_FOUND));
-        }
+            if (body.notSet() && hasOtherHandlers) {
+                if (servletRequest instanceof HttpRequestWrapper) {
+                    ((HttpRequestWrapper) servletRequest).notConsumed(true);
+                    return;
+                }
+            }
 
-        if (body.isSet()) {
-            body.serializeTo(httpResponse, serializerChain, httpRequest);
+            if (body.notSet() && !externalContainer) {
+                NOT_FOUND_LOG.log(uri);
+                httpResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                body.set(NOT_FOUND);
+            }
 
-        } else if (chain != null) {
-            chain.doFilter(httpRequest, httpResponse);
+            if (body.isSet()) {
+                boolean conditional = httpMethod == HttpMethod.get
+                        && routeMatcher.findOption(httpMethod, uri, ConditionalGet.class) != null;
+
+                body.serializeTo(httpResponse, serializerChain, httpRequest, conditional, adaptiveCompression);
+
+                if (cachePolicy != null && capturingResponse != null) {
+                    CachedResponse toCache = capturingResponse.toCachedResponse(
+                            System.currentTimeMillis() + cachePolicy.getTtlMillis());
+
+                    if (toCache != null) {
+                        cachePolicy.getCache().put(uri, cacheVariant, toCache);
+                    }
+                }
+
+                if (flight != null) {
+                    flight.complete(capturingResponse.toSharedResponse());
+                }
+
+            } else if (chain != null) {
+                chain.doFilter(httpRequest, httpResponse);
+            }
+        } finally {
+            if (flight != null) {
+                // releases the waiting requests if the response wasn't shared, they then run the route themselves
+                flight.complete(null);
+            }
         }
     }
 
@@ -171,9 +323,80 @@ public class MatcherFilter implements Filter {
         return method;
     }
 
-    public void destroy() {
+    /**
+     * Writes the response of a target found by exact path lookup, before the static files and the routes.
+     *
+     * @return true if the request was handled.
+     */
+    private boolean writeExactTarget(Object target,
+                                     HttpServletRequest httpRequest,
+                                     HttpServletResponse httpResponse) throws IOException {
+
+        String method = getHttpMethodFrom(httpRequest);
+
+        if (target instanceof ConstantResponse) {
+            if (method.equalsIgnoreCase("GET") || method.equalsIgnoreCase("HEAD")) {
+                ((ConstantResponse) target).writeTo(httpRequest, httpResponse);
+                return true;
+            }
+        } else if (target instanceof ExactRedirect) {
+            ExactRedirect redirect = (ExactRedirect) target;
+
+            if (redirect.appliesTo(method)) {
+                redirect.writeTo(httpResponse);
+                return true;
+            }
+        }
+        return false;
     }
 
-    private static final String NOT_FOUND = "<html><body><h2>404 Not found</h2></body></html>";
+    /**
+     * Answers a request that no route, filter or static file can match, without running the filters.
+     */
+    private void notFound(ServletRequest servletRequest,
+                          HttpServletRequest httpRequest,
+                          HttpServletResponse httpResponse,
+                          FilterChain chain) throws IOException, ServletException {
+
+        if (hasOtherHandlers && servletRequest instanceof HttpRequestWrapper) {
+            ((HttpRequestWrapper) servletRequest).notConsumed(true);
+            return;
+        }
+
+        if (externalContainer) {
+            if (chain != null) {
+                chain.doFilter(httpRequest, httpResponse);
+            }
+            return;
+        }
+
+        NOT_FOUND_LOG.log(httpRequest.getPathInfo());
+
+        // written as the 404 of a request going through the routes, so both have the same headers
+        Body body = Body.create();
+        body.set(NOT_FOUND);
+
+        httpResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        body.serializeTo(httpResponse, serializerChain, httpRequest, false, adaptiveCompression);
+    }
+
+    private static void failFlight(CoalescingPolicy.Flight flight, Exception exception) {
+        if (flight != null) {
+            flight.fail(exception);
+        }
+    }
+
+    /**
+     * The cached response varies on the method, the query string and the negotiated headers
+     */
+    private static String cacheVariant(HttpServletRequest httpRequest, String method, String acceptType) {
+        return method + '\n'
+                + httpRequest.getQueryString() + '\n'
+                + acceptType + '\n'
+                + GzipUtils.acceptsGzip(httpRequest);
+    }
+
+    public void destroy() {
+    }
 
 }
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import spark.BatchRoute;
+import spark.HaltException;
+import spark.Request;
+import spark.serialization.SerializerChain;
+import spark.utils.Assert;
+import spark.utils.Wrapper;
+
+/**
+ * Route target collecting concurrent requests into batches for a {@link BatchRoute}. A batch is handled when it
+ * reaches the maximum size or when the oldest request has waited the maximum delay. Waiting requests are put in
+ * asynchronous mode so that they don't hold a server thread, and each exchange is completed individually with its
+ * result, after the after filters have run. An exchange whose batch isn't handled within the timeout fails.
+ */
+public final class MicroBatcher implements Wrapper {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(MicroBatcher.class);
+
+    // only fires the batch windows, batches are handled on server threads
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spark-micro-batch-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BatchRoute route;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+
+    // the time a batch may take to be handled, besides the maximum delay
+    private volatile long timeoutMillis = 30_000;
+
+    private final SerializerChain serializerChain = new SerializerChain();
+
+    private List<Pending> pending = new ArrayList<>();
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+
+    /**
+     * Creates a micro-batcher.
+     *
+     * @param route          the batch route.
+     * @param maxBatchSize   the maximum number of requests in a batch.
+     * @param maxDelayMillis the maximum time a request waits for its batch to fill up, in milliseconds.
+     * @return the micro-batcher.
+     */
+    public static MicroBatcher create(BatchRoute route, int maxBatchSize, long maxDelayMillis) {
+        return new MicroBatcher(route, maxBatchSize, maxDelayMillis);
+    }
+
+    private MicroBatcher(BatchRoute route, int maxBatchSize, long maxDelayMillis) {
+        Assert.notNull(route, "'route' must not be null");
+        Assert.isTrue(maxBatchSize > 0, "'maxBatchSize' must be positive");
+        Assert.isTrue(maxDelayMillis >= 0, "'maxDelayMillis' must not be negative");
+        this.route = route;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Sets the time a batch may take to be handled, 30 seconds by default. A request whose batch hasn't been handled
+     * within the maximum delay and this time fails with an {@link IllegalStateException}, which is answered as any
+     * exception thrown by a route.
+     *
+     * @param timeoutMillis the timeout in milliseconds.
+     * @return this micro-batcher.
+     */
+    public MicroBatcher timeout(long timeoutMillis) {
+        Assert.isTrue(timeoutMillis > 0, "'timeoutMillis' must be positive");
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * @return the number of handled batches.
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of requests handled in batches.
+     */
+    public long batchedRequests() {
+        return batchedRequests.sum();
+    }
+
+    @Override
+    public Object delegate() {
+        return route;
+    }
+
+    /**
+     * Adds the request of the context to the current batch and puts it in asynchronous mode.
+     */
+    void submit(RouteContext context) {
+        HttpServletRequest httpRequest = context.httpRequest();
+        HttpServletResponse httpResponse = context.response().raw();
+
+        AsyncContext asyncContext = httpRequest.startAsync(httpRequest, httpResponse);
+        // bounded, so a batch that is never handled doesn't leave the request hanging
+        asyncContext.setTimeout(maxDelayMillis + timeoutMillis);
+
+        Pending request = new Pending(context, asyncContext);
+        asyncContext.addListener(request);
+
+        List<Pending> full = null;
+
+        synchronized (this) {
+            pending.add(request);
+
+            if (pending.size() >= maxBatchSize) {
+                full = pending;
+                pending = new ArrayList<>();
+            } else if (pending.size() == 1) {
+                List<Pending> window = pending;
+                TIMER.schedule(() -> flush(window), maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (full != null) {
+            dispatch(full);
+        }
+    }
+
+    private void flush(List<Pending> window) {
+        synchronized (this) {
+            if (pending != window) {
+                // already dispatched when it was full
+                return;
+            }
+            pending = new ArrayList<>();
+        }
+        dispatch(window);
+    }
+
+    private void dispatch(List<Pending> batch) {
+        try {
+            batch.get(0).asyncContext.start(() -> handle(batch));
+        } catch (RuntimeException e) {
+            LOG.debug("Could not dispatch the batch to a server thread, handling it on the current thread", e);
+            handle(batch);
+        }
+    }
+
+    /**
+     * Handles a batch and completes the exchange of each request with its result.
+     */
+    void handle(List<Pending> batch) {
+        List<?> results = null;
+        Exception failure = null;
+
+        try {
+            List<Request> requests = new ArrayList<>(batch.size());
+            for (Pending request : batch) {
+                requests.add(request.context.requestWrapper().getDelegate());
+            }
+
+            results = route.handle(requests);
+
+            if (results == null || results.size() != batch.size()) {
+                failure = new IllegalStateException("The batch route returned "
+                                                            + (results == null ? "no" : results.size())
+                                                            + " results for "
+                                                            + batch.size()
+                                                            + " requests");
+            }
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        batches.increment();
+        batchedRequests.add(batch.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), failure != null ? failure : results.get(i));
+        }
+    }
+
+    private void complete(Pending request, Object result) {
+        if (!request.completed.compareAndSet(false, true)) {
+            // timed out or failed already
+            return;
+        }
+
+        RouteContext context = request.context;
+        HttpServletResponse httpResponse = context.response().raw();
+        Body body = context.body();
+
+        try {
+            try {
+                if (result instanceof Exception) {
+                    throw (Exception) result;
+                }
+
+                // the after filters see the result as they do for any route
+                if (result instanceof String && !"".equals(result)) {
+                    context.responseWrapper().body((String) result);
+                }
+                body.set(result);
+
+                AfterFilters.execute(context);
+            } catch (HaltException halt) {
+                Halt.modify(httpResponse, body, halt);
+            } catch (Exception e) {
+                GeneralError.modify(httpResponse, body, context.requestWrapper(), context.responseWrapper(), e);
+            }
+
+            if (body.isSet()) {
+                body.serializeTo(httpResponse,
+                                 serializerChain,
+                                 context.httpRequest(),
+                                 false,
+                                 context.adaptiveCompression());
+            }
+        } catch (Exception e) {
+            LOG.error("Could not write the result of a batched request", e);
+        } finally {
+            request.asyncContext.complete();
+        }
+    }
+
+    /**
+     * A request waiting for its batch.
+     */
+    final class Pending implements AsyncListener {
+
+        private final RouteContext context;
+        private final AsyncContext asyncContext;
+
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        Pending(RouteContext context, AsyncContext asyncContext) {
+            this.context = context;
+            this.asyncContext = asyncContext;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            complete(this, new IllegalStateException("The batch wasn't handled within "
+                                                             + (maxDelayMillis + timeoutMillis)
+                                                             + " ms"));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // the exchange failed, e.g. the client went away, it's completed by the container
+            completed.set(true);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            // nothing to release
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // not restarted
+        }
+    }
+
+}
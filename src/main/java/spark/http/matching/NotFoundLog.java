@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * Rate limited logging of requests for routes that have not been mapped. At most one line is logged per interval, the
+ * next logged line tells how many were left out, so a flood of requests for random paths doesn't flood the log.
+ */
+final class NotFoundLog {
+
+    private final Logger logger;
+    private final long intervalNanos;
+
+    private final AtomicLong nextLogTime;
+    private final AtomicLong notLogged = new AtomicLong();
+
+    static NotFoundLog create(Logger logger, long intervalMillis) {
+        return new NotFoundLog(logger, intervalMillis);
+    }
+
+    private NotFoundLog(Logger logger, long intervalMillis) {
+        this.logger = logger;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.nextLogTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Logs a request for a route that has not been mapped, unless a line was logged less than an interval ago.
+     *
+     * @param uri the requested uri.
+     * @return true if the line was logged.
+     */
+    boolean log(String uri) {
+        long now = System.nanoTime();
+        long next = nextLogTime.get();
+
+        if (now - next < 0 || !nextLogTime.compareAndSet(next, now + intervalNanos)) {
+            notLogged.incrementAndGet();
+            return false;
+        }
+
+        long skipped = notLogged.getAndSet(0);
+
+        if (skipped > 0) {
+            logger.info("The requested route [{}] has not been mapped in Spark ({} more not logged)", uri, skipped);
+        } else {
+            logger.info("The requested route [{}] has not been mapped in Spark", uri);
+        }
+        return true;
+    }
+
+}
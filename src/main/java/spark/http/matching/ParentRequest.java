@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.http.matching;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The connection, session and security information of the request carrying in-memory requests, e.g. a batch. It's
+ * copied when the in-memory requests are created, on the thread handling the request, so that they can run on other
+ * threads. Only the operations that can't be answered from the copy, e.g. creating a session or checking a role, use
+ * the request itself: they run one at a time and fail once the request is {@link #close() closed}.
+ */
+final class ParentRequest {
+
+    private final HttpServletRequest request;
+
+    private final String contextPath;
+    private final List<Locale> locales;
+    private final String protocol;
+    private final String scheme;
+    private final String serverName;
+    private final int serverPort;
+    private final String remoteAddr;
+    private final String remoteHost;
+    private final int remotePort;
+    private final String localName;
+    private final String localAddr;
+    private final int localPort;
+    private final boolean secure;
+    private final ServletContext servletContext;
+
+    private final String requestedSessionId;
+    private final boolean requestedSessionIdValid;
+    private final boolean requestedSessionIdFromCookie;
+    private final boolean requestedSessionIdFromURL;
+
+    // may change when a session is created or a user logs in, guarded by this
+    private HttpSession session;
+    private String authType;
+    private String remoteUser;
+    private Principal userPrincipal;
+
+    private boolean closed;
+
+    /**
+     * Copies the information of a request.
+     *
+     * @param request the request, on the thread handling it.
+     * @return the copy.
+     */
+    static ParentRequest of(HttpServletRequest request) {
+        return new ParentRequest(request);
+    }
+
+    private ParentRequest(HttpServletRequest request) {
+        this.request = request;
+
+        this.contextPath = request.getContextPath();
+        Enumeration<Locale> requestLocales = request.getLocales();
+        this.locales = requestLocales != null ? Collections.list(requestLocales) : Collections.emptyList();
+        this.protocol = request.getProtocol();
+        this.scheme = request.getScheme();
+        this.serverName = request.getServerName();
+        this.serverPort = request.getServerPort();
+        this.remoteAddr = request.getRemoteAddr();
+        this.remoteHost = request.getRemoteHost();
+        this.remotePort = request.getRemotePort();
+        this.localName = request.getLocalName();
+        this.localAddr = request.getLocalAddr();
+        this.localPort = request.getLocalPort();
+        this.secure = request.isSecure();
+        this.servletContext = request.getServletContext();
+
+        this.requestedSessionId = request.getRequestedSessionId();
+        this.requestedSessionIdValid = request.isRequestedSessionIdValid();
+        this.requestedSessionIdFromCookie = request.isRequestedSessionIdFromCookie();
+        this.requestedSessionIdFromURL = request.isRequestedSessionIdFromURL();
+
+        this.session = request.getSession(false);
+        copyAuthentication();
+    }
+
+    /**
+     * Closes the copy when the request completes, the operations using the request fail from then on.
+     */
+    synchronized void close() {
+        closed = true;
+    }
+
+    String getContextPath() {
+        return contextPath;
+    }
+
+    Locale getLocale() {
+        return locales.isEmpty() ? Locale.getDefault() : locales.get(0);
+    }
+
+    Enumeration<Locale> getLocales() {
+        return Collections.enumeration(locales.isEmpty() ? Collections.singletonList(getLocale()) : locales);
+    }
+
+    String getProtocol() {
+        return protocol;
+    }
+
+    String getScheme() {
+        return scheme;
+    }
+
+    String getServerName() {
+        return serverName;
+    }
+
+    int getServerPort() {
+        return serverPort;
+    }
+
+    String getRemoteAddr() {
+        return remoteAddr;
+    }
+
+    String getRemoteHost() {
+        return remoteHost;
+    }
+
+    int getRemotePort() {
+        return remotePort;
+    }
+
+    String getLocalName() {
+        return localName;
+    }
+
+    String getLocalAddr() {
+        return localAddr;
+    }
+
+    int getLocalPort() {
+        return localPort;
+    }
+
+    boolean isSecure() {
+        return secure;
+    }
+
+    ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    synchronized HttpSession getSession(boolean create) {
+        if (session == null && create) {
+            session = request().getSession(true);
+        }
+        return session;
+    }
+
+    synchronized String changeSessionId() {
+        return request().changeSessionId();
+    }
+
+    String getRequestedSessionId() {
+        return requestedSessionId;
+    }
+
+    boolean isRequestedSessionIdValid() {
+        return requestedSessionIdValid;
+    }
+
+    boolean isRequestedSessionIdFromCookie() {
+        return requestedSessionIdFromCookie;
+    }
+
+    boolean isRequestedSessionIdFromURL() {
+        return requestedSessionIdFromURL;
+    }
+
+    synchronized String getAuthType() {
+        return authType;
+    }
+
+    synchronized String getRemoteUser() {
+        return remoteUser;
+    }
+
+    synchronized Principal getUserPrincipal() {
+        return userPrincipal;
+    }
+
+    synchronized boolean isUserInRole(String role) {
+        return userPrincipal != null && request().isUserInRole(role);
+    }
+
+    synchronized boolean authenticate(HttpServletResponse response) throws IOException, ServletException {
+        boolean authenticated = request().authenticate(response);
+        copyAuthentication();
+        return authenticated;
+    }
+
+    synchronized void login(String username, String password) throws ServletException {
+        request().login(username, password);
+        copyAuthentication();
+    }
+
+    synchronized void logout() throws ServletException {
+        request().logout();
+        copyAuthentication();
+    }
+
+    private HttpServletRequest request() {
+        if (closed) {
+            throw new IllegalStateException("The parent request has completed");
+        }
+        return request;
+    }
+
+    private void copyAuthentication() {
+        authType = request.getAuthType();
+        remoteUser = request.getRemoteUser();
+        userPrincipal = request.getUserPrincipal();
+    }
+
+}
@@ -34,6 +34,7 @@ final class RequestWrapper extends Request {
     }
 
     private Request delegate;
+    private RouteMatch match;
 
     private RequestWrapper() {
         // hidden
@@ -41,14 +42,31 @@ final class RequestWrapper extends Request {
 
     public void setDelegate(Request delegate) {
         this.delegate = delegate;
+        this.match = null;
     }
 
     Request getDelegate() {
         return delegate;
     }
 
+    /**
+     * Sets the delegate created for a route match
+     */
+    void setDelegate(Request delegate, RouteMatch match) {
+        this.delegate = delegate;
+        this.match = match;
+    }
+
+    /**
+     * @return the route match of the delegate's params, if set by a route
+     */
+    RouteMatch getMatch() {
+        return match;
+    }
+
     public void changeMatch(RouteMatch match) {
         Access.changeMatch(delegate, match);
+        this.match = match;
     }
 
     @Override
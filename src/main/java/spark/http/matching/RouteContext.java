@@ -21,6 +21,7 @@ import javax.servlet.http.HttpServletRequest;
 import spark.Response;
 import spark.route.*;
 import spark.route.Routes;
+import spark.utils.AdaptiveCompression;
 
 /**
  * Holds the parameters needed in the Before filters, Routes and After filters execution.
@@ -43,6 +44,7 @@ final class RouteContext {
     private ResponseWrapper responseWrapper;
     private Response response;
     private HttpMethod httpMethod;
+    private AdaptiveCompression adaptiveCompression;
 
     private RouteContext() {
         // hidden
@@ -97,6 +99,11 @@ final class RouteContext {
         return this;
     }
 
+    public RouteContext withAdaptiveCompression(AdaptiveCompression adaptiveCompression) {
+        this.adaptiveCompression = adaptiveCompression;
+        return this;
+    }
+
     public HttpServletRequest httpRequest() {
         return httpRequest;
     }
@@ -129,4 +136,8 @@ final class RouteContext {
         return httpMethod;
     }
 
+    public AdaptiveCompression adaptiveCompression() {
+        return adaptiveCompression;
+    }
+
 }
@@ -16,11 +16,17 @@
  */
 package spark.http.matching;
 
+import javax.servlet.http.HttpServletResponse;
+
+import spark.Access;
+import spark.Freshness;
 import spark.Request;
 import spark.RequestResponseFactory;
 import spark.RouteImpl;
+import spark.Validator;
 import spark.route.HttpMethod;
 import spark.routematch.RouteMatch;
+import spark.utils.ConditionalUtils;
 
 /**
  * Created by Per Wendel on 2016-01-28.
@@ -51,15 +57,31 @@ final class Routes {
 
                 if (context.requestWrapper().getDelegate() == null) {
                     Request request = RequestResponseFactory.create(match, context.httpRequest());
-                    context.requestWrapper().setDelegate(request);
+                    context.requestWrapper().setDelegate(request, match);
                 } else {
                     context.requestWrapper().changeMatch(match);
                 }
 
                 context.responseWrapper().setDelegate(context.response());
 
+                Validator validator = Access.getValidator(route);
+
+                if (validator != null && isNotModified(context, validator)) {
+                    // the client's copy is up to date, no need to invoke the route
+                    context.body().set("");
+                    return;
+                }
+
                 Object element = route.handle(context.requestWrapper(), context.responseWrapper());
                 result = route.render(element);
+            } else if (target instanceof MicroBatcher) {
+                Request request = RequestResponseFactory.create(match, context.httpRequest());
+                context.requestWrapper().setDelegate(request);
+                context.responseWrapper().setDelegate(context.response());
+
+                // the response is completed asynchronously when the batch has been handled, after the after filters
+                ((MicroBatcher) target).submit(context);
+                return;
             }
 
             if (result != null) {
@@ -78,4 +100,35 @@ final class Routes {
         context.body().set(content);
     }
 
+    /**
+     * Evaluates the route's freshness validator. The validators are added to the response so that clients can make
+     * conditional requests, and the status is set to '304 Not Modified' if the client's copy is up to date.
+     */
+    private static boolean isNotModified(RouteContext context, Validator validator) throws Exception {
+        if (context.httpMethod() != HttpMethod.get && context.httpMethod() != HttpMethod.head) {
+            return false;
+        }
+
+        Freshness freshness = validator.validate(context.requestWrapper());
+
+        if (freshness == null) {
+            return false;
+        }
+
+        HttpServletResponse httpResponse = context.response().raw();
+
+        if (freshness.getETag() != null) {
+            httpResponse.setHeader(ConditionalUtils.ETAG, freshness.getETag());
+        }
+        if (freshness.getLastModified() >= 0) {
+            httpResponse.setDateHeader(ConditionalUtils.LAST_MODIFIED, freshness.getLastModified());
+        }
+
+        if (ConditionalUtils.isNotModified(context.httpRequest(), freshness.getETag(), freshness.getLastModified())) {
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
 }
@@ -78,6 +78,11 @@ public class ExternalResource extends AbstractFileResolvingResource {
         return file.toURI().toURL();
     }
 
+    @Override
+    public String getFilename() {
+        return file.getName();
+    }
+
     /**
      * Gets the path
      *
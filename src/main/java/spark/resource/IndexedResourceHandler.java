@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import spark.utils.Assert;
+
+/**
+ * Resolves resources through an index of the canonical paths of a folder, built once from another handler, so a
+ * lookup is a hash lookup instead of class loader lookups and file system calls. Directories are indexed with their
+ * welcome file.
+ * <p>
+ * The index of a folder that doesn't change and holds all the resources of the handler, e.g. a folder found once in
+ * the class path, is complete: a path missing from it doesn't exist. Otherwise, e.g. for an external folder, missing
+ * paths are looked up with the other handler, and paths that don't exist are kept in a bounded negative cache for a
+ * second.
+ */
+public class IndexedResourceHandler extends AbstractResourceHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(IndexedResourceHandler.class);
+
+    private static final int MAX_INDEXED_PATHS = 100_000;
+    private static final int MAX_NOT_FOUND_PATHS = 10_000;
+    private static final long NOT_FOUND_TTL_MILLIS = 1000;
+
+    private final AbstractResourceHandler handler;
+    private final boolean modifiable;
+
+    private final Map<String, AbstractFileResolvingResource> resources = new ConcurrentHashMap<>();
+    private final boolean complete;
+
+    // the paths that don't exist, mapped to the time the entry expires
+    private final Map<String, Long> notFound = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, indexes the folder
+     *
+     * @param handler    the handler resolving the resources of the folder
+     * @param folder     the folder in the file system
+     * @param modifiable if files may be added to or removed from the folder
+     * @param exclusive  if the handler resolves the resources of this folder only
+     */
+    public IndexedResourceHandler(AbstractResourceHandler handler,
+                                  File folder,
+                                  boolean modifiable,
+                                  boolean exclusive) {
+        Assert.notNull(handler);
+        Assert.notNull(folder);
+
+        this.handler = handler;
+        this.modifiable = modifiable;
+        this.complete = index(folder.toPath()) && !modifiable && exclusive;
+    }
+
+    /**
+     * @return the number of indexed paths.
+     */
+    public int size() {
+        return resources.size();
+    }
+
+    @Override
+    protected AbstractFileResolvingResource getResource(String path) throws MalformedURLException {
+        if (path == null || !path.startsWith("/")) {
+            throw new MalformedURLException(path);
+        }
+
+        String canonicalPath = UriPath.canonical(path);
+        if (canonicalPath == null) {
+            return null;
+        }
+
+        AbstractFileResolvingResource resource = resources.get(canonicalPath);
+
+        if (resource != null) {
+            if (!modifiable || resource.exists()) {
+                return resource;
+            }
+            resources.remove(canonicalPath);
+        } else if (complete) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        Long expires = notFound.get(canonicalPath);
+
+        if (expires != null && now - expires < 0) {
+            return null;
+        }
+
+        resource = handler.getResource(canonicalPath);
+
+        if (resource != null) {
+            notFound.remove(canonicalPath);
+            if (resources.size() < MAX_INDEXED_PATHS) {
+                resources.put(canonicalPath, resource);
+            }
+        } else {
+            if (notFound.size() >= MAX_NOT_FOUND_PATHS) {
+                evictExpired(now);
+            }
+            notFound.put(canonicalPath, now + NOT_FOUND_TTL_MILLIS);
+        }
+        return resource;
+    }
+
+    /**
+     * Indexes the files and directories of a folder
+     *
+     * @return true if all of them were indexed
+     */
+    private boolean index(Path folder) {
+        try (Stream<Path> paths = Files.walk(folder, FileVisitOption.FOLLOW_LINKS)) {
+            for (Iterator<Path> it = paths.iterator(); it.hasNext(); ) {
+                if (resources.size() >= MAX_INDEXED_PATHS) {
+                    LOG.warn("Indexed the first " + MAX_INDEXED_PATHS + " paths of folder " + folder);
+                    return false;
+                }
+
+                Path path = it.next();
+                String relative = folder.relativize(path).toString().replace(File.separatorChar, '/');
+
+                if (Files.isDirectory(path)) {
+                    // the welcome file of the directory, if any
+                    index(relative.isEmpty() ? SLASH : SLASH + relative + SLASH);
+                    if (!relative.isEmpty()) {
+                        index(SLASH + relative);
+                    }
+                } else {
+                    index(SLASH + relative);
+                }
+            }
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            LOG.warn("Error when indexing folder " + folder + ", resources are resolved without index", e);
+            return false;
+        }
+    }
+
+    private void index(String path) throws MalformedURLException {
+        AbstractFileResolvingResource resource = handler.getResource(path);
+
+        if (resource != null) {
+            resources.put(path, resource);
+        }
+    }
+
+    private void evictExpired(long now) {
+        notFound.values().removeIf(expires -> now - expires >= 0);
+
+        if (notFound.size() >= MAX_NOT_FOUND_PATHS) {
+            notFound.clear();
+        }
+    }
+
+}
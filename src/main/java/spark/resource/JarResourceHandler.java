@@ -16,8 +16,24 @@
  */
 package spark.resource;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.JarURLConnection;
 import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.http.HttpServletRequest;
@@ -26,11 +42,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import spark.utils.Assert;
+import spark.utils.IOUtils;
 
 import static spark.resource.AbstractResourceHandler.addPaths;
 
 /**
- * Locates resources in jar file
+ * Locates resources in jar file. The entries of the jar under the base resource are indexed once, with their sizes,
+ * CRCs and modification times, so paths that don't exist are resolved without searching the class path or the jar.
+ * Small entries can be kept inflated in memory. When the base resource is also found in other class path entries only
+ * the first jar is indexed, and the paths it doesn't hold are still loaded through the class loader.
  */
 public class JarResourceHandler {
 
@@ -39,6 +59,14 @@ public class JarResourceHandler {
     private final String baseResource;
     private String welcomeFile;
 
+    // null if the location isn't a folder in a jar, then resources are loaded through the class loader
+    private final JarFile jarFile;
+    private final Map<String, Entry> entries;
+    private final Set<String> directories;
+
+    // if the indexed jar is the only class path entry holding the base resource, then the index is complete
+    private final boolean exclusive;
+
     /**
      * Constructor
      *
@@ -46,13 +74,153 @@ public class JarResourceHandler {
      * @param welcomeFile  the welcomeFile
      */
     public JarResourceHandler(String baseResource, String welcomeFile) {
+        this(baseResource,
+             welcomeFile,
+             JarResourceHandler.class.getResource(baseResource),
+             isOnlyClassPathLocation(baseResource));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param baseResource the base resource path
+     * @param welcomeFile  the welcomeFile
+     * @param location     the URL of the base resource in the jar, e.g. 'jar:file:/app.jar!/public'
+     * @param exclusive    if the jar is the only class path entry holding the base resource
+     */
+    JarResourceHandler(String baseResource, String welcomeFile, URL location, boolean exclusive) {
         Assert.notNull(baseResource);
 
         this.baseResource = baseResource;
         this.welcomeFile = welcomeFile;
+        this.exclusive = exclusive;
+
+        JarFile indexedJar = null;
+        Map<String, Entry> indexedEntries = new HashMap<>();
+        Set<String> indexedDirectories = new HashSet<>();
+
+        try {
+            URLConnection connection = location != null ? location.openConnection() : null;
+
+            if (connection instanceof JarURLConnection) {
+                JarURLConnection jarConnection = (JarURLConnection) connection;
+
+                // opened at its root, a jar doesn't always have an entry for the folder. The jar file is shared with
+                // the class loader, so it must stay open
+                URL root = new URL("jar:" + jarConnection.getJarFileURL() + "!/");
+                indexedJar = ((JarURLConnection) root.openConnection()).getJarFile();
+                index(indexedJar, jarConnection.getEntryName(), indexedEntries, indexedDirectories);
+            }
+        } catch (IOException e) {
+            LOG.warn("Error when indexing jar resources of " + baseResource + ", resources are loaded without index", e);
+            indexedJar = null;
+        }
+
+        this.jarFile = indexedJar;
+        this.entries = indexedJar != null ? indexedEntries : null;
+        this.directories = indexedJar != null ? indexedDirectories : null;
     }
 
     public InputStream getResource(HttpServletRequest request) throws MalformedURLException {
+        String path = getResourcePath(request);
+        return path != null ? getResourceStream(path) : null;
+    }
+
+    /**
+     * Gets the resource at a path in the class path, e.g. as returned by {@link #getResourcePath(HttpServletRequest)}
+     *
+     * @param path the path in the class path
+     * @return the content of the resource, or null if it doesn't exist
+     */
+    public InputStream getResourceStream(String path) {
+        if (entries == null) {
+            return loadStream(path);
+        }
+
+        Entry entry = entries.get(path);
+
+        if (entry == null) {
+            return exclusive ? null : loadStream(path);
+        }
+
+        byte[] inflated = entry.inflated;
+        if (inflated != null) {
+            return new ByteArrayInputStream(inflated);
+        }
+
+        try {
+            return jarFile.getInputStream(entry.jarEntry);
+        } catch (IOException e) {
+            LOG.warn("Error when reading jar resource " + path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the indexed entry at a path in the class path
+     *
+     * @param path the path in the class path
+     * @return the entry, or null if it doesn't exist or the jar isn't indexed
+     */
+    public Entry getEntry(String path) {
+        return entries != null ? entries.get(path) : null;
+    }
+
+    /**
+     * Keeps the small entries inflated in memory, the smallest first
+     *
+     * @param maxEntrySize the maximum size of an inflated entry
+     * @param maxTotalSize the maximum total size of the inflated entries
+     * @return the total size of the inflated entries
+     */
+    public long inflate(long maxEntrySize, long maxTotalSize) {
+        if (entries == null) {
+            return 0;
+        }
+
+        List<Entry> candidates = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.inflated == null && entry.size >= 0 && entry.size <= maxEntrySize) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(Entry::size));
+
+        long total = inflatedSize();
+
+        for (Entry entry : candidates) {
+            if (total + entry.size > maxTotalSize) {
+                break;
+            }
+            try (InputStream stream = jarFile.getInputStream(entry.jarEntry)) {
+                entry.inflated = IOUtils.toByteArray(stream);
+                total += entry.size;
+            } catch (IOException e) {
+                LOG.warn("Error when inflating jar resource " + entry.jarEntry.getName(), e);
+            }
+        }
+        return total;
+    }
+
+    private long inflatedSize() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            byte[] inflated = entry.inflated;
+            if (inflated != null) {
+                total += inflated.length;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets the path in the class path of the resource for a servlet request, without loading it
+     *
+     * @param request the servlet request
+     * @return the path, or null if the request is for a directory and no welcome file is configured
+     * @throws MalformedURLException thrown when malformed URL.
+     */
+    public String getResourcePath(HttpServletRequest request) throws MalformedURLException {
 
         String servletPath;
         String pathInfo;
@@ -73,27 +241,38 @@ public class JarResourceHandler {
         }
 
         String pathInContext = addPaths(servletPath, pathInfo);
-        return getResourceStream(pathInContext);
+        return getResourcePath(pathInContext);
     }
 
-    private InputStream getResourceStream(String path) throws MalformedURLException {
+    private String getResourcePath(String path) throws MalformedURLException {
         if (path == null || !path.startsWith("/")) {
             throw new MalformedURLException(path);
         }
 
-        InputStream resourceStream = null;
+        String resourcePath = null;
 
         try {
             path = UriPath.canonical(path);
+            if (path == null) {
+                // outside of the base resource
+                return null;
+            }
             path = addPaths(baseResource, path);
 
+            if (entries != null) {
+                String indexedPath = indexedPath(path);
+
+                if (indexedPath != null || exclusive) {
+                    return indexedPath;
+                }
+            }
+
             if (isDirectory(path)) {
                 if (welcomeFileConfigured()) {
-                    path = addPaths(path, welcomeFile);
-                    resourceStream = loadStream(path);
+                    resourcePath = addPaths(path, welcomeFile);
                 }
             } else {
-                resourceStream = loadStream(path);
+                resourcePath = path;
             }
 
         } catch (Exception e) {
@@ -102,7 +281,79 @@ public class JarResourceHandler {
             }
         }
 
-        return resourceStream;
+        return resourcePath;
+    }
+
+    /**
+     * @return the path of an indexed entry, the welcome file of an indexed directory, or null if there is none
+     */
+    private String indexedPath(String path) {
+        boolean directory = isDirectory(path);
+        String directoryPath = directory ? path.substring(0, path.length() - 1) : path;
+
+        if (directory || directories.contains(directoryPath)) {
+            if (welcomeFileConfigured() && directories.contains(directoryPath)) {
+                String welcomePath = addPaths(directoryPath + "/", welcomeFile);
+                return entries.containsKey(welcomePath) ? welcomePath : null;
+            }
+            return null;
+        }
+        return entries.containsKey(path) ? path : null;
+    }
+
+    /**
+     * Indexes the entries of a jar under a prefix, e.g. 'public/', by their path in the class path
+     */
+    private void index(JarFile jar, String entryName, Map<String, Entry> indexed, Set<String> indexedDirectories) {
+        String prefix = entryName != null ? entryName : "";
+        if (!prefix.isEmpty() && !prefix.endsWith("/")) {
+            prefix += "/";
+        }
+
+        String base = baseResource.endsWith("/") ? baseResource.substring(0, baseResource.length() - 1) : baseResource;
+        indexedDirectories.add(base);
+
+        for (Enumeration<JarEntry> jarEntries = jar.entries(); jarEntries.hasMoreElements(); ) {
+            JarEntry jarEntry = jarEntries.nextElement();
+            String name = jarEntry.getName();
+
+            if (name.length() <= prefix.length() || !name.startsWith(prefix)) {
+                continue;
+            }
+
+            String path = base + "/" + name.substring(prefix.length());
+
+            if (jarEntry.isDirectory()) {
+                path = path.substring(0, path.length() - 1);
+            } else {
+                indexed.put(path, new Entry(jarEntry));
+            }
+
+            // the parent directories too, jars don't always have entries for them
+            String directory = jarEntry.isDirectory() ? path : path.substring(0, path.lastIndexOf('/'));
+
+            while (directory.length() > base.length() && indexedDirectories.add(directory)) {
+                directory = directory.substring(0, directory.lastIndexOf('/'));
+            }
+        }
+    }
+
+    /**
+     * @return true if the base resource isn't also found in other class path entries, whose resources would be served
+     * too.
+     */
+    private static boolean isOnlyClassPathLocation(String baseResource) {
+        ClassLoader classLoader = JarResourceHandler.class.getClassLoader();
+
+        // a relative base resource is resolved from the package of this class
+        if (classLoader == null || !baseResource.startsWith("/")) {
+            return false;
+        }
+        try {
+            return Collections.list(classLoader.getResources(baseResource.substring(1))).size() == 1;
+        } catch (IOException e) {
+            return false;
+        }
     }
 
     private InputStream loadStream(String path) {
@@ -117,4 +368,52 @@ public class JarResourceHandler {
         return path.endsWith("/");
     }
 
+    /**
+     * An indexed jar entry
+     */
+    public static final class Entry {
+
+        private final JarEntry jarEntry;
+        private final long size;
+        private final long crc;
+        private final long lastModified;
+
+        private volatile byte[] inflated;
+
+        private Entry(JarEntry jarEntry) {
+            this.jarEntry = jarEntry;
+            this.size = jarEntry.getSize();
+            this.crc = jarEntry.getCrc();
+            this.lastModified = jarEntry.getTime();
+        }
+
+        /**
+         * @return the inflated size, or -1 if unknown
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * @return the CRC-32 of the inflated content, or -1 if unknown
+         */
+        public long crc() {
+            return crc;
+        }
+
+        /**
+         * @return the modification time, or -1 if unknown
+         */
+        public long lastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the inflated content kept in memory, or null
+         */
+        public byte[] inflated() {
+            return inflated;
+        }
+    }
+
 }
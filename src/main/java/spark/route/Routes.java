@@ -19,11 +19,15 @@ package spark.route;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import spark.routematch.RouteMatch;
 import spark.utils.MimeParse;
+import spark.utils.SparkUtils;
 import spark.utils.StringUtils;
 
 /**
@@ -37,7 +41,16 @@ public class Routes {
     private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(Routes.class);
     private static final char SINGLE_QUOTE = '\'';
 
+    // marks a first segment set where a param or wildcard lets any path match
+    private static final String ANY_SEGMENT = "*";
+
     private List<RouteEntry> routes;
+    private List<RouteEntry> options;
+    private Map<String, Object> exactTargets;
+
+    // the first path segments of all routes, filters and options, rebuilt when the version changes
+    private volatile int version;
+    private volatile FirstSegments firstSegments;
 
     public static Routes create() {
         return new Routes();
@@ -48,6 +61,8 @@ public class Routes {
      */
     protected Routes() {
         routes = new ArrayList<>();
+        options = new ArrayList<>();
+        exactTargets = new ConcurrentHashMap<>();
     }
 
     /**
@@ -81,6 +96,112 @@ public class Routes {
         }
     }
 
+    /**
+     * Adds an option that applies to the routes matching the given path, e.g. a caching or conditional GET policy.
+     * An option added for {@link SparkUtils#ALL_PATHS} applies to all routes of the HTTP method.
+     *
+     * @param httpMethod the http method
+     * @param path       the route path
+     * @param option     the option
+     */
+    public void addOption(HttpMethod httpMethod, String path, Object option) {
+        RouteEntry entry = new RouteEntry();
+        entry.httpMethod = httpMethod;
+        entry.path = path;
+        entry.target = option;
+        entry.acceptedType = null;
+        LOG.debug("Adds route option: " + entry);
+        options.add(entry);
+        version++;
+    }
+
+    /**
+     * Adds a target for an exact path (without params or wildcards), e.g. a constant response. Exact targets are looked
+     * up in constant time, before the routes are scanned. Adding a target for a path replaces its previous target
+     * atomically.
+     *
+     * @param path   the exact path
+     * @param target the target
+     */
+    public void addExact(String path, Object target) {
+        LOG.debug("Adds exact target for path: " + path);
+        exactTargets.put(path, target);
+    }
+
+    /**
+     * Finds the target added for an exact path
+     *
+     * @param path the requested path
+     * @return the target, or null if none was added for the path
+     */
+    public Object findExact(String path) {
+        if (path == null || exactTargets.isEmpty()) {
+            return null;
+        }
+        return exactTargets.get(path);
+    }
+
+    /**
+     * Removes the target added for an exact path
+     *
+     * @param path the exact path
+     * @return true if a target was removed
+     */
+    public boolean removeExact(String path) {
+        return exactTargets.remove(path) != null;
+    }
+
+    /**
+     * Tells if a requested path may match any route, filter or option, from its first segment only. This is a cheap
+     * negative lookup: false means that nothing matches the path, true means that the routes need to be scanned.
+     * Exact targets are not taken into account.
+     *
+     * @param path the requested path
+     * @return false if no route, filter or option can match the path
+     */
+    public boolean mayMatch(String path) {
+        if (path == null) {
+            return true;
+        }
+
+        FirstSegments current = firstSegments;
+        if (current == null || current.version != version) {
+            // read the version first, a change while collecting is picked up by the next lookup
+            int collectedVersion = version;
+            current = new FirstSegments(collectedVersion, collectFirstSegments());
+            firstSegments = current;
+        }
+
+        Set<String> segments = current.segments;
+
+        if (segments.contains(ANY_SEGMENT)) {
+            return true;
+        }
+
+        List<String> pathList = SparkUtils.convertRouteToList(path);
+        return pathList.isEmpty() || segments.contains(pathList.get(0));
+    }
+
+    /**
+     * Finds the first option of the given type that applies to a requested route
+     *
+     * @param httpMethod the http method
+     * @param path       the path
+     * @param type       the option type
+     * @param <T>        the option type
+     * @return the option, or null if there isn't any
+     */
+    public <T> T findOption(HttpMethod httpMethod, String path, Class<T> type) {
+        for (RouteEntry entry : options) {
+            if (type.isInstance(entry.target)
+                    && entry.httpMethod == httpMethod
+                    && (entry.path.equals(SparkUtils.ALL_PATHS) || entry.matches(httpMethod, path))) {
+                return type.cast(entry.target);
+            }
+        }
+        return null;
+    }
+
     /**
      * finds target for a requested route
      *
@@ -127,6 +248,9 @@ public class Routes {
      */
     public void clear() {
         routes.clear();
+        options.clear();
+        exactTargets.clear();
+        version++;
         RouteOverview.routes.clear();
     }
 
@@ -187,9 +311,38 @@ public class Routes {
         LOG.debug("Adds route: " + entry);
         // Adds to end of list
         routes.add(entry);
+        version++;
         RouteOverview.add(new RouteEntry(entry), target);
     }
 
+    private Set<String> collectFirstSegments() {
+        Set<String> segments = new HashSet<>();
+
+        for (RouteEntry entry : new ArrayList<>(routes)) {
+            // a filter for all paths matches any path
+            segments.add(entry.path.equals(SparkUtils.ALL_PATHS) ? ANY_SEGMENT : firstSegment(entry.path));
+        }
+        for (RouteEntry entry : new ArrayList<>(options)) {
+            // an option for all paths only applies to the routes of the method, it doesn't match a path by itself
+            if (!entry.path.equals(SparkUtils.ALL_PATHS)) {
+                segments.add(firstSegment(entry.path));
+            }
+        }
+        return segments;
+    }
+
+    private static String firstSegment(String routePath) {
+        List<String> routeList = SparkUtils.convertRouteToList(routePath);
+
+        if (routeList.isEmpty()) {
+            // the root, a requested path without segments is never rejected
+            return "";
+        }
+
+        String segment = routeList.get(0);
+        return SparkUtils.isParam(segment) || SparkUtils.isSplat(segment) ? ANY_SEGMENT : segment;
+    }
+
     //can be cached? I don't think so.
     private Map<String, RouteEntry> getAcceptedMimeTypes(List<RouteEntry> routes) {
         Map<String, RouteEntry> acceptedTypes = new HashMap<>();
@@ -255,6 +408,18 @@ public class Routes {
             }
         }
 
-        return routes.removeAll(forRemoval);
+        boolean removed = routes.removeAll(forRemoval);
+        version++;
+        return removed;
+    }
+
+    private static final class FirstSegments {
+        final int version;
+        final Set<String> segments;
+
+        FirstSegments(int version, Set<String> segments) {
+            this.version = version;
+            this.segments = segments;
+        }
     }
 }
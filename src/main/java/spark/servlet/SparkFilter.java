@@ -48,6 +48,12 @@ public class SparkFilter implements Filter {
 
     public static final String APPLICATION_CLASS_PARAM = "applicationClass";
 
+    /**
+     * The init parameter holding the max size in bytes of a decompressed request body, see
+     * {@link spark.Service#requestDecompression(long)}. Request bodies aren't decompressed if not set.
+     */
+    public static final String REQUEST_DECOMPRESSION_PARAM = "requestDecompression";
+
     private String filterPath;
 
     private MatcherFilter matcherFilter;
@@ -62,7 +68,26 @@ public class SparkFilter implements Filter {
 
         filterPath = FilterTools.getFilterPath(filterConfig);
 
-        matcherFilter = new MatcherFilter(ServletRoutes.get(), StaticFilesConfiguration.servletInstance, true, false);
+        // static files are served by this filter before the path is made relative, not again by the matcher filter
+        matcherFilter = new MatcherFilter(ServletRoutes.get(),
+                                          StaticFilesConfiguration.create(),
+                                          true,
+                                          false,
+                                          getMaxDecompressedRequestSize(filterConfig),
+                                          null);
+    }
+
+    private static long getMaxDecompressedRequestSize(FilterConfig filterConfig) throws ServletException {
+        String maxDecompressedSize = filterConfig.getInitParameter(REQUEST_DECOMPRESSION_PARAM);
+
+        if (maxDecompressedSize == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(maxDecompressedSize.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid '" + REQUEST_DECOMPRESSION_PARAM + "': " + maxDecompressedSize, e);
+        }
     }
 
     /**
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.staticfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends static files with non-blocking IO, so a slow client doesn't hold a server thread for the whole transfer. The
+ * file is written in chunks from a {@link WriteListener}, whenever the connection can take more, and the exchange is
+ * completed when the last chunk has been written. A download under a {@link BandwidthLimit} is paused without holding
+ * a thread while it waits for its rate.
+ */
+final class AsyncFileSender {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncFileSender.class);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // only resumes the paused downloads, their chunks are written on server threads
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spark-static-files-pacer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Hide constructor
+    private AsyncFileSender() {
+
+    }
+
+    /**
+     * Sends a range of a file as the content of a response, unless the request can't be processed asynchronously.
+     *
+     * @param request  the HTTP servlet request.
+     * @param response the HTTP servlet response, its output stream must not have been wrapped.
+     * @param file     the file.
+     * @param offset   the position of the first byte of the range.
+     * @param length   the length of the range.
+     * @param limit    the bandwidth limit of the download, or null if it isn't limited.
+     * @return true if the transfer was started, false if the range has to be sent synchronously.
+     * @throws IOException in case of IO error.
+     */
+    static boolean send(HttpServletRequest request,
+                        HttpServletResponse response,
+                        File file,
+                        long offset,
+                        long length,
+                        BandwidthLimit limit) throws IOException {
+
+        // a 'HEAD' response has no content to wait for
+        if (!"GET".equals(request.getMethod()) || !request.isAsyncSupported() || request.isAsyncStarted()) {
+            return false;
+        }
+        if (offset + length > file.length()) {
+            return false;
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        BandwidthLimit.Throttle throttle = null;
+        try {
+            ServletOutputStream outputStream = response.getOutputStream();
+            response.setContentLengthLong(length);
+
+            AsyncContext asyncContext = request.startAsync(request, response);
+            // a stalled connection fails the write when it's idle for too long, the transfer itself may take hours
+            asyncContext.setTimeout(0);
+
+            throttle = limit != null ? limit.open() : null;
+            outputStream.setWriteListener(new ChunkWriter(asyncContext,
+                                                          outputStream,
+                                                          channel,
+                                                          offset,
+                                                          length,
+                                                          throttle));
+        } catch (IOException | RuntimeException e) {
+            if (throttle != null) {
+                throttle.close();
+            }
+            channel.close();
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the chunks of a range as long as the output stream is ready, then waits to be called again.
+     */
+    private static final class ChunkWriter implements WriteListener {
+
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream outputStream;
+        private final FileChannel channel;
+        private final long end;
+        private final ByteBuffer buffer;
+        private final BandwidthLimit.Throttle throttle;
+
+        private long position;
+
+        ChunkWriter(AsyncContext asyncContext,
+                    ServletOutputStream outputStream,
+                    FileChannel channel,
+                    long offset,
+                    long length,
+                    BandwidthLimit.Throttle throttle) {
+            this.asyncContext = asyncContext;
+            this.outputStream = outputStream;
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+            // the output stream may hold the chunk until it's ready again, only then is the buffer reused
+            this.buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(CHUNK_SIZE, length)));
+            this.throttle = throttle;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (outputStream.isReady()) {
+                if (position >= end) {
+                    close();
+                    asyncContext.complete();
+                    return;
+                }
+
+                long chunk = Math.min(buffer.capacity(), end - position);
+
+                if (throttle != null) {
+                    chunk = throttle.acquire(chunk);
+
+                    if (chunk == 0) {
+                        // the output stream stays ready, so it's resumed by the timer only
+                        TIMER.schedule(this::resume, throttle.pauseNanos(), TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                }
+
+                buffer.clear();
+                buffer.limit((int) chunk);
+
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file at position " + position);
+                }
+                position += read;
+                outputStream.write(buffer.array(), 0, read);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // mostly clients going away during the download
+            LOG.debug("Could not send static file, sent until position " + position, t);
+            try {
+                closeQuietly();
+            } finally {
+                asyncContext.complete();
+            }
+        }
+
+        private void resume() {
+            try {
+                asyncContext.start(() -> {
+                    try {
+                        onWritePossible();
+                    } catch (IOException | RuntimeException e) {
+                        onError(e);
+                    }
+                });
+            } catch (IllegalStateException e) {
+                // the exchange was completed while the download was paused
+                closeQuietly();
+            }
+        }
+
+        private void close() throws IOException {
+            if (throttle != null) {
+                throttle.close();
+            }
+            channel.close();
+        }
+
+        private void closeQuietly() {
+            try {
+                close();
+            } catch (IOException e) {
+                LOG.debug("Could not close static file", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.staticfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletResponse;
+
+import spark.utils.Assert;
+
+/**
+ * Limits the rate at which large static files are sent, so that a few clients downloading them don't saturate the
+ * network for the other responses. Each download is paced by a token bucket of its own and all of them by a shared
+ * one, in which every download gets an equal share of the tokens at a time. Smaller files and the responses of routes
+ * are never limited. The limited files are sent as they are: not compressed on the fly, though a precompressed sibling
+ * is, and whole rather than as several ranges.
+ * <p>
+ * The downloads wait for their rate with non-blocking IO when the server supports asynchronous processing, they hold
+ * their server thread otherwise.
+ */
+public final class BandwidthLimit {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // the downloads wait for chunks of at least this size, or of their share of the rate if it's smaller
+    private static final long MIN_CHUNK_SIZE = 8 * 1024;
+
+    // so a download that can't be sent yet doesn't wake up over and over
+    private static final long MIN_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long perConnectionBytesPerSecond = 0;
+    private long minimumSize = 1024 * 1024;
+
+    private TokenBucket total = null;
+
+    private final AtomicInteger activeTransfers = new AtomicInteger();
+
+    private final LongAdder throttledResponses = new LongAdder();
+    private final LongAdder throttledBytes = new LongAdder();
+    private final LongAdder pauses = new LongAdder();
+
+    /**
+     * Creates a bandwidth limit, unlimited until the rates are set.
+     *
+     * @return the bandwidth limit.
+     */
+    public static BandwidthLimit create() {
+        return new BandwidthLimit();
+    }
+
+    private BandwidthLimit() {
+        // hidden
+    }
+
+    /**
+     * Sets the maximum rate of each download.
+     *
+     * @param bytesPerSecond the rate in bytes per second, 0 for no limit.
+     * @return this limit.
+     */
+    public BandwidthLimit perConnection(long bytesPerSecond) {
+        Assert.isTrue(bytesPerSecond >= 0, "'bytesPerSecond' must not be negative");
+        this.perConnectionBytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Sets the maximum rate of all the downloads together.
+     *
+     * @param bytesPerSecond the rate in bytes per second, 0 for no limit.
+     * @return this limit.
+     */
+    public BandwidthLimit total(long bytesPerSecond) {
+        Assert.isTrue(bytesPerSecond >= 0, "'bytesPerSecond' must not be negative");
+        this.total = bytesPerSecond > 0 ? TokenBucket.create(bytesPerSecond, System.nanoTime()) : null;
+        return this;
+    }
+
+    /**
+     * Sets the size from which static files are limited, 1 MB by default.
+     *
+     * @param bytes the size in bytes.
+     * @return this limit.
+     */
+    public BandwidthLimit minimumSize(long bytes) {
+        Assert.isTrue(bytes >= 0, "'bytes' must not be negative");
+        this.minimumSize = bytes;
+        return this;
+    }
+
+    /**
+     * @return the number of responses sent under the limit.
+     */
+    public long throttledResponses() {
+        return throttledResponses.sum();
+    }
+
+    /**
+     * @return the number of bytes sent under the limit.
+     */
+    public long throttledBytes() {
+        return throttledBytes.sum();
+    }
+
+    /**
+     * @return the number of times a download waited for its rate.
+     */
+    public long pauses() {
+        return pauses.sum();
+    }
+
+    /**
+     * @param length the length of the content of a static file response.
+     * @return true if the content is sent under the limit.
+     */
+    boolean appliesTo(long length) {
+        return length >= minimumSize && (perConnectionBytesPerSecond > 0 || total != null);
+    }
+
+    /**
+     * Starts pacing a download, which must be closed when it's finished.
+     */
+    Throttle open() {
+        return new Throttle(perConnectionBytesPerSecond > 0
+                                    ? TokenBucket.create(perConnectionBytesPerSecond, System.nanoTime())
+                                    : null,
+                            total);
+    }
+
+    /**
+     * Sends a range of a file as the content of a response under the limit, waiting for the rate on the current
+     * thread.
+     *
+     * @param file     the file.
+     * @param offset   the position of the first byte of the range.
+     * @param length   the length of the range.
+     * @param response the HTTP servlet response.
+     * @throws IOException in case of IO error.
+     */
+    void send(File file, long offset, long length, HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(length);
+        OutputStream outputStream = response.getOutputStream();
+
+        try (Throttle throttle = open();
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(CHUNK_SIZE, length)));
+            long position = offset;
+            long end = offset + length;
+
+            while (position < end) {
+                long granted = throttle.acquire(Math.min(buffer.capacity(), end - position));
+
+                if (granted == 0) {
+                    TimeUnit.NANOSECONDS.sleep(throttle.pauseNanos());
+                    continue;
+                }
+
+                buffer.clear();
+                buffer.limit((int) granted);
+
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file at position " + position);
+                }
+                outputStream.write(buffer.array(), 0, read);
+                position += read;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sending a static file");
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Paces a download, by its own bucket and by its share of the total one.
+     */
+    final class Throttle implements AutoCloseable {
+
+        private final TokenBucket connection;
+        private final TokenBucket total;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        // the size of the chunk waited for
+        private long pending = 1;
+
+        private Throttle(TokenBucket connection, TokenBucket total) {
+            this.connection = connection;
+            this.total = total;
+
+            activeTransfers.incrementAndGet();
+            throttledResponses.increment();
+        }
+
+        /**
+         * @param wanted the number of bytes to send.
+         * @return the number of bytes that can be sent now, up to the wanted number, 0 if the download has to wait
+         * for {@link #pauseNanos()}.
+         */
+        long acquire(long wanted) {
+            return acquire(wanted, System.nanoTime());
+        }
+
+        long acquire(long wanted, long now) {
+            long minimum = Math.min(wanted, MIN_CHUNK_SIZE);
+
+            if (total != null) {
+                // the downloads take turns on the total rate instead of the first one taking it all
+                long share = Math.max(1, total.capacity() / Math.max(1, activeTransfers.get()));
+                wanted = Math.min(wanted, share);
+                minimum = Math.min(minimum, share);
+            }
+            if (connection != null) {
+                minimum = Math.min(minimum, connection.capacity());
+            }
+            pending = minimum;
+
+            long granted = connection != null ? connection.take(wanted, minimum, now) : wanted;
+
+            if (granted > 0 && total != null) {
+                long shared = total.take(granted, minimum, now);
+
+                if (shared < granted && connection != null) {
+                    connection.giveBack(granted - shared);
+                }
+                granted = shared;
+            }
+
+            if (granted > 0) {
+                throttledBytes.add(granted);
+            } else {
+                pauses.increment();
+            }
+            return granted;
+        }
+
+        /**
+         * @return the time in nanoseconds to wait before acquiring bytes again.
+         */
+        long pauseNanos() {
+            return pauseNanos(System.nanoTime());
+        }
+
+        long pauseNanos(long now) {
+            long pause = connection != null ? connection.nanosUntilAvailable(pending, now) : 0;
+
+            if (total != null) {
+                pause = Math.max(pause, total.nanosUntilAvailable(pending, now));
+            }
+            return Math.max(pause, MIN_PAUSE_NANOS);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                activeTransfers.decrementAndGet();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.staticfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import spark.cache.LruCache;
+
+/**
+ * The gzip compressed variants of static files, so a file is compressed once instead of for every request. A
+ * precompressed sibling, e.g. 'app.js.gz' next to 'app.js', is preferred. Otherwise the compressed content of files up
+ * to 1 MB is kept for the most recently sent files, up to 16 MB in total. Larger files are compressed while sent.
+ * <p>
+ * Files in formats that are compressed already, e.g. images and archives, are never compressed, as told by their
+ * content type.
+ */
+final class CompressedVariants {
+
+    static final String GZIP_EXTENSION = ".gz";
+
+    static final String VARY = "Vary";
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+    static final String CONTENT_ENCODING = "Content-Encoding";
+    static final String GZIP = "gzip";
+
+    /**
+     * Returned for a file that isn't worth sending compressed.
+     */
+    static final byte[] NOT_COMPRESSED = new byte[0];
+
+    private static final long MAX_SIZE = 16L * 1024 * 1024;
+    private static final long MAX_ENTRY_SIZE = 1024 * 1024;
+    private static final long ENTRY_OVERHEAD = 64;
+
+    // media types that are compressed already, besides images, audio and video
+    private static final Set<String> COMPRESSED_TYPES = new HashSet<>(Arrays.asList(
+            "application/zip", "application/gzip", "application/x-bzip2", "application/x-xz",
+            "application/x-7z-compressed", "application/vnd.rar", "application/zstd", "application/x-brotli",
+            "application/java-archive", "application/pdf", "application/octet-stream", "font/woff", "font/woff2"));
+
+    // images that are not compressed
+    private static final Set<String> UNCOMPRESSED_IMAGE_TYPES = new HashSet<>(Arrays.asList(
+            "image/svg+xml", "image/x-icon", "image/bmp"));
+
+    private final LruCache<String, Variant> variants = LruCache.create(MAX_SIZE, Variant::weight);
+
+    static CompressedVariants create() {
+        return new CompressedVariants();
+    }
+
+    private CompressedVariants() {
+        // hidden
+    }
+
+    /**
+     * @param contentType the content type of a file, e.g. 'application/javascript', or null if unknown.
+     * @return false if the file is in a format that is compressed already, e.g. an image or an archive.
+     */
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+
+        int parameters = contentType.indexOf(';');
+        String mediaType = (parameters < 0 ? contentType : contentType.substring(0, parameters))
+                .trim()
+                .toLowerCase(Locale.ROOT);
+
+        if (mediaType.startsWith("text/") || mediaType.endsWith("+json") || mediaType.endsWith("+xml")) {
+            return true;
+        }
+        if (mediaType.startsWith("image/")) {
+            return UNCOMPRESSED_IMAGE_TYPES.contains(mediaType);
+        }
+        if (mediaType.startsWith("audio/") || mediaType.startsWith("video/")) {
+            return false;
+        }
+        return !COMPRESSED_TYPES.contains(mediaType);
+    }
+
+    /**
+     * @param file a file.
+     * @return the precompressed sibling of the file, or null if there is none or it's older than the file.
+     */
+    static File precompressed(File file) {
+        File sibling = new File(file.getPath() + GZIP_EXTENSION);
+        long lastModified = sibling.lastModified();
+
+        // 0 if it doesn't exist
+        return lastModified != 0 && lastModified >= file.lastModified() && sibling.isFile() ? sibling : null;
+    }
+
+    /**
+     * Gets the gzip compressed content of a file, compressing it once.
+     *
+     * @param file         the file.
+     * @param length       the length of the file.
+     * @param lastModified the last modified time of the file.
+     * @return the compressed content, {@link #NOT_COMPRESSED} if it wouldn't be smaller, or null if the file is too
+     * large to be kept compressed.
+     * @throws IOException in case of IO error.
+     */
+    byte[] gzipped(File file, long length, long lastModified) throws IOException {
+        if (length > MAX_ENTRY_SIZE) {
+            return null;
+        }
+
+        String key = file.getPath();
+        Variant variant = variants.get(key);
+
+        if (variant == null || variant.length != length || variant.lastModified != lastModified) {
+            byte[] gzipped = StaticContentCache.compress(Files.readAllBytes(file.toPath()));
+
+            variant = new Variant(gzipped != null ? gzipped : NOT_COMPRESSED, length, lastModified);
+            variants.put(key, variant);
+        }
+        return variant.bytes;
+    }
+
+    void clear() {
+        variants.clear();
+    }
+
+    private static final class Variant {
+        final byte[] bytes;
+        final long length;
+        final long lastModified;
+
+        Variant(byte[] bytes, long length, long lastModified) {
+            this.bytes = bytes;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        long weight() {
+            // also bounds the number of files not worth compressing
+            return bytes.length + ENTRY_OVERHEAD;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.staticfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.servlet.http.HttpServletResponse;
+
+import spark.cache.LruCache;
+import spark.embeddedserver.jetty.JettyContentSender;
+
+/**
+ * Sends static files without copying them through the Java heap, when the response is written by Jetty. Files up to
+ * 64 MB are sent as memory mapped buffers, which are kept for the most recently sent files up to 512 MB in total.
+ * Larger files are sent through their file channel. Ranges of a file are sent the same way, from their position.
+ * <p>
+ * Files that may be modified while they are sent, i.e. in external folders, are always sent through their file channel:
+ * reading a mapped buffer of a file truncated by another process crashes the JVM, while a channel just reads less.
+ */
+final class FileTransfer {
+
+    private static final boolean SUPPORTED = isJettyPresent();
+
+    private static final long MAX_MAPPED_FILE_SIZE = 64L * 1024 * 1024;
+    private static final long MAX_MAPPED_SIZE = 512L * 1024 * 1024;
+
+    private final LruCache<String, MappedFile> mappedFiles = LruCache.create(MAX_MAPPED_SIZE, MappedFile::length);
+
+    static FileTransfer create() {
+        return new FileTransfer();
+    }
+
+    private FileTransfer() {
+        // hidden
+    }
+
+    /**
+     * Sends a range of a file as the content of a response, unless the response isn't written by Jetty.
+     *
+     * @param file       the file.
+     * @param offset     the position of the first byte of the range.
+     * @param length     the length of the range.
+     * @param response   the response, its output stream must not have been wrapped.
+     * @param modifiable true if the file may be modified by another process, then it's never memory mapped.
+     * @return true if the range was sent, false if it has to be copied to the output stream.
+     * @throws IOException in case of IO error.
+     */
+    boolean send(File file,
+                 long offset,
+                 long length,
+                 HttpServletResponse response,
+                 boolean modifiable) throws IOException {
+        OutputStream outputStream = response.getOutputStream();
+
+        if (!SUPPORTED || !JettyContentSender.supports(outputStream)) {
+            return false;
+        }
+
+        long fileLength = file.length();
+        if (offset + length > fileLength) {
+            return false;
+        }
+        response.setContentLengthLong(length);
+
+        if (!modifiable && fileLength <= MAX_MAPPED_FILE_SIZE) {
+            // a view of its own, the position of the mapped buffer is shared by the requests
+            ByteBuffer content = mapped(file, fileLength).duplicate();
+            content.position((int) offset);
+            content.limit((int) (offset + length));
+            JettyContentSender.send(outputStream, content);
+        } else {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                channel.position(offset);
+                JettyContentSender.send(outputStream, length == fileLength
+                        ? channel
+                        : new BoundedChannel(channel, length));
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        mappedFiles.clear();
+    }
+
+    private ByteBuffer mapped(File file, long length) throws IOException {
+        String key = file.getPath();
+        long lastModified = file.lastModified();
+
+        MappedFile mappedFile = mappedFiles.get(key);
+
+        if (mappedFile == null || mappedFile.lastModified != lastModified || mappedFile.length != length) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // the mapping remains valid after the channel is closed
+                mappedFile = new MappedFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, length),
+                                            lastModified,
+                                            length);
+            }
+            mappedFiles.put(key, mappedFile);
+        }
+        return mappedFile.buffer;
+    }
+
+    private static boolean isJettyPresent() {
+        try {
+            Class.forName("org.eclipse.jetty.server.HttpOutput", false, FileTransfer.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads at most a number of bytes from a channel, i.e. the end of a range.
+     */
+    private static final class BoundedChannel implements ReadableByteChannel {
+        private final ReadableByteChannel channel;
+        private long remaining;
+
+        BoundedChannel(ReadableByteChannel channel, long remaining) {
+            this.channel = channel;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int limit = buffer.limit();
+            if (buffer.remaining() > remaining) {
+                buffer.limit(buffer.position() + (int) remaining);
+            }
+            try {
+                int read = channel.read(buffer);
+                if (read > 0) {
+                    remaining -= read;
+                }
+                return read;
+            } finally {
+                buffer.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class MappedFile {
+        final MappedByteBuffer buffer;
+        final long lastModified;
+        final long length;
+
+        MappedFile(MappedByteBuffer buffer, long lastModified, long length) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        long length() {
+            return length;
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.staticfiles;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import spark.utils.Assert;
+
+/**
+ * Maps the extensions of static files to their content types, from a precomputed table of the common web formats that
+ * can be overridden per static files configuration. Extensions are compared case insensitively.
+ */
+final class MimeTypes {
+
+    private static final Map<String, String> DEFAULTS = defaults();
+
+    // the registered types, looked up before the defaults
+    private final Map<String, String> registered = new ConcurrentHashMap<>();
+
+    static MimeTypes create() {
+        return new MimeTypes();
+    }
+
+    private MimeTypes() {
+        // hidden
+    }
+
+    /**
+     * Registers the content type of an extension, replacing the default one.
+     *
+     * @param extension   the extension, e.g. 'csv', without the dot.
+     * @param contentType the content type, e.g. 'text/csv'.
+     */
+    void register(String extension, String contentType) {
+        Assert.hasLength(extension, "'extension' must not be empty");
+        Assert.hasLength(contentType, "'contentType' must not be empty");
+
+        registered.put(normalize(extension), contentType);
+    }
+
+    /**
+     * @param name the name or the path of a file, e.g. 'app.js'.
+     * @return the content type of the file, or null if its extension is unknown.
+     */
+    String of(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        int dot = name.lastIndexOf('.');
+        if (dot < 0 || dot < name.lastIndexOf('/')) {
+            return null;
+        }
+
+        String extension = normalize(name.substring(dot + 1));
+
+        if (!registered.isEmpty()) {
+            String contentType = registered.get(extension);
+            if (contentType != null) {
+                return contentType;
+            }
+        }
+        return DEFAULTS.get(extension);
+    }
+
+    void clear() {
+        registered.clear();
+    }
+
+    private static String normalize(String extension) {
+        return extension.toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<String, String> defaults() {
+        Map<String, String> types = new HashMap<>();
+
+        // text and documents
+        types.put("html", "text/html");
+        types.put("htm", "text/html");
+        types.put("css", "text/css");
+        types.put("js", "application/javascript");
+        types.put("mjs", "application/javascript");
+        types.put("json", "application/json");
+        types.put("map", "application/json");
+        types.put("webmanifest", "application/manifest+json");
+        types.put("xml", "application/xml");
+        types.put("xhtml", "application/xhtml+xml");
+        types.put("rss", "application/rss+xml");
+        types.put("atom", "application/atom+xml");
+        types.put("txt", "text/plain");
+        types.put("csv", "text/csv");
+        types.put("md", "text/markdown");
+        types.put("ics", "text/calendar");
+        types.put("vtt", "text/vtt");
+        types.put("pdf", "application/pdf");
+        types.put("wasm", "application/wasm");
+
+        // images
+        types.put("png", "image/png");
+        types.put("jpg", "image/jpeg");
+        types.put("jpeg", "image/jpeg");
+        types.put("gif", "image/gif");
+        types.put("webp", "image/webp");
+        types.put("avif", "image/avif");
+        types.put("svg", "image/svg+xml");
+        types.put("ico", "image/x-icon");
+        types.put("bmp", "image/bmp");
+        types.put("tif", "image/tiff");
+        types.put("tiff", "image/tiff");
+
+        // fonts
+        types.put("woff", "font/woff");
+        types.put("woff2", "font/woff2");
+        types.put("ttf", "font/ttf");
+        types.put("otf", "font/otf");
+        types.put("eot", "application/vnd.ms-fontobject");
+
+        // audio and video
+        types.put("mp3", "audio/mpeg");
+        types.put("m4a", "audio/mp4");
+        types.put("aac", "audio/aac");
+        types.put("oga", "audio/ogg");
+        types.put("ogg", "audio/ogg");
+        types.put("flac", "audio/flac");
+        types.put("wav", "audio/wav");
+        types.put("mp4", "video/mp4");
+        types.put("m4v", "video/mp4");
+        types.put("webm", "video/webm");
+        types.put("ogv", "video/ogg");
+        types.put("mov", "video/quicktime");
+        types.put("avi", "video/x-msvideo");
+
+        // archives and binaries
+        types.put("zip", "application/zip");
+        types.put("gz", "application/gzip");
+        types.put("tgz", "application/gzip");
+        types.put("bz2", "application/x-bzip2");
+        types.put("xz", "application/x-xz");
+        types.put("7z", "application/x-7z-compressed");
+        types.put("rar", "application/vnd.rar");
+        types.put("zst", "application/zstd");
+        types.put("br", "application/x-brotli");
+        types.put("jar", "application/java-archive");
+        types.put("war", "application/java-archive");
+        types.put("bin", "application/octet-stream");
+        types.put("exe", "application/octet-stream");
+        types.put("dmg", "application/octet-stream");
+        types.put("iso", "application/octet-stream");
+
+        return Collections.unmodifiableMap(types);
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.staticfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import spark.utils.RangeUtils;
+import spark.utils.RangeUtils.ByteRange;
+
+/**
+ * Answers byte range requests for static files with '206 Partial Content', as a single part or as
+ * 'multipart/byteranges', or with '416 Range Not Satisfiable'. The ranges are read at their position in the file or
+ * in the cached content, the bytes before them are never read.
+ */
+final class PartialContent {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final String CRLF = "\r\n";
+
+    // Hide constructor
+    private PartialContent() {
+
+    }
+
+    /**
+     * Gets the ranges requested for a static file.
+     *
+     * @param request      the HTTP servlet request.
+     * @param length       the length of the file.
+     * @param etag         the entity tag of the file, or null if unknown.
+     * @param lastModified the last modified time of the file, or -1 if unknown.
+     * @return the ranges, empty if none is satisfiable, or null if the whole file should be sent.
+     */
+    static List<ByteRange> requestedRanges(HttpServletRequest request, long length, String etag, long lastModified) {
+        String range = request.getHeader(RangeUtils.RANGE);
+
+        if (range == null || !"GET".equals(request.getMethod())) {
+            return null;
+        }
+        if (!RangeUtils.isIfRangeSatisfied(request, etag, lastModified)) {
+            return null;
+        }
+        return RangeUtils.parse(range, length);
+    }
+
+    /**
+     * Sends the requested ranges of a static file.
+     *
+     * @param response the HTTP servlet response.
+     * @param ranges   the ranges, as returned by {@link #requestedRanges}.
+     * @param length   the length of the file.
+     * @param source   the content of the file.
+     * @throws IOException in case of IO error.
+     */
+    static void send(HttpServletResponse response,
+                     List<ByteRange> ranges,
+                     long length,
+                     Source source) throws IOException {
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(RangeUtils.CONTENT_RANGE, RangeUtils.unsatisfiedContentRange(length));
+            response.setContentLength(0);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setHeader(RangeUtils.CONTENT_RANGE, RangeUtils.contentRange(range, length));
+            source.send(response, range.first(), range.length());
+            return;
+        }
+
+        String contentType = response.getContentType();
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong())
+                + Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+        byte[][] headers = new byte[ranges.size()][];
+        long contentLength = 0;
+
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            headers[i] = partHeader(boundary, contentType, RangeUtils.contentRange(range, length), i == 0);
+            contentLength += headers[i].length + range.length();
+        }
+        byte[] end = ascii(CRLF + "--" + boundary + "--" + CRLF);
+        contentLength += end.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream outputStream = response.getOutputStream();
+        try (Source.Reader reader = source.open()) {
+            for (int i = 0; i < ranges.size(); i++) {
+                outputStream.write(headers[i]);
+                reader.write(outputStream, ranges.get(i).first(), ranges.get(i).length());
+            }
+        }
+        outputStream.write(end);
+        outputStream.flush();
+    }
+
+    private static byte[] partHeader(String boundary, String contentType, String contentRange, boolean first) {
+        StringBuilder header = new StringBuilder(128);
+
+        if (!first) {
+            header.append(CRLF);
+        }
+        header.append("--").append(boundary).append(CRLF);
+        if (contentType != null) {
+            header.append("Content-Type: ").append(contentType).append(CRLF);
+        }
+        header.append(RangeUtils.CONTENT_RANGE).append(": ").append(contentRange).append(CRLF);
+        header.append(CRLF);
+
+        return ascii(header.toString());
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * The content of a static file, read at arbitrary positions.
+     */
+    abstract static class Source {
+
+        /**
+         * @param bytes the content held in memory.
+         * @return the source.
+         */
+        static Source of(byte[] bytes) {
+            return new Source() {
+                @Override
+                Reader open() {
+                    return (outputStream, offset, length) -> outputStream.write(bytes, (int) offset, (int) length);
+                }
+            };
+        }
+
+        /**
+         * @param file     the file.
+         * @param transfer sends a single range without copying it to the output stream, if possible.
+         * @return the source.
+         */
+        static Source of(File file, Transfer transfer) {
+            return new Source() {
+                @Override
+                void send(HttpServletResponse response, long offset, long length) throws IOException {
+                    if (!transfer.send(file, offset, length, response)) {
+                        super.send(response, offset, length);
+                    }
+                }
+
+                @Override
+                Reader open() throws IOException {
+                    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+                    return new Reader() {
+                        @Override
+                        public void write(OutputStream outputStream, long offset, long length) throws IOException {
+                            copy(channel, offset, length, outputStream);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            channel.close();
+                        }
+                    };
+                }
+            };
+        }
+
+        /**
+         * Sends a single range as the content of a response.
+         */
+        void send(HttpServletResponse response, long offset, long length) throws IOException {
+            response.setContentLengthLong(length);
+
+            OutputStream outputStream = response.getOutputStream();
+            try (Reader reader = open()) {
+                reader.write(outputStream, offset, length);
+            }
+            outputStream.flush();
+        }
+
+        abstract Reader open() throws IOException;
+
+        /**
+         * Sends a range of a file as the content of a response, e.g. through {@link FileTransfer}.
+         */
+        interface Transfer {
+
+            /**
+             * @return true if the range was sent, false if it has to be copied to the output stream.
+             */
+            boolean send(File file, long offset, long length, HttpServletResponse response) throws IOException;
+        }
+
+        /**
+         * Writes ranges of the content.
+         */
+        interface Reader extends AutoCloseable {
+
+            void write(OutputStream outputStream, long offset, long length) throws IOException;
+
+            @Override
+            default void close() throws IOException {
+                // nothing to release
+            }
+        }
+
+        private static void copy(FileChannel channel,
+                                 long offset,
+                                 long length,
+                                 OutputStream outputStream) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, length));
+            long position = offset;
+            long end = offset + length;
+
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file at position " + position);
+                }
+                outputStream.write(buffer.array(), 0, read);
+                position += read;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.staticfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.jar.JarEntry;
+
+/**
+ * The names of the entries at the root of a static files location, used to tell cheaply that a requested path can't be
+ * a static file. Names are compared case insensitively, so a case insensitive file system never misses a file.
+ * A folder is listed again when it has changed, checked at most once per second. A folder in a jar is listed once.
+ */
+final class RootEntries {
+
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    // a change in the same second as the listing may not change the modification time of the folder
+    private static final long NOT_MODIFIED = -1;
+
+    private final File folder;
+
+    // null if the names can't be listed, then any name may be an entry
+    private volatile Set<String> names;
+    private volatile long lastModified = NOT_MODIFIED;
+    private volatile long nextCheck;
+
+    /**
+     * Lists the entries of a folder in the file system.
+     *
+     * @param folder the folder.
+     * @return the root entries.
+     */
+    static RootEntries ofFolder(File folder) {
+        RootEntries entries = new RootEntries(folder, null);
+        entries.refresh(System.currentTimeMillis());
+        return entries;
+    }
+
+    /**
+     * Lists the entries of a folder in a jar, e.g. 'jar:file:/app.jar!/public'.
+     *
+     * @param url the URL of the folder.
+     * @return the root entries.
+     */
+    static RootEntries ofJar(URL url) {
+        try {
+            URLConnection connection = url.openConnection();
+
+            if (!(connection instanceof JarURLConnection)) {
+                return new RootEntries(null, null);
+            }
+
+            JarURLConnection jarConnection = (JarURLConnection) connection;
+
+            String prefix = jarConnection.getEntryName() != null ? jarConnection.getEntryName() : "";
+            if (!prefix.isEmpty() && !prefix.endsWith("/")) {
+                prefix += "/";
+            }
+
+            // the jar file is shared with the class loader, so it must stay open
+            Enumeration<JarEntry> jarEntries = jarConnection.getJarFile().entries();
+            Set<String> names = new HashSet<>();
+
+            while (jarEntries.hasMoreElements()) {
+                String name = jarEntries.nextElement().getName();
+
+                if (name.length() > prefix.length() && name.startsWith(prefix)) {
+                    String relative = name.substring(prefix.length());
+                    int slash = relative.indexOf('/');
+                    names.add(normalize(slash < 0 ? relative : relative.substring(0, slash)));
+                }
+            }
+            return new RootEntries(null, names);
+        } catch (IOException e) {
+            return new RootEntries(null, null);
+        }
+    }
+
+    private RootEntries(File folder, Set<String> names) {
+        this.folder = folder;
+        this.names = names;
+    }
+
+    /**
+     * @param name the name of an entry, i.e. the first segment of a requested path.
+     * @return false if there is no entry with this name.
+     */
+    boolean contains(String name) {
+        if (folder != null) {
+            long now = System.currentTimeMillis();
+            if (now >= nextCheck) {
+                refresh(now);
+            }
+        }
+
+        Set<String> current = names;
+        return current == null || current.contains(normalize(name));
+    }
+
+    private void refresh(long now) {
+        nextCheck = now + CHECK_INTERVAL_MILLIS;
+
+        long modified = folder.lastModified();
+        if (modified == lastModified && modified != NOT_MODIFIED) {
+            return;
+        }
+
+        String[] list = folder.list();
+        Set<String> listed = null;
+
+        if (list != null) {
+            listed = new HashSet<>();
+            for (String name : list) {
+                listed.add(normalize(name));
+            }
+        }
+
+        names = listed;
+        lastModified = now - modified > CHECK_INTERVAL_MILLIS ? modified : NOT_MODIFIED;
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+}
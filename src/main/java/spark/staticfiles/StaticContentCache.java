@@ -0,0 +1,298 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.staticfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import spark.cache.LruCache;
+import spark.utils.AdaptiveCompression;
+import spark.utils.Assert;
+import spark.utils.ConditionalUtils;
+import spark.utils.GzipUtils;
+import spark.utils.IOUtils;
+
+/**
+ * In-memory cache of the content of static files, bounded by the total size in bytes and evicting the least recently
+ * used files. The content of a file in an external folder is loaded again when the file is modified, checked at most
+ * once per second. The content of a class path or jar resource is kept as long as it isn't evicted.
+ */
+final class StaticContentCache {
+
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    private final LruCache<String, Content> contents;
+    private final long maximumEntrySize;
+    private final boolean gzip;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumSize      the maximum total size of the cached content.
+     * @param maximumEntrySize the maximum size of the content of a file, larger files are not cached.
+     * @param gzip             if the gzip compressed content should be computed when a file is cached.
+     * @return the cache.
+     */
+    static StaticContentCache create(long maximumSize, long maximumEntrySize, boolean gzip) {
+        return new StaticContentCache(maximumSize, maximumEntrySize, gzip);
+    }
+
+    private StaticContentCache(long maximumSize, long maximumEntrySize, boolean gzip) {
+        Assert.isTrue(maximumEntrySize >= 0, "'maximumEntrySize' must not be negative");
+
+        this.contents = LruCache.create(maximumSize, Content::weight);
+        this.maximumEntrySize = maximumEntrySize;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Gets the content of a resource.
+     *
+     * @param key the key of the resource.
+     * @return the content, or null if it isn't cached or the file has been modified since it was cached.
+     */
+    Content get(String key) {
+        Content content = contents.get(key);
+
+        if (content != null && content.isModified()) {
+            contents.remove(key);
+            return null;
+        }
+        return content;
+    }
+
+    /**
+     * @param length the length of a resource.
+     * @return true if a resource of this length can be cached.
+     */
+    boolean accepts(long length) {
+        return length >= 0 && length <= maximumEntrySize && length <= contents.maximumWeight();
+    }
+
+    /**
+     * @param length the length of a resource.
+     * @return true if a resource of this length can be cached without evicting another one.
+     */
+    boolean hasRoomFor(long length) {
+        return accepts(length) && contents.weight() + length <= contents.maximumWeight();
+    }
+
+    /**
+     * Reads the content of a resource and caches it.
+     *
+     * @param key          the key of the resource.
+     * @param stream       the content, closed by the caller.
+     * @param file         the file of a resource in an external folder, to check if it's modified, or null.
+     * @param contentType  the content type of the resource, or null if unknown.
+     * @param gzipStream   the precompressed content of the resource, closed by the caller, or null.
+     * @return the content.
+     */
+    Content load(String key,
+                 InputStream stream,
+                 File file,
+                 String contentType,
+                 InputStream gzipStream) throws IOException {
+        boolean compressible = CompressedVariants.isCompressible(contentType);
+
+        // taken before reading, so a modification while reading is detected
+        long lastModified = file != null ? file.lastModified() : 0;
+        long loaded = System.currentTimeMillis();
+
+        byte[] bytes = IOUtils.toByteArray(stream);
+        byte[] gzipped = null;
+
+        if (compressible && gzipStream != null) {
+            gzipped = IOUtils.toByteArray(gzipStream);
+        } else if (compressible && gzip) {
+            gzipped = compress(bytes);
+        }
+
+        Content content = new Content(bytes,
+                                      contentType,
+                                      compressible,
+                                      !compressible || gzip || gzipStream != null,
+                                      gzipped,
+                                      file,
+                                      lastModified,
+                                      loaded);
+
+        if (content.bytes.length <= maximumEntrySize) {
+            contents.put(key, content);
+        }
+        return content;
+    }
+
+    /**
+     * @return the total size of the cached content.
+     */
+    long size() {
+        return contents.weight();
+    }
+
+    void clear() {
+        contents.clear();
+    }
+
+    /**
+     * @param bytes the content.
+     * @return the gzip compressed content, or null if it isn't smaller.
+     */
+    static byte[] compress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 32);
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+            gzipStream.write(bytes);
+        }
+        // only worth sending compressed if it's smaller
+        return compressed.size() < bytes.length ? compressed.toByteArray() : null;
+    }
+
+    /**
+     * The content of a static file.
+     */
+    static final class Content {
+
+        private final byte[] bytes;
+        private final String etag;
+        private final String contentType;
+        private final boolean compressible;
+        private final boolean compressionChecked;
+        private final byte[] gzipped;
+        private final File file;
+        private final long lastModified;
+
+        // a modification in the same second as the loading may not change the modification time
+        private final boolean stable;
+
+        private volatile long nextCheck;
+
+        private Content(byte[] bytes,
+                        String contentType,
+                        boolean compressible,
+                        boolean compressionChecked,
+                        byte[] gzipped,
+                        File file,
+                        long lastModified,
+                        long loaded) {
+            this.bytes = bytes;
+            // weak, the same content is sent with or without compression
+            this.etag = ConditionalUtils.weak(ConditionalUtils.etag(bytes, 0, bytes.length));
+            this.contentType = contentType;
+            this.compressible = compressible;
+            this.compressionChecked = compressionChecked;
+            this.gzipped = gzipped;
+            this.file = file;
+            this.lastModified = lastModified;
+            this.stable = loaded - lastModified > CHECK_INTERVAL_MILLIS;
+            this.nextCheck = loaded + CHECK_INTERVAL_MILLIS;
+        }
+
+        /**
+         * Writes the content, gzip compressed if the client accepts it. The content compressed when it was cached is
+         * written as is, content that isn't compressible or wasn't worth compressing is written uncompressed, otherwise
+         * it's compressed while written.
+         *
+         * @param request             the HTTP servlet request.
+         * @param response            the HTTP servlet response.
+         * @param adaptiveCompression the adaptive compression policy, or null.
+         * @throws IOException in case of IO error.
+         */
+        void writeTo(HttpServletRequest request,
+                     HttpServletResponse response,
+                     AdaptiveCompression adaptiveCompression) throws IOException {
+            if (compressible) {
+                response.setHeader(CompressedVariants.VARY, CompressedVariants.ACCEPT_ENCODING);
+            }
+
+            if (gzipped != null && GzipUtils.acceptsGzip(request)) {
+                response.setHeader(CompressedVariants.CONTENT_ENCODING, CompressedVariants.GZIP);
+                response.setContentLength(gzipped.length);
+                response.getOutputStream().write(gzipped);
+                return;
+            }
+
+            if (compressionChecked) {
+                response.setContentLength(bytes.length);
+                response.getOutputStream().write(bytes);
+                return;
+            }
+
+            OutputStream responseStream =
+                    GzipUtils.checkAndWrap(request, response, false, bytes.length, adaptiveCompression);
+
+            if (responseStream == response.getOutputStream()) {
+                response.setContentLength(bytes.length);
+            }
+            responseStream.write(bytes);
+            responseStream.flush();
+            responseStream.close();
+        }
+
+        /**
+         * @return the uncompressed content.
+         */
+        byte[] bytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the content type, resolved when the content was cached, or null if unknown.
+         */
+        String contentType() {
+            return contentType;
+        }
+
+        /**
+         * @return the entity tag of the content, computed when it was cached.
+         */
+        String etag() {
+            return etag;
+        }
+
+        /**
+         * @return the last modified time of the file of a resource in an external folder, -1 for other resources.
+         */
+        long lastModified() {
+            return file != null ? lastModified : -1;
+        }
+
+        private boolean isModified() {
+            if (file == null) {
+                return false;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now < nextCheck) {
+                return false;
+            }
+            nextCheck = now + CHECK_INTERVAL_MILLIS;
+
+            return !stable || file.lastModified() != lastModified || file.length() != bytes.length;
+        }
+
+        private long weight() {
+            return bytes.length + (gzipped != null ? gzipped.length : 0);
+        }
+    }
+
+}
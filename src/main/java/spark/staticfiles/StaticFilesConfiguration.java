@@ -16,15 +16,28 @@
  */
 package spark.staticfiles;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.servlet.RequestDispatcher;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -37,34 +50,77 @@ import spark.resource.ClassPathResource;
 import spark.resource.ClassPathResourceHandler;
 import spark.resource.ExternalResource;
 import spark.resource.ExternalResourceHandler;
+import spark.resource.IndexedResourceHandler;
 import spark.resource.JarResourceHandler;
+import spark.resource.UriPath;
+import spark.utils.AdaptiveCompression;
 import spark.utils.Assert;
+import spark.utils.ClassUtils;
+import spark.utils.ConditionalUtils;
 import spark.utils.GzipUtils;
 import spark.utils.IOUtils;
+import spark.utils.RangeUtils;
+import spark.utils.ResourceUtils;
 
 /**
  * Holds the static file configuration.
- * TODO: Cache-Control and ETAG
  */
 public class StaticFilesConfiguration {
     private final Logger LOG = LoggerFactory.getLogger(StaticFilesConfiguration.class);
 
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String EXPIRES = "Expires";
+
     private List<AbstractResourceHandler> staticResourceHandlers = null;
     private List<JarResourceHandler> jarResourceHandlers = null;
 
+    // the root entries of every configured location
+    private final List<RootEntries> rootEntries = new CopyOnWriteArrayList<>();
+
     private boolean staticResourcesSet = false;
     private boolean externalStaticResourcesSet = false;
 
+    // the configured locations, to preload their content when the content cache is enabled afterwards
+    private String staticResourcesFolder = null;
+    private String externalStaticResourcesFolder = null;
+
+    private volatile StaticContentCache contentCache = null;
+    private boolean preloadContent = false;
+
+    // the jar entries kept inflated in memory, none if 0
+    private long inflatedJarEntrySize = 0;
+    private long inflatedJarSize = 0;
+
+    private final FileTransfer fileTransfer = FileTransfer.create();
+    private final CompressedVariants compressedVariants = CompressedVariants.create();
+    private final MimeTypes mimeTypes = MimeTypes.create();
+
+    // the files from this size are sent with non-blocking IO, none if negative
+    private volatile long asyncTransferSize = -1;
+    private volatile BandwidthLimit bandwidthLimit = null;
+    private volatile AdaptiveCompression adaptiveCompression = null;
+
+    // the request paths the static files are looked up for, all if none is included
+    private volatile String[] includedPrefixes = new String[0];
+    private volatile String[] excludedPrefixes = new String[0];
+
     public static StaticFilesConfiguration servletInstance = new StaticFilesConfiguration();
 
     private Map<String, String> customHeaders = new HashMap<>();
 
+    // the 'Cache-Control' and 'Expires' headers are computed for every response, none if negative
+    private volatile long expireTimeSeconds = -1;
+
     /**
      * @return true if consumed, false otherwise.
      */
     public boolean consume(HttpServletRequest httpRequest,
                            HttpServletResponse httpResponse) throws IOException {
 
+        if (!isInScope(httpRequest)) {
+            return false;
+        }
+
         if (consumeWithFileResourceHandlers(httpRequest, httpResponse)) {
             return true;
         }
@@ -77,6 +133,126 @@ public class StaticFilesConfiguration {
     }
 
 
+    /**
+     * Tells cheaply if a request may be for a static file, from the first segment of its path only. This is a negative
+     * lookup done before {@link #consume(HttpServletRequest, HttpServletResponse)}, e.g. to answer requests for random
+     * paths without looking them up in every static files location.
+     *
+     * @param httpRequest the request.
+     * @return false if no static files location has a root entry named as the first segment of the path.
+     */
+    public boolean mayContain(HttpServletRequest httpRequest) {
+        if (staticResourceHandlers == null && jarResourceHandlers == null) {
+            return false;
+        }
+
+        String path = requestPath(httpRequest);
+
+        if (path == null) {
+            return true;
+        }
+
+        if (!isInScope(path)) {
+            return false;
+        }
+
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        String firstSegment = path.substring(start, end < 0 ? path.length() : end);
+
+        if (firstSegment.isEmpty()) {
+            // the root may have a welcome file
+            return true;
+        }
+
+        for (RootEntries root : rootEntries) {
+            if (root.contains(firstSegment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restricts the static files to the requests with a path starting with one of the prefixes, e.g. "/assets/". The
+     * other requests are not looked up in the static file locations.
+     *
+     * @param prefixes the path prefixes.
+     */
+    public synchronized void include(String... prefixes) {
+        includedPrefixes = append(includedPrefixes, prefixes);
+    }
+
+    /**
+     * Excludes the requests with a path starting with one of the prefixes, e.g. "/api/", from the static files. They
+     * are not looked up in the static file locations.
+     *
+     * @param prefixes the path prefixes.
+     */
+    public synchronized void exclude(String... prefixes) {
+        excludedPrefixes = append(excludedPrefixes, prefixes);
+    }
+
+    private static String[] append(String[] current, String[] prefixes) {
+        String[] appended = Arrays.copyOf(current, current.length + prefixes.length);
+
+        for (int i = 0; i < prefixes.length; i++) {
+            Assert.isTrue(prefixes[i] != null && prefixes[i].startsWith("/"), "Prefixes must start with '/'");
+            appended[current.length + i] = prefixes[i];
+        }
+        return appended;
+    }
+
+    private boolean isInScope(HttpServletRequest httpRequest) {
+        if (includedPrefixes.length == 0 && excludedPrefixes.length == 0) {
+            return true;
+        }
+
+        String path = requestPath(httpRequest);
+        return path == null || isInScope(path);
+    }
+
+    private boolean isInScope(String path) {
+        String[] included = includedPrefixes;
+
+        if (included.length > 0 && !startsWithAny(path, included)) {
+            return false;
+        }
+        return !startsWithAny(path, excludedPrefixes);
+    }
+
+    private static boolean startsWithAny(String path, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the canonical path of a request, as resolved by the resource handlers, or null if it isn't valid.
+     */
+    private static String requestPath(HttpServletRequest httpRequest) {
+        String servletPath;
+        String pathInfo;
+
+        if (httpRequest.getAttribute(RequestDispatcher.INCLUDE_REQUEST_URI) != null) {
+            servletPath = (String) httpRequest.getAttribute(RequestDispatcher.INCLUDE_SERVLET_PATH);
+            pathInfo = (String) httpRequest.getAttribute(RequestDispatcher.INCLUDE_PATH_INFO);
+
+            if (servletPath == null && pathInfo == null) {
+                servletPath = httpRequest.getServletPath();
+                pathInfo = httpRequest.getPathInfo();
+            }
+        } else {
+            servletPath = httpRequest.getServletPath();
+            pathInfo = httpRequest.getPathInfo();
+        }
+
+        return UriPath.canonical(AbstractResourceHandler.addPaths(servletPath, pathInfo));
+    }
+
     private boolean consumeWithFileResourceHandlers(HttpServletRequest httpRequest,
                                                     HttpServletResponse httpResponse) throws IOException {
         if (staticResourceHandlers != null) {
@@ -86,9 +262,104 @@ public class StaticFilesConfiguration {
                 AbstractFileResolvingResource resource = staticResourceHandler.getResource(httpRequest);
 
                 if (resource != null && resource.isReadable()) {
-                    OutputStream wrappedOutputStream = GzipUtils.checkAndWrap(httpRequest, httpResponse, false);
-                    customHeaders.forEach(httpResponse::setHeader); //add all user-defined headers to response
-                    IOUtils.copy(resource.getInputStream(), wrappedOutputStream);
+                    putHeaders(httpResponse);
+
+                    File file = fileOf(resource);
+                    boolean external = resource instanceof ExternalResource;
+                    StaticContentCache cache = contentCache;
+
+                    // ranges are read at their position in the file or in the cached content
+                    if (file != null) {
+                        httpResponse.setHeader(RangeUtils.ACCEPT_RANGES, RangeUtils.BYTES);
+                    }
+
+                    if (cache != null) {
+                        StaticContentCache.Content content = cachedContent(cache, resource, external);
+
+                        if (content != null) {
+                            consumeWithContent(httpRequest, httpResponse, content);
+                            return true;
+                        }
+                    }
+
+                    String contentType = mimeTypes.of(resource.getFilename());
+                    setContentType(httpResponse, contentType);
+
+                    boolean compressible = CompressedVariants.isCompressible(contentType);
+                    if (compressible) {
+                        httpResponse.setHeader(CompressedVariants.VARY, CompressedVariants.ACCEPT_ENCODING);
+                    }
+
+                    if (file != null) {
+                        // validators from the file metadata, without opening the file
+                        long length = file.length();
+                        long lastModified = file.lastModified();
+                        String etag = fileEtag(length, lastModified);
+
+                        if (consumeNotModified(httpRequest, httpResponse, etag, lastModified)) {
+                            return true;
+                        }
+
+                        // compressed while sent or several ranges would be copied to the output stream
+                        boolean sentAsIs = isSentInChunks(httpRequest, length);
+
+                        PartialContent.Source ranges = PartialContent.Source.of(
+                                file,
+                                (source, offset, count, response) ->
+                                        sendFile(httpRequest, response, source, offset, count, external));
+
+                        if (consumeRanges(httpRequest, httpResponse, length, etag, lastModified, ranges, sentAsIs)) {
+                            return true;
+                        }
+
+                        if (compressible && GzipUtils.acceptsGzip(httpRequest)) {
+                            File precompressed = CompressedVariants.precompressed(file);
+
+                            if (precompressed != null) {
+                                httpResponse.setHeader(CompressedVariants.CONTENT_ENCODING, CompressedVariants.GZIP);
+                                long compressedLength = precompressed.length();
+
+                                if (!sendFile(httpRequest, httpResponse, precompressed, 0, compressedLength, external)) {
+                                    httpResponse.setContentLengthLong(compressedLength);
+                                    Files.copy(precompressed.toPath(), httpResponse.getOutputStream());
+                                }
+                                return true;
+                            }
+
+                            byte[] gzipped = sentAsIs
+                                    ? CompressedVariants.NOT_COMPRESSED
+                                    : compressedVariants.gzipped(file, length, lastModified);
+
+                            if (gzipped == CompressedVariants.NOT_COMPRESSED) {
+                                compressible = false;
+                            } else if (gzipped != null) {
+                                httpResponse.setHeader(CompressedVariants.CONTENT_ENCODING, CompressedVariants.GZIP);
+                                httpResponse.setContentLength(gzipped.length);
+                                httpResponse.getOutputStream().write(gzipped);
+                                return true;
+                            }
+                        }
+                    }
+
+                    // only files too large to be kept compressed are compressed while sent
+                    OutputStream wrappedOutputStream = compressible
+                            ? GzipUtils.checkAndWrap(httpRequest,
+                                                     httpResponse,
+                                                     false,
+                                                     resource.contentLength(),
+                                                     adaptiveCompression)
+                            : httpResponse.getOutputStream();
+
+                    // an uncompressed file is sent without copying it to the output stream if possible
+                    if (wrappedOutputStream == httpResponse.getOutputStream()
+                            && file != null
+                            && sendFile(httpRequest, httpResponse, file, 0, file.length(), external)) {
+                        return true;
+                    }
+
+                    try (InputStream stream = resource.getInputStream()) {
+                        IOUtils.copy(stream, wrappedOutputStream);
+                    }
                     wrappedOutputStream.flush();
                     wrappedOutputStream.close();
                     return true;
@@ -104,24 +375,515 @@ public class StaticFilesConfiguration {
         if (jarResourceHandlers != null) {
 
             for (JarResourceHandler jarResourceHandler : jarResourceHandlers) {
-                InputStream stream = jarResourceHandler.getResource(httpRequest);
+                String path = jarResourceHandler.getResourcePath(httpRequest);
 
-                if (stream != null) {
-                    OutputStream wrappedOutputStream = GzipUtils.checkAndWrap(httpRequest, httpResponse, false);
-                    customHeaders.forEach(httpResponse::setHeader); //add all user-defined headers to response
+                if (path == null) {
+                    continue;
+                }
 
-                    IOUtils.copy(stream, wrappedOutputStream);
+                StaticContentCache cache = contentCache;
 
-                    wrappedOutputStream.flush();
-                    wrappedOutputStream.close();
+                if (cache != null) {
+                    StaticContentCache.Content content = cachedJarContent(cache, jarResourceHandler, path);
 
-                    return true;
+                    if (content != null) {
+                        putHeaders(httpResponse);
+                        consumeWithContent(httpRequest, httpResponse, content);
+                        return true;
+                    }
+                }
+
+                // an indexed entry is validated without reading the jar
+                JarResourceHandler.Entry entry = jarResourceHandler.getEntry(path);
+
+                if (entry != null) {
+                    putHeaders(httpResponse);
+                    if (consumeNotModified(httpRequest, httpResponse, jarEtag(entry), entry.lastModified())) {
+                        return true;
+                    }
+                }
+
+                try (InputStream stream = jarResourceHandler.getResourceStream(path)) {
+                    if (stream != null) {
+                        if (entry == null) {
+                            putHeaders(httpResponse);
+                        }
+                        consumeWithJarStream(httpRequest,
+                                             httpResponse,
+                                             jarResourceHandler,
+                                             path,
+                                             entry != null ? entry.size() : -1,
+                                             stream);
+                        return true;
+                    }
                 }
             }
         }
         return false;
     }
 
+    /**
+     * @param length the length of a file, or of the range of it to send.
+     * @return true if the file is sent in chunks, with non-blocking IO or under the bandwidth limit, so it must be sent
+     * as it is: neither compressed while sent nor as several ranges, which would be copied to the output stream at once
+     * on the current thread.
+     */
+    private boolean isSentInChunks(HttpServletRequest httpRequest, long length) {
+        long minimumSize = asyncTransferSize;
+        BandwidthLimit limit = bandwidthLimit;
+
+        return minimumSize >= 0 && length >= minimumSize && httpRequest.isAsyncSupported()
+                || limit != null && limit.appliesTo(length);
+    }
+
+    /**
+     * Sends a range of a file without copying it to the output stream, with non-blocking IO if it's large enough, and
+     * under the bandwidth limit if any. A file in an external folder may be modified while it's sent.
+     *
+     * @return true if the range was sent, false if it has to be copied to the output stream.
+     */
+    private boolean sendFile(HttpServletRequest httpRequest,
+                             HttpServletResponse httpResponse,
+                             File file,
+                             long offset,
+                             long length,
+                             boolean external) throws IOException {
+        if ("HEAD".equals(httpRequest.getMethod())) {
+            // the headers of the content only, nothing to pace
+            httpResponse.setContentLengthLong(length);
+            return true;
+        }
+
+        long minimumSize = asyncTransferSize;
+        BandwidthLimit limit = bandwidthLimit;
+
+        if (limit != null && !limit.appliesTo(length)) {
+            limit = null;
+        }
+
+        // a limited download waits for its rate without holding a thread, if possible
+        if ((limit != null || minimumSize >= 0 && length >= minimumSize)
+                && AsyncFileSender.send(httpRequest, httpResponse, file, offset, length, limit)) {
+            return true;
+        }
+
+        if (limit != null) {
+            limit.send(file, offset, length, httpResponse);
+            return true;
+        }
+        return fileTransfer.send(file, offset, length, httpResponse, external);
+    }
+
+    /**
+     * Sends a jar resource that isn't cached, or its precompressed sibling.
+     */
+    private void consumeWithJarStream(HttpServletRequest httpRequest,
+                                             HttpServletResponse httpResponse,
+                                             JarResourceHandler jarResourceHandler,
+                                             String path,
+                                             long length,
+                                             InputStream stream) throws IOException {
+        String contentType = mimeTypes.of(path);
+        setContentType(httpResponse, contentType);
+
+        boolean compressible = CompressedVariants.isCompressible(contentType);
+
+        if (compressible) {
+            httpResponse.setHeader(CompressedVariants.VARY, CompressedVariants.ACCEPT_ENCODING);
+
+            if (GzipUtils.acceptsGzip(httpRequest)) {
+                try (InputStream gzipStream = jarResourceHandler.getResourceStream(path
+                                                                                   + CompressedVariants.GZIP_EXTENSION)) {
+                    if (gzipStream != null) {
+                        httpResponse.setHeader(CompressedVariants.CONTENT_ENCODING, CompressedVariants.GZIP);
+                        IOUtils.copy(gzipStream, httpResponse.getOutputStream());
+                        return;
+                    }
+                }
+            }
+        }
+
+        OutputStream wrappedOutputStream = compressible
+                ? GzipUtils.checkAndWrap(httpRequest, httpResponse, false, length, adaptiveCompression)
+                : httpResponse.getOutputStream();
+
+        if (wrappedOutputStream == httpResponse.getOutputStream() && length >= 0) {
+            httpResponse.setContentLengthLong(length);
+        }
+
+        IOUtils.copy(stream, wrappedOutputStream);
+
+        wrappedOutputStream.flush();
+        wrappedOutputStream.close();
+    }
+
+    /**
+     * Sends cached content, unless the client's copy is up to date, or the requested ranges of it.
+     */
+    private void consumeWithContent(HttpServletRequest httpRequest,
+                                    HttpServletResponse httpResponse,
+                                    StaticContentCache.Content content) throws IOException {
+        setContentType(httpResponse, content.contentType());
+        httpResponse.setHeader(RangeUtils.ACCEPT_RANGES, RangeUtils.BYTES);
+
+        if (consumeNotModified(httpRequest, httpResponse, content.etag(), content.lastModified())) {
+            return;
+        }
+        if (!consumeRanges(httpRequest,
+                           httpResponse,
+                           content.bytes().length,
+                           content.etag(),
+                           content.lastModified(),
+                           PartialContent.Source.of(content.bytes()),
+                           false)) {
+            content.writeTo(httpRequest, httpResponse, adaptiveCompression);
+        }
+    }
+
+    /**
+     * Sets the content type of a static file, unless a user-defined header did.
+     */
+    private static void setContentType(HttpServletResponse httpResponse, String contentType) {
+        if (contentType != null && httpResponse.getContentType() == null) {
+            httpResponse.setContentType(contentType);
+        }
+    }
+
+    /**
+     * Sets the validators of a static file and answers a conditional request if the client's copy is up to date.
+     *
+     * @param etag         the entity tag of the file.
+     * @param lastModified the last modified time of the file, or -1 if unknown.
+     * @return true if the request was answered with '304 Not Modified'.
+     */
+    private static boolean consumeNotModified(HttpServletRequest httpRequest,
+                                              HttpServletResponse httpResponse,
+                                              String etag,
+                                              long lastModified) {
+        httpResponse.setHeader(ConditionalUtils.ETAG, etag);
+        if (lastModified >= 0) {
+            httpResponse.setDateHeader(ConditionalUtils.LAST_MODIFIED, lastModified);
+        }
+
+        String method = httpRequest.getMethod();
+        if (("GET".equals(method) || "HEAD".equals(method))
+                && ConditionalUtils.isNotModified(httpRequest, etag, lastModified)) {
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return a weak entity tag from the metadata of a file, the same content is sent with or without compression.
+     */
+    private static String fileEtag(long length, long lastModified) {
+        return ConditionalUtils.weak(ConditionalUtils.etag(Long.toHexString(length) + "-"
+                                                                   + Long.toHexString(lastModified)));
+    }
+
+    /**
+     * Adds the expire time and the user-defined headers to a static file response.
+     */
+    private void putHeaders(HttpServletResponse httpResponse) {
+        long seconds = expireTimeSeconds;
+
+        if (seconds >= 0) {
+            // relative to the time of the response, so it doesn't go stale
+            httpResponse.setHeader(CACHE_CONTROL, "private, max-age=" + seconds);
+            httpResponse.setDateHeader(EXPIRES, System.currentTimeMillis() + seconds * 1000);
+        }
+        customHeaders.forEach(httpResponse::setHeader); //add all user-defined headers to response
+    }
+
+    /**
+     * Sends the byte ranges requested for a static file, if any.
+     *
+     * @param length       the length of the file.
+     * @param etag         the entity tag of the file, to validate 'If-Range'.
+     * @param lastModified the last modified time of the file, to validate 'If-Range', or -1 if unknown.
+     * @param source       the content of the file.
+     * @param singleRange  true if the whole file is sent instead of several ranges.
+     * @return true if the request was answered with '206 Partial Content' or '416 Range Not Satisfiable'.
+     */
+    private static boolean consumeRanges(HttpServletRequest httpRequest,
+                                         HttpServletResponse httpResponse,
+                                         long length,
+                                         String etag,
+                                         long lastModified,
+                                         PartialContent.Source source,
+                                         boolean singleRange) throws IOException {
+        if (httpRequest.getHeader(RangeUtils.RANGE) == null) {
+            return false;
+        }
+
+        List<RangeUtils.ByteRange> ranges = PartialContent.requestedRanges(httpRequest, length, etag, lastModified);
+        if (ranges == null || singleRange && ranges.size() > 1) {
+            return false;
+        }
+        PartialContent.send(httpResponse, ranges, length, source);
+        return true;
+    }
+
+    /**
+     * @return the file of a resource in the file system, or null if it's e.g. in a jar.
+     */
+    private static File fileOf(AbstractFileResolvingResource resource) throws IOException {
+        return resource.getURL().getProtocol().equals("file") ? resource.getFile() : null;
+    }
+
+    /**
+     * Gets the content of a file resource from the cache, loading it if needed.
+     *
+     * @return the content, or null if the resource is too large to be cached.
+     */
+    private StaticContentCache.Content cachedContent(StaticContentCache cache,
+                                                            AbstractFileResolvingResource resource,
+                                                            boolean external) throws IOException {
+        String key = resource.getDescription();
+        StaticContentCache.Content content = cache.get(key);
+
+        if (content == null && cache.accepts(resource.contentLength())) {
+            // files in external folders may be modified, the others are cached for the lifetime of the process
+            File file = external ? resource.getFile() : null;
+
+            String contentType = mimeTypes.of(resource.getFilename());
+            File resourceFile = fileOf(resource);
+            File precompressed = CompressedVariants.isCompressible(contentType) && resourceFile != null
+                    ? CompressedVariants.precompressed(resourceFile)
+                    : null;
+
+            try (InputStream stream = resource.getInputStream();
+                 InputStream gzipStream = precompressed != null ? Files.newInputStream(precompressed.toPath()) : null) {
+                content = cache.load(key, stream, file, contentType, gzipStream);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Gets the content of a jar resource from the cache, loading it if needed.
+     *
+     * @return the content, or null if the resource doesn't exist or is too large to be cached.
+     */
+    private StaticContentCache.Content cachedJarContent(StaticContentCache cache,
+                                                               JarResourceHandler jarResourceHandler,
+                                                               String path) throws IOException {
+        String key = jarResourceKey(path);
+        StaticContentCache.Content content = cache.get(key);
+
+        if (content == null) {
+            // the size of a jar entry is known without inflating it
+            JarResourceHandler.Entry entry = jarResourceHandler.getEntry(path);
+            long length;
+
+            if (entry != null) {
+                length = entry.size();
+            } else {
+                URL url = JarResourceHandler.class.getResource(path);
+                if (url == null) {
+                    return null;
+                }
+                length = url.openConnection().getContentLengthLong();
+            }
+
+            if (cache.accepts(length)) {
+                String contentType = mimeTypes.of(path);
+
+                try (InputStream stream = jarResourceHandler.getResourceStream(path);
+                     InputStream gzipStream = CompressedVariants.isCompressible(contentType)
+                             ? jarResourceHandler.getResourceStream(path + CompressedVariants.GZIP_EXTENSION)
+                             : null) {
+                    if (stream != null) {
+                        content = cache.load(key, stream, null, contentType, gzipStream);
+                    }
+                }
+            }
+        }
+        return content;
+    }
+
+    /**
+     * @return a weak entity tag from the CRC and the size of a jar entry.
+     */
+    private static String jarEtag(JarResourceHandler.Entry entry) {
+        return ConditionalUtils.weak(ConditionalUtils.etag(Long.toHexString(entry.crc()) + "-"
+                                                                   + Long.toHexString(entry.size())));
+    }
+
+    private static String jarResourceKey(String path) {
+        return "jar resource [" + path + "]";
+    }
+
+    /**
+     * Enables an in-memory cache of the content of static files, bounded by the total size in bytes and evicting the
+     * least recently used files. Files in external folders are loaded again when they are modified, class path and jar
+     * resources are cached for the lifetime of the process.
+     *
+     * @param maximumSize      the maximum total size in bytes of the cached content.
+     * @param maximumEntrySize the maximum size in bytes of a cached file, larger files are always streamed.
+     * @param gzip             if the gzip compressed content should be computed once, when a file is cached.
+     * @param preload          if the content of the configured locations should be loaded right away, until the
+     *                         cache is full.
+     */
+    public synchronized void enableContentCache(long maximumSize,
+                                                long maximumEntrySize,
+                                                boolean gzip,
+                                                boolean preload) {
+        contentCache = StaticContentCache.create(maximumSize, maximumEntrySize, gzip);
+        preloadContent = preload;
+
+        if (preload) {
+            if (staticResourcesFolder != null) {
+                preload(staticResourcesFolder, false);
+            }
+            if (externalStaticResourcesFolder != null) {
+                preload(externalStaticResourcesFolder, true);
+            }
+        }
+    }
+
+    /**
+     * Sends the files in the file system from a size with non-blocking IO, so slow clients don't hold server threads
+     * during the transfer. Only for servers that support asynchronous processing, the files are sent with blocking IO
+     * otherwise.
+     *
+     * @param minimumSize the minimum size in bytes of the files sent with non-blocking IO.
+     */
+    public synchronized void enableAsyncTransfer(long minimumSize) {
+        Assert.isTrue(minimumSize >= 0, "'minimumSize' must not be negative");
+        asyncTransferSize = minimumSize;
+    }
+
+    /**
+     * Limits the rate at which the large files in the file system are sent, the smaller files are never limited.
+     *
+     * @param bandwidthLimit the bandwidth limit, or null for no limit.
+     */
+    public void setBandwidthLimit(BandwidthLimit bandwidthLimit) {
+        this.bandwidthLimit = bandwidthLimit;
+    }
+
+    /**
+     * Sets the policy choosing the compression level of the static files compressed while they are sent.
+     *
+     * @param adaptiveCompression the adaptive compression policy, or null to compress with the default level.
+     */
+    public void setAdaptiveCompression(AdaptiveCompression adaptiveCompression) {
+        this.adaptiveCompression = adaptiveCompression;
+    }
+
+    /**
+     * Keeps the small entries of the static files locations in jars inflated in memory, the smallest first.
+     *
+     * @param maximumEntrySize the maximum size in bytes of an inflated entry.
+     * @param maximumSize      the maximum total size in bytes of the inflated entries of a location.
+     */
+    public synchronized void inflateJarEntries(long maximumEntrySize, long maximumSize) {
+        Assert.isTrue(maximumEntrySize >= 0 && maximumSize >= 0, "Sizes must not be negative");
+
+        inflatedJarEntrySize = maximumEntrySize;
+        inflatedJarSize = maximumSize;
+
+        if (jarResourceHandlers != null) {
+            jarResourceHandlers.forEach(this::inflate);
+        }
+    }
+
+    private void inflate(JarResourceHandler jarResourceHandler) {
+        if (inflatedJarSize > 0) {
+            long inflated = jarResourceHandler.inflate(inflatedJarEntrySize, inflatedJarSize);
+            LOG.info("Inflated jar resources, kept " + inflated + " bytes in memory");
+        }
+    }
+
+    /**
+     * Loads the content of the files in a location into the cache, until it's full.
+     */
+    private void preload(String folder, boolean external) {
+        StaticContentCache cache = contentCache;
+
+        try {
+            if (!external && new ClassPathResource(folder).getURL().getProtocol().equals("jar")) {
+                preloadJar(cache, new ClassPathResource(folder).getURL());
+                return;
+            }
+
+            Path root = external
+                    ? new ExternalResource(folder).getFile().toPath()
+                    : new ClassPathResource(folder).getFile().toPath();
+
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(root)) {
+                // precompressed siblings are cached with the file they compress
+                files = paths.filter(Files::isRegularFile)
+                             .filter(file -> !isPrecompressedSibling(file))
+                             .collect(Collectors.toList());
+            }
+
+            for (Path file : files) {
+                if (cache.hasRoomFor(Files.size(file))) {
+                    // the same resource as resolved by the handlers, so it has the same key
+                    String path = AbstractResourceHandler.addPaths(
+                            folder, "/" + root.relativize(file).toString().replace(File.separatorChar, '/'));
+
+                    AbstractFileResolvingResource resource = external
+                            ? new ExternalResource(path)
+                            : new ClassPathResource(path);
+
+                    cachedContent(cache, resource, external);
+                }
+            }
+            LOG.info("Preloaded static files from folder = " + folder + ", cached " + cache.size() + " bytes");
+        } catch (IOException e) {
+            LOG.error("Error when preloading static files from folder = " + folder, e);
+        }
+    }
+
+    private void preloadJar(StaticContentCache cache, URL url) throws IOException {
+        JarURLConnection connection = (JarURLConnection) url.openConnection();
+
+        String prefix = connection.getEntryName() != null ? connection.getEntryName() : "";
+        if (!prefix.isEmpty() && !prefix.endsWith("/")) {
+            prefix += "/";
+        }
+
+        // the jar file is shared with the class loader, so it must stay open
+        JarFile jarFile = connection.getJarFile();
+
+        for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+            JarEntry entry = entries.nextElement();
+
+            if (!entry.isDirectory()
+                    && entry.getName().startsWith(prefix)
+                    && !isPrecompressedSibling(jarFile, entry.getName())
+                    && cache.hasRoomFor(entry.getSize())) {
+                String contentType = mimeTypes.of(entry.getName());
+                JarEntry precompressed = CompressedVariants.isCompressible(contentType)
+                        ? jarFile.getJarEntry(entry.getName() + CompressedVariants.GZIP_EXTENSION)
+                        : null;
+
+                try (InputStream stream = jarFile.getInputStream(entry);
+                     InputStream gzipStream = precompressed != null ? jarFile.getInputStream(precompressed) : null) {
+                    cache.load(jarResourceKey("/" + entry.getName()), stream, null, contentType, gzipStream);
+                }
+            }
+        }
+    }
+
+    private static boolean isPrecompressedSibling(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(CompressedVariants.GZIP_EXTENSION)
+                && Files.isRegularFile(file.resolveSibling(name.substring(0, name.length()
+                        - CompressedVariants.GZIP_EXTENSION.length())));
+    }
+
+    private static boolean isPrecompressedSibling(JarFile jarFile, String name) {
+        return name.endsWith(CompressedVariants.GZIP_EXTENSION)
+                && jarFile.getJarEntry(name.substring(0, name.length()
+                        - CompressedVariants.GZIP_EXTENSION.length())) != null;
+    }
+
     /**
      * Clears all static file configuration
      */
@@ -137,6 +899,25 @@ public class StaticFilesConfiguration {
             jarResourceHandlers = null;
         }
 
+        rootEntries.clear();
+
+        if (contentCache != null) {
+            contentCache.clear();
+            contentCache = null;
+        }
+        preloadContent = false;
+        inflatedJarEntrySize = 0;
+        inflatedJarSize = 0;
+        fileTransfer.clear();
+        compressedVariants.clear();
+        mimeTypes.clear();
+        asyncTransferSize = -1;
+        bandwidthLimit = null;
+        includedPrefixes = new String[0];
+        excludedPrefixes = new String[0];
+        staticResourcesFolder = null;
+        externalStaticResourcesFolder = null;
+
         staticResourcesSet = false;
         externalStaticResourcesSet = false;
     }
@@ -166,8 +947,13 @@ public class StaticFilesConfiguration {
                     staticResourceHandlers = new ArrayList<>();
                 }
 
-                staticResourceHandlers.add(new ClassPathResourceHandler(folder, "index.html"));
+                addRootEntries(resource);
+                staticResourceHandlers.add(new IndexedResourceHandler(new ClassPathResourceHandler(folder, "index.html"),
+                                                                      resource.getFile(),
+                                                                      false,
+                                                                      isOnlyClassPathLocation(resource)));
                 LOG.info("StaticResourceHandler configured with folder = " + folder);
+                configured(folder, false);
             } catch (IOException e) {
                 LOG.error("Error when creating StaticResourceHandler", e);
             }
@@ -176,6 +962,30 @@ public class StaticFilesConfiguration {
 
     }
 
+    /**
+     * @return true if the folder isn't also found in other class path entries, whose resources would be served too.
+     */
+    private static boolean isOnlyClassPathLocation(ClassPathResource resource) throws IOException {
+        return Collections.list(ClassUtils.getDefaultClassLoader().getResources(resource.getPath())).size() == 1;
+    }
+
+    /**
+     * Lists the root entries of every class path entry holding the folder, as the resources of all of them are served.
+     */
+    private void addRootEntries(ClassPathResource resource) throws IOException {
+        List<URL> locations = Collections.list(ClassUtils.getDefaultClassLoader().getResources(resource.getPath()));
+
+        if (locations.isEmpty()) {
+            locations = Collections.singletonList(resource.getURL());
+        }
+
+        for (URL location : locations) {
+            rootEntries.add(ResourceUtils.isFileURL(location)
+                                    ? RootEntries.ofFolder(ResourceUtils.getFile(location))
+                                    : RootEntries.ofJar(location));
+        }
+    }
+
     private boolean configureJarCase(String folder, ClassPathResource resource) throws IOException {
         if (resource.getURL().getProtocol().equals("jar")) {
 
@@ -187,7 +997,11 @@ public class StaticFilesConfiguration {
                 }
 
                 // Add jar file resource handler
-                jarResourceHandlers.add(new JarResourceHandler(folder, "index.html"));
+                addRootEntries(resource);
+                JarResourceHandler jarResourceHandler = new JarResourceHandler(folder, "index.html");
+                jarResourceHandlers.add(jarResourceHandler);
+                inflate(jarResourceHandler);
+                configured(folder, false);
                 staticResourcesSet = true;
                 return true;
             } else {
@@ -198,6 +1012,18 @@ public class StaticFilesConfiguration {
         return false;
     }
 
+    private void configured(String folder, boolean external) {
+        if (external) {
+            externalStaticResourcesFolder = folder;
+        } else {
+            staticResourcesFolder = folder;
+        }
+
+        if (contentCache != null && preloadContent) {
+            preload(folder, external);
+        }
+    }
+
     /**
      * Configures location for static resources
      *
@@ -217,8 +1043,13 @@ public class StaticFilesConfiguration {
                 if (staticResourceHandlers == null) {
                     staticResourceHandlers = new ArrayList<>();
                 }
-                staticResourceHandlers.add(new ExternalResourceHandler(folder, "index.html"));
+                rootEntries.add(RootEntries.ofFolder(resource.getFile()));
+                staticResourceHandlers.add(new IndexedResourceHandler(new ExternalResourceHandler(folder, "index.html"),
+                                                                      resource.getFile(),
+                                                                      true,
+                                                                      true));
                 LOG.info("External StaticResourceHandler configured with folder = " + folder);
+                configured(folder, true);
             } catch (IOException e) {
                 LOG.error("Error when creating external StaticResourceHandler", e);
             }
@@ -232,8 +1063,20 @@ public class StaticFilesConfiguration {
     }
 
     public void setExpireTimeSeconds(long expireTimeSeconds) {
-        customHeaders.put("Cache-Control", "private, max-age=" + expireTimeSeconds);
-        customHeaders.put("Expires", new Date(System.currentTimeMillis() + (expireTimeSeconds * 1000)).toString());
+        customHeaders.remove(CACHE_CONTROL);
+        customHeaders.remove(EXPIRES);
+        this.expireTimeSeconds = expireTimeSeconds;
+    }
+
+    /**
+     * Registers the content type of the static files with an extension, replacing the default one. Files that are
+     * cached already keep the content type they were cached with.
+     *
+     * @param extension   the extension, e.g. 'csv', without the dot.
+     * @param contentType the content type, e.g. 'text/csv'.
+     */
+    public void registerMimeType(String extension, String contentType) {
+        mimeTypes.register(extension, contentType);
     }
 
     public void putCustomHeaders(Map<String, String> headers) {
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.staticfiles;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket of bytes, refilled at a constant rate. It holds at most a tenth of a second of its rate, so the bytes
+ * are sent evenly rather than in bursts.
+ */
+final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long bytesPerSecond;
+    private final long capacity;
+
+    private double tokens;
+    private long refilledAt;
+
+    static TokenBucket create(long bytesPerSecond, long now) {
+        return new TokenBucket(bytesPerSecond, now);
+    }
+
+    private TokenBucket(long bytesPerSecond, long now) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = Math.max(1, bytesPerSecond / 10);
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    /**
+     * @param wanted  the number of bytes to send.
+     * @param minimum the minimum number of bytes worth sending, so a chunk isn't sent as soon as a few bytes are
+     *                available.
+     * @param now     the current time in nanoseconds.
+     * @return the number of bytes that can be sent now, up to the wanted number, 0 if less than the minimum.
+     */
+    synchronized long take(long wanted, long minimum, long now) {
+        refill(now);
+
+        if (tokens < minimum) {
+            return 0;
+        }
+
+        long granted = Math.min(wanted, (long) tokens);
+        tokens -= granted;
+        return granted;
+    }
+
+    /**
+     * Gives back bytes that were taken but not sent.
+     */
+    synchronized void giveBack(long bytes) {
+        tokens = Math.min(capacity, tokens + bytes);
+    }
+
+    /**
+     * @param bytes the number of bytes to send.
+     * @param now   the current time in nanoseconds.
+     * @return the time in nanoseconds until the bytes can be sent, 0 if now.
+     */
+    synchronized long nanosUntilAvailable(long bytes, long now) {
+        refill(now);
+
+        if (tokens >= bytes) {
+            return 0;
+        }
+        return (long) Math.ceil((bytes - tokens) * NANOS_PER_SECOND / bytesPerSecond);
+    }
+
+    private void refill(long now) {
+        long elapsed = now - refilledAt;
+
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + (double) elapsed * bytesPerSecond / NANOS_PER_SECOND);
+            refilledAt = now;
+        }
+    }
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.zip.Deflater;
+
+/**
+ * Load-adaptive GZIP compression policy.
+ * <p>
+ * The policy periodically samples the CPU usage of the system and the utilisation of the embedded server's worker
+ * pool. While the server is busy the compression level is lowered and, when saturated, bodies smaller than
+ * {@link #skipBelow(long)} bytes are sent uncompressed. Normal compression is restored when the load drops again.
+ * The current {@link Decision} and a few counters are exposed so that they can be published as metrics.
+ * <p>
+ * Usage: {@code adaptiveCompression(AdaptiveCompression.create().reducedLevel(1).skipBelow(16 * 1024));}
+ */
+public final class AdaptiveCompression {
+
+    /**
+     * Signals that the response should not be compressed.
+     */
+    public static final int NO_COMPRESSION = Integer.MIN_VALUE;
+
+    /**
+     * The compression decisions, from cheapest on bandwidth to cheapest on CPU.
+     */
+    public enum Decision {
+        /**
+         * Compress with the normal compression level.
+         */
+        NORMAL,
+        /**
+         * Compress with the reduced compression level.
+         */
+        REDUCED,
+        /**
+         * Compress with the reduced compression level and skip compression of mid-sized bodies.
+         */
+        SATURATED
+    }
+
+    private static final double HYSTERESIS = 0.1;
+
+    private static final boolean SYSTEM_CPU_LOAD_SUPPORTED = isSystemCpuLoadSupported();
+
+    private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+
+    private int normalLevel = Deflater.DEFAULT_COMPRESSION;
+    private int reducedLevel = Deflater.BEST_SPEED;
+    private long skipBelow = 32 * 1024;
+    private double reduceAbove = 0.7;
+    private double saturatedAbove = 0.9;
+    private long sampleIntervalMillis = 1000;
+
+    private final AtomicLong nextSample = new AtomicLong(System.currentTimeMillis() + sampleIntervalMillis);
+
+    private volatile DoubleSupplier workerPoolUtilisation = null;
+
+    private volatile Decision decision = Decision.NORMAL;
+    private volatile double load = 0.0;
+
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder reducedResponses = new LongAdder();
+    private final LongAdder skippedResponses = new LongAdder();
+
+    /**
+     * Creates an adaptive compression policy with default settings.
+     *
+     * @return the adaptive compression policy.
+     */
+    public static AdaptiveCompression create() {
+        return new AdaptiveCompression();
+    }
+
+    private AdaptiveCompression() {
+        // hidden
+    }
+
+    /**
+     * Sets the worker pool utilisation (busy threads / max threads, 0.0 - 1.0) of the embedded server. Called by the
+     * embedded server of the service using the policy when it is ignited.
+     *
+     * @param utilisation supplies the current worker pool utilisation, or null if unknown.
+     * @return this policy.
+     */
+    public AdaptiveCompression workerPool(DoubleSupplier utilisation) {
+        this.workerPoolUtilisation = utilisation;
+        return this;
+    }
+
+    /**
+     * Sets the compression level used when the server is not under load.
+     *
+     * @param level the {@link java.util.zip.Deflater} compression level.
+     * @return this policy.
+     */
+    public AdaptiveCompression normalLevel(int level) {
+        this.normalLevel = level;
+        return this;
+    }
+
+    /**
+     * Sets the compression level used when the server is under load.
+     *
+     * @param level the {@link java.util.zip.Deflater} compression level.
+     * @return this policy.
+     */
+    public AdaptiveCompression reducedLevel(int level) {
+        this.reducedLevel = level;
+        return this;
+    }
+
+    /**
+     * Sets the size under which bodies are sent uncompressed when the server is saturated.
+     *
+     * @param bytes the size in bytes.
+     * @return this policy.
+     */
+    public AdaptiveCompression skipBelow(long bytes) {
+        this.skipBelow = bytes;
+        return this;
+    }
+
+    /**
+     * Sets the load thresholds (0.0 - 1.0) for reducing the compression level and for skipping compression.
+     *
+     * @param reduceAbove    load above which the reduced level is used.
+     * @param saturatedAbove load above which mid-sized bodies are sent uncompressed.
+     * @return this policy.
+     */
+    public AdaptiveCompression thresholds(double reduceAbove, double saturatedAbove) {
+        Assert.isTrue(reduceAbove <= saturatedAbove, "'reduceAbove' must not be greater than 'saturatedAbove'");
+        this.reduceAbove = reduceAbove;
+        this.saturatedAbove = saturatedAbove;
+        return this;
+    }
+
+    /**
+     * Sets how often the load is sampled.
+     *
+     * @param millis the sample interval in milliseconds.
+     * @return this policy.
+     */
+    public AdaptiveCompression sampleInterval(long millis) {
+        this.sampleIntervalMillis = millis;
+        this.nextSample.set(System.currentTimeMillis() + millis);
+        return this;
+    }
+
+    /**
+     * Returns the compression level to use for a response body.
+     *
+     * @param contentLength the body length in bytes, or -1 if unknown.
+     * @param mayBeSkipped  if compression may be skipped for this response.
+     * @return the compression level or {@link #NO_COMPRESSION}.
+     */
+    public int level(long contentLength, boolean mayBeSkipped) {
+        sampleIfDue();
+
+        Decision current = decision;
+
+        if (current == Decision.NORMAL) {
+            compressedResponses.increment();
+            return normalLevel;
+        }
+
+        if (current == Decision.SATURATED && mayBeSkipped && contentLength >= 0 && contentLength < skipBelow) {
+            skippedResponses.increment();
+            return NO_COMPRESSION;
+        }
+
+        compressedResponses.increment();
+        reducedResponses.increment();
+        return reducedLevel;
+    }
+
+    /**
+     * @return the current compression decision.
+     */
+    public Decision decision() {
+        return decision;
+    }
+
+    /**
+     * @return the last sampled load (0.0 - 1.0).
+     */
+    public double load() {
+        return load;
+    }
+
+    /**
+     * @return the number of responses compressed since start.
+     */
+    public long compressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    /**
+     * @return the number of responses compressed with the reduced level since start.
+     */
+    public long reducedResponses() {
+        return reducedResponses.sum();
+    }
+
+    /**
+     * @return the number of responses sent uncompressed due to load since start.
+     */
+    public long skippedResponses() {
+        return skippedResponses.sum();
+    }
+
+    private void sampleIfDue() {
+        long now = System.currentTimeMillis();
+        long next = nextSample.get();
+
+        // only one thread takes each sample
+        if (now >= next && nextSample.compareAndSet(next, now + sampleIntervalMillis)) {
+            update(Math.max(cpuLoad(), workerLoad()));
+        }
+    }
+
+    /**
+     * Updates the decision from a load sample. Uses hysteresis so that the decision doesn't flap around a threshold.
+     */
+    void update(double sample) {
+        Decision current = decision;
+        Decision next;
+
+        if (sample >= saturatedAbove) {
+            next = Decision.SATURATED;
+        } else if (current == Decision.SATURATED && sample > saturatedAbove - HYSTERESIS) {
+            next = Decision.SATURATED;
+        } else if (sample >= reduceAbove) {
+            next = Decision.REDUCED;
+        } else if (current != Decision.NORMAL && sample > reduceAbove - HYSTERESIS) {
+            next = Decision.REDUCED;
+        } else {
+            next = Decision.NORMAL;
+        }
+
+        load = sample;
+        decision = next;
+    }
+
+    private double cpuLoad() {
+        if (SYSTEM_CPU_LOAD_SUPPORTED) {
+            double cpuLoad = SystemCpuLoad.of(operatingSystem);
+
+            // negative until the first measurement is available
+            if (cpuLoad >= 0) {
+                return Math.min(1.0, cpuLoad);
+            }
+        }
+
+        // otherwise the run queue length per processor, not available on every platform, e.g. Windows
+        double loadAverage = operatingSystem.getSystemLoadAverage();
+
+        if (loadAverage < 0) {
+            return 0.0;
+        }
+        return Math.min(1.0, loadAverage / operatingSystem.getAvailableProcessors());
+    }
+
+    private static boolean isSystemCpuLoadSupported() {
+        try {
+            Class.forName("com.sun.management.OperatingSystemMXBean",
+                          false,
+                          AdaptiveCompression.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the CPU usage of the whole system, only loaded when the JVM provides it.
+     */
+    private static final class SystemCpuLoad {
+
+        static double of(OperatingSystemMXBean operatingSystem) {
+            if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+                return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getSystemCpuLoad();
+            }
+            return -1;
+        }
+    }
+
+    private double workerLoad() {
+        DoubleSupplier utilisation = workerPoolUtilisation;
+        return utilisation != null ? utilisation.getAsDouble() : 0.0;
+    }
+
+}
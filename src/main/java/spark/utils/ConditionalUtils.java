@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.utils;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Conditional request (ETag / Last-Modified) utility class.
+ */
+public final class ConditionalUtils {
+
+    public static final String ETAG = "ETag";
+    public static final String LAST_MODIFIED = "Last-Modified";
+    public static final String IF_NONE_MATCH = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final String WEAK_PREFIX = "W/";
+    private static final String ANY = "*";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Hide constructor
+    private ConditionalUtils() {
+
+    }
+
+    /**
+     * Creates a strong entity tag from the bytes of a representation. Uses the (non-cryptographic) 64 bit FNV-1a hash
+     * which is fast and good enough to detect changed content.
+     *
+     * @param bytes  the bytes.
+     * @param offset the offset of the first byte.
+     * @param length the number of bytes.
+     * @return the quoted entity tag.
+     */
+    public static String etag(byte[] bytes, int offset, int length) {
+        return quote(Long.toHexString(hash(bytes, offset, length)));
+    }
+
+    /**
+     * Creates a strong entity tag from a value, e.g. a version number.
+     *
+     * @param value the value.
+     * @return the quoted entity tag.
+     */
+    public static String etag(String value) {
+        return quote(value);
+    }
+
+    /**
+     * Makes an entity tag weak, e.g. for content sent either compressed or not, which is only semantically equivalent.
+     *
+     * @param etag the quoted entity tag.
+     * @return the weak entity tag.
+     */
+    public static String weak(String etag) {
+        return etag.startsWith(WEAK_PREFIX) ? etag : WEAK_PREFIX + etag;
+    }
+
+    /**
+     * Calculates the 64 bit FNV-1a hash of the bytes.
+     *
+     * @param bytes  the bytes.
+     * @param offset the offset of the first byte.
+     * @param length the number of bytes.
+     * @return the hash.
+     */
+    public static long hash(byte[] bytes, int offset, int length) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Checks if an entity tag matches an 'If-None-Match' header value. Uses the weak comparison as required for
+     * 'If-None-Match'.
+     *
+     * @param ifNoneMatch the header value, may be null.
+     * @param etag        the entity tag of the current representation.
+     * @return true if it matches, i.e. the client's copy is up to date.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        if (ifNoneMatch.trim().equals(ANY)) {
+            return true;
+        }
+
+        String opaqueTag = opaqueTag(etag);
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            if (opaqueTag(candidate.trim()).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates the 'If-None-Match' and 'If-Modified-Since' headers of a request. As specified, 'If-Modified-Since' is
+     * only evaluated when the request doesn't contain 'If-None-Match'.
+     *
+     * @param request      the HTTP servlet request.
+     * @param etag         the entity tag of the current representation, or null if unknown.
+     * @param lastModified the last modified time in milliseconds of the current representation, or -1 if unknown.
+     * @return true if the client's copy is up to date and '304 Not Modified' can be sent.
+     */
+    public static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+
+        if (ifNoneMatch != null) {
+            return matches(ifNoneMatch, etag);
+        }
+        if (lastModified < 0) {
+            return false;
+        }
+
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            // invalid date, ignore the header
+            return false;
+        }
+        // HTTP dates have a resolution of seconds
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith(WEAK_PREFIX) ? etag.substring(WEAK_PREFIX.length()) : etag;
+    }
+
+    private static String quote(String value) {
+        return '"' + value + '"';
+    }
+
+}
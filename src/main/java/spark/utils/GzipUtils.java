@@ -60,15 +60,67 @@ public class GzipUtils {
                                             HttpServletResponse httpResponse,
                                             boolean requireWantsHeader) throws
                                                                         IOException {
+        return checkAndWrap(httpRequest, httpResponse, requireWantsHeader, -1);
+    }
+
+    /**
+     * Checks if the HTTP request/response accepts and wants GZIP and i that case wraps the response output stream in a
+     * {@link java.util.zip.GZIPOutputStream}.
+     *
+     * @param httpRequest        the HTTP servlet request.
+     * @param httpResponse       the HTTP servlet response.
+     * @param requireWantsHeader if wants header is required
+     * @param contentLength      the length of the (uncompressed) body, or -1 if unknown.
+     * @return if accepted and wanted a {@link java.util.zip.GZIPOutputStream} otherwise the unchanged response
+     * output stream.
+     * @throws IOException in case of IO error.
+     */
+    public static OutputStream checkAndWrap(HttpServletRequest httpRequest,
+                                            HttpServletResponse httpResponse,
+                                            boolean requireWantsHeader,
+                                            long contentLength) throws IOException {
+        return checkAndWrap(httpRequest, httpResponse, requireWantsHeader, contentLength, null);
+    }
+
+    /**
+     * Checks if the HTTP request/response accepts and wants GZIP and i that case wraps the response output stream in a
+     * {@link java.util.zip.GZIPOutputStream}. With an adaptive compression policy the compression level is chosen from
+     * the current server load and the content length.
+     *
+     * @param httpRequest         the HTTP servlet request.
+     * @param httpResponse        the HTTP servlet response.
+     * @param requireWantsHeader  if wants header is required
+     * @param contentLength       the length of the (uncompressed) body, or -1 if unknown.
+     * @param adaptiveCompression the adaptive compression policy of the service, or null to always compress with the
+     *                            default compression level.
+     * @return if accepted and wanted a {@link java.util.zip.GZIPOutputStream} otherwise the unchanged response
+     * output stream.
+     * @throws IOException in case of IO error.
+     */
+    public static OutputStream checkAndWrap(HttpServletRequest httpRequest,
+                                            HttpServletResponse httpResponse,
+                                            boolean requireWantsHeader,
+                                            long contentLength,
+                                            AdaptiveCompression adaptiveCompression) throws IOException {
         OutputStream responseStream = httpResponse.getOutputStream();
 
         // GZIP Support handled here. First we must ensure that we want to use gzip, and that the client supports gzip
-        boolean acceptsGzip = Collections.list(httpRequest.getHeaders(ACCEPT_ENCODING)).stream().anyMatch(STRING_MATCH);
+        boolean acceptsGzip = acceptsGzip(httpRequest);
         boolean wantGzip = httpResponse.getHeaders(CONTENT_ENCODING).contains(GZIP);
 
         if (acceptsGzip) {
             if (!requireWantsHeader || wantGzip) {
-                responseStream = new GZIPOutputStream(responseStream, true);
+                if (adaptiveCompression == null) {
+                    responseStream = new GZIPOutputStream(responseStream, true);
+                } else {
+                    // Compression can only be skipped if the Content-Encoding header hasn't been set by the route
+                    int level = adaptiveCompression.level(contentLength, !wantGzip);
+
+                    if (level == AdaptiveCompression.NO_COMPRESSION) {
+                        return responseStream;
+                    }
+                    responseStream = new LeveledGZIPOutputStream(responseStream, level);
+                }
                 addContentEncodingHeaderIfMissing(httpResponse, wantGzip);
             }
         }
@@ -76,12 +128,32 @@ public class GzipUtils {
         return responseStream;
     }
 
+    /**
+     * Checks if the client accepts GZIP encoded responses.
+     *
+     * @param httpRequest the HTTP servlet request.
+     * @return true if the 'Accept-Encoding' header contains gzip.
+     */
+    public static boolean acceptsGzip(HttpServletRequest httpRequest) {
+        return Collections.list(httpRequest.getHeaders(ACCEPT_ENCODING)).stream().anyMatch(STRING_MATCH);
+    }
+
     private static void addContentEncodingHeaderIfMissing(HttpServletResponse response, boolean wantsGzip) {
         if (!wantsGzip) {
             response.setHeader(CONTENT_ENCODING, GZIP);
         }
     }
 
+    /**
+     * GZIP output stream with a configurable compression level.
+     */
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+        LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, true);
+            def.setLevel(level);
+        }
+    }
+
     /**
      * Used instead of lambdas due to risk for java.lang.IncompatibleClassChangeError.
      */
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON utility class, used by the internal endpoints that can't depend on a JSON library. Objects are
+ * represented as {@link Map}, arrays as {@link List}, numbers as {@link Long} or {@link Double}.
+ */
+public final class JsonUtils {
+
+    // Hide constructor
+    private JsonUtils() {
+
+    }
+
+    /**
+     * Parses a JSON text.
+     *
+     * @param json the JSON text.
+     * @return the parsed value.
+     * @throws IllegalArgumentException if the text isn't valid JSON.
+     */
+    public static Object parse(String json) {
+        Parser parser = new Parser(json);
+        Object value = parser.value();
+
+        parser.skipWhitespace();
+        if (parser.position < json.length()) {
+            throw parser.error("Unexpected trailing characters");
+        }
+        return value;
+    }
+
+    /**
+     * Writes a value as JSON. Supports maps, collections, arrays of objects, strings, numbers, booleans and null; other
+     * values are written as strings.
+     *
+     * @param value the value.
+     * @return the JSON text.
+     */
+    public static String toJson(Object value) {
+        StringBuilder json = new StringBuilder();
+        write(json, value);
+        return json.toString();
+    }
+
+    private static void write(StringBuilder json, Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof Map) {
+            json.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                writeString(json, String.valueOf(entry.getKey()));
+                json.append(':');
+                write(json, entry.getValue());
+                first = false;
+            }
+            json.append('}');
+        } else if (value instanceof Collection || value instanceof Object[]) {
+            Collection<?> values = value instanceof Collection
+                    ? (Collection<?>) value
+                    : java.util.Arrays.asList((Object[]) value);
+            json.append('[');
+            boolean first = true;
+            for (Object element : values) {
+                if (!first) {
+                    json.append(',');
+                }
+                write(json, element);
+                first = false;
+            }
+            json.append(']');
+        } else {
+            writeString(json, value.toString());
+        }
+    }
+
+    private static void writeString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Recursive descent parser.
+     */
+    private static final class Parser {
+
+        private final String json;
+        private int position;
+
+        Parser(String json) {
+            this.json = json;
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (position >= json.length()) {
+                throw error("Unexpected end of input");
+            }
+
+            char c = json.charAt(position);
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        return number();
+                    }
+                    throw error("Unexpected character '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("Expected a string key");
+                }
+                String key = string();
+
+                skipWhitespace();
+                expect(':');
+                object.put(key, value());
+
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            position++;
+
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+
+            while (true) {
+                array.add(value());
+
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String string() {
+            StringBuilder string = new StringBuilder();
+            position++;
+
+            while (true) {
+                if (position >= json.length()) {
+                    throw error("Unterminated string");
+                }
+
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return string.toString();
+                }
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    throw error("Unterminated string");
+                }
+
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case 'b':
+                        string.append('\b');
+                        break;
+                    case 'f':
+                        string.append('\f');
+                        break;
+                    case 'n':
+                        string.append('\n');
+                        break;
+                    case 'r':
+                        string.append('\r');
+                        break;
+                    case 't':
+                        string.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > json.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        try {
+                            string.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        string.append(escaped);
+                }
+            }
+        }
+
+        private Number number() {
+            int start = position;
+            boolean decimal = false;
+
+            while (position < json.length()) {
+                char c = json.charAt(position);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    decimal = true;
+                } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                position++;
+            }
+
+            String number = json.substring(start, position);
+            try {
+                return decimal ? (Number) Double.valueOf(number) : (Number) Long.valueOf(number);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + number + "'");
+            }
+        }
+
+        private Object literal(String literal, Object value) {
+            if (!json.startsWith(literal, position)) {
+                throw error("Unexpected character '" + json.charAt(position) + "'");
+            }
+            position += literal.length();
+            return value;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            position++;
+        }
+
+        private char peek() {
+            return position < json.length() ? json.charAt(position) : 0;
+        }
+
+        void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position);
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 - Per Wendel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package spark.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Byte range request ('Range' / 'If-Range') utility class.
+ */
+public final class RangeUtils {
+
+    public static final String ACCEPT_RANGES = "Accept-Ranges";
+    public static final String RANGE = "Range";
+    public static final String IF_RANGE = "If-Range";
+    public static final String CONTENT_RANGE = "Content-Range";
+    public static final String BYTES = "bytes";
+
+    // more ranges are not worth the overhead of a multipart response, the whole content is sent instead
+    private static final int MAX_RANGES = 16;
+
+    private static final String BYTES_UNIT = BYTES + "=";
+    private static final String WEAK_PREFIX = "W/";
+
+    // Hide constructor
+    private RangeUtils() {
+
+    }
+
+    /**
+     * Parses the 'Range' header value of a request for a representation of a known length.
+     *
+     * @param range  the header value, may be null.
+     * @param length the length of the representation.
+     * @return the satisfiable ranges in the requested order, an empty list if none is satisfiable, or null if the
+     * header is absent, invalid or not worth honoring, so the whole representation should be sent. Overlapping and
+     * adjacent ranges are coalesced, the ranges are then in ascending order, so no byte is sent more than once.
+     */
+    public static List<ByteRange> parse(String range, long length) {
+        if (range == null || !range.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+
+        String[] specs = range.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+
+            if (dash < 0) {
+                return null;
+            }
+
+            long first;
+            long last;
+            try {
+                if (dash == 0) {
+                    // the suffix, e.g. "-500" for the last 500 bytes
+                    long suffixLength = Long.parseLong(spec.substring(1));
+                    if (suffixLength <= 0) {
+                        continue;
+                    }
+                    first = Math.max(0, length - suffixLength);
+                    last = length - 1;
+                } else {
+                    first = Long.parseLong(spec.substring(0, dash));
+
+                    if (dash == spec.length() - 1) {
+                        last = length - 1;
+                    } else {
+                        last = Long.parseLong(spec.substring(dash + 1));
+                        if (last < first) {
+                            return null;
+                        }
+                        last = Math.min(last, length - 1);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (first < 0) {
+                return null;
+            }
+            if (first < length) {
+                ranges.add(new ByteRange(first, last));
+            }
+        }
+        return ranges.isEmpty() ? Collections.emptyList() : coalesce(ranges);
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() == 1) {
+            return ranges;
+        }
+
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::first));
+
+        List<ByteRange> coalesced = new ArrayList<>(sorted.size());
+        ByteRange current = sorted.get(0);
+
+        for (ByteRange next : sorted.subList(1, sorted.size())) {
+            if (next.first <= current.last + 1) {
+                current = new ByteRange(current.first, Math.max(current.last, next.last));
+            } else {
+                coalesced.add(current);
+                current = next;
+            }
+        }
+        coalesced.add(current);
+
+        // disjoint ranges are sent in the requested order
+        return coalesced.size() == ranges.size() ? ranges : coalesced;
+    }
+
+    /**
+     * Evaluates the 'If-Range' header of a request. An entity tag must match strongly, a date must be the exact last
+     * modified time of the representation.
+     *
+     * @param request      the HTTP servlet request.
+     * @param etag         the entity tag of the current representation, or null if unknown.
+     * @param lastModified the last modified time in milliseconds of the current representation, or -1 if unknown.
+     * @return true if the header is absent or the representation is unchanged, so the ranges can be sent.
+     */
+    public static boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(IF_RANGE);
+
+        if (ifRange == null) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith(WEAK_PREFIX)) {
+            return etag != null && !etag.startsWith(WEAK_PREFIX) && ifRange.equals(etag);
+        }
+        if (lastModified < 0) {
+            return false;
+        }
+
+        long date;
+        try {
+            date = request.getDateHeader(IF_RANGE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // HTTP dates have a resolution of seconds
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    /**
+     * @param range  the range.
+     * @param length the length of the whole representation.
+     * @return the 'Content-Range' header value of a part.
+     */
+    public static String contentRange(ByteRange range, long length) {
+        return BYTES + " " + range.first + "-" + range.last + "/" + length;
+    }
+
+    /**
+     * @param length the length of the whole representation.
+     * @return the 'Content-Range' header value of a '416 Range Not Satisfiable' response.
+     */
+    public static String unsatisfiedContentRange(long length) {
+        return BYTES + " */" + length;
+    }
+
+    /**
+     * A range of bytes, both positions included.
+     */
+    public static final class ByteRange {
+
+        private final long first;
+        private final long last;
+
+        public ByteRange(long first, long last) {
+            Assert.isTrue(first >= 0 && last >= first, "Invalid byte range");
+            this.first = first;
+            this.last = last;
+        }
+
+        public long first() {
+            return first;
+        }
+
+        public long last() {
+            return last;
+        }
+
+        public long length() {
+            return last - first + 1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ByteRange that = (ByteRange) o;
+            return first == that.first && last == that.last;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(first) + Long.hashCode(last);
+        }
+
+        @Override
+        public String toString() {
+            return first + "-" + last;
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package spark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import spark.util.SparkTestUtil;
+
+import static spark.Service.ignite;
+
+/**
+ * Tests the server-side response cache of routes.
+ */
+public class CachedRoutesTest {
+
+    private static final AtomicInteger routeInvocations = new AtomicInteger();
+    private static final AtomicInteger cacheableFilterInvocations = new AtomicInteger();
+    private static final AtomicInteger filterInvocations = new AtomicInteger();
+
+    private static Service http;
+    private static SparkTestUtil testUtil;
+
+    @BeforeClass
+    public static void setup() {
+        testUtil = new SparkTestUtil(4567);
+
+        http = ignite();
+        http.before("/cached/*", (CacheableFilter) (request, response) -> cacheableFilterInvocations.incrementAndGet());
+        http.before("/cached/*", (request, response) -> filterInvocations.incrementAndGet());
+        http.get("/cached/feed", (request, response) -> "feed " + routeInvocations.incrementAndGet());
+        http.get("/cached/cookie", (request, response) -> {
+            response.cookie("session", "x");
+            return "cookie " + routeInvocations.incrementAndGet();
+        });
+        http.cache("/cached/*", 60_000);
+        http.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        http.stop();
+    }
+
+    @Before
+    public void resetCache() {
+        http.responseCache().invalidateAll();
+        routeInvocations.set(0);
+        cacheableFilterInvocations.set(0);
+        filterInvocations.set(0);
+    }
+
+    @Test
+    public void testGet_whenCached_thenRouteAndCacheableFiltersAreSkipped() throws Exception {
+        SparkTestUtil.UrlResponse first = testUtil.get("/cached/feed");
+        SparkTestUtil.UrlResponse second = testUtil.get("/cached/feed");
+
+        Assert.assertEquals(200, second.status);
+        Assert.assertEquals(first.body, second.body);
+        Assert.assertEquals(1, routeInvocations.get());
+        Assert.assertEquals(1, cacheableFilterInvocations.get());
+        Assert.assertEquals(2, filterInvocations.get());
+    }
+
+    @Test
+    public void testGet_whenQueryDiffers_thenCachedSeparately() throws Exception {
+        testUtil.get("/cached/feed?page=1");
+        testUtil.get("/cached/feed?page=2");
+
+        Assert.assertEquals(2, routeInvocations.get());
+    }
+
+    @Test
+    public void testGet_whenInvalidated_thenRouteIsInvoked() throws Exception {
+        testUtil.get("/cached/feed");
+        http.responseCache().invalidate("/cached/feed");
+        SparkTestUtil.UrlResponse response = testUtil.get("/cached/feed");
+
+        Assert.assertEquals("feed 2", response.body);
+    }
+
+    @Test
+    public void testGet_whenResponseSetsCookie_thenNotCached() throws Exception {
+        testUtil.get("/cached/cookie");
+        testUtil.get("/cached/cookie");
+
+        Assert.assertEquals(2, routeInvocations.get());
+    }
+
+}
@@ -0,0 +1,106 @@
+package spark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import spark.util.SparkTestUtil;
+
+import static spark.Service.ignite;
+
+/**
+ * Tests conditional GET (ETag / If-None-Match) of dynamic route responses.
+ */
+public class ConditionalGetTest {
+
+    private static Service http;
+    private static SparkTestUtil testUtil;
+
+    @BeforeClass
+    public static void setup() {
+        testUtil = new SparkTestUtil(4567);
+
+        http = ignite();
+        http.get("/feed", (request, response) -> "{\"items\":[1,2,3]}");
+        http.get("/versioned", (request, response) -> {
+            response.header("ETag", "\"v42\"");
+            return "versioned";
+        });
+        http.get("/created", (request, response) -> {
+            response.status(201);
+            return "created";
+        });
+        http.get("/plain", (request, response) -> "plain");
+        http.conditionalGet("/feed");
+        http.conditionalGet("/versioned");
+        http.conditionalGet("/created");
+        http.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        http.stop();
+    }
+
+    @Test
+    public void testGet_whenNoIfNoneMatch_thenBodyAndETagAreReturned() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.get("/feed");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("{\"items\":[1,2,3]}", response.body);
+        Assert.assertNotNull(response.headers.get("ETag"));
+    }
+
+    @Test
+    public void testGet_whenIfNoneMatchMatches_thenNotModified() throws Exception {
+        String etag = testUtil.get("/feed").headers.get("ETag");
+
+        SparkTestUtil.UrlResponse response = doGet("/feed", etag);
+
+        Assert.assertEquals(304, response.status);
+        Assert.assertEquals("", response.body);
+        Assert.assertEquals(etag, response.headers.get("ETag"));
+    }
+
+    @Test
+    public void testGet_whenIfNoneMatchDoesNotMatch_thenBodyIsReturned() throws Exception {
+        SparkTestUtil.UrlResponse response = doGet("/feed", "\"stale\"");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("{\"items\":[1,2,3]}", response.body);
+    }
+
+    @Test
+    public void testGet_whenRouteSetsETag_thenRouteETagIsUsed() throws Exception {
+        SparkTestUtil.UrlResponse response = doGet("/versioned", "\"v42\"");
+
+        Assert.assertEquals(304, response.status);
+    }
+
+    @Test
+    public void testGet_whenStatusIsNotOk_thenNoETag() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.get("/created");
+
+        Assert.assertEquals(201, response.status);
+        Assert.assertNull(response.headers.get("ETag"));
+    }
+
+    @Test
+    public void testGet_whenNotEnabledForRoute_thenNoETag() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.get("/plain");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertNull(response.headers.get("ETag"));
+    }
+
+    private static SparkTestUtil.UrlResponse doGet(String path, String ifNoneMatch) throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-None-Match", ifNoneMatch);
+        return testUtil.doMethod("GET", path, null, false, "*/*", headers);
+    }
+
+}
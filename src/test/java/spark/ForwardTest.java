@@ -0,0 +1,94 @@
+package spark;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import spark.util.SparkTestUtil;
+
+import static spark.Service.ignite;
+
+/**
+ * Tests internal forwarding and dispatching of requests.
+ */
+public class ForwardTest {
+
+    private static Service http;
+    private static SparkTestUtil testUtil;
+
+    @BeforeClass
+    public static void setup() {
+        testUtil = new SparkTestUtil(4567);
+
+        http = ignite();
+        http.get("/users/:id", (request, response) -> "user " + request.params(":id"));
+        http.post("/echo", (request, response) -> "echo " + request.body());
+        http.get("/alias/:id", (request, response) -> {
+            request.forward("/users/" + request.params(":id"));
+            return "not forwarded";
+        });
+        http.post("/alias/echo", (request, response) -> {
+            request.forward("/echo");
+            return null;
+        });
+        http.get("/composed/:id", (request, response) -> request.dispatch("GET", "/users/1")
+                + ", "
+                + request.dispatch("GET", "/users/2")
+                + ", own "
+                + request.params(":id"));
+        http.get("/loop", (request, response) -> {
+            request.forward("/loop");
+            return null;
+        });
+        http.get("/missing", (request, response) -> {
+            request.forward("/nowhere");
+            return null;
+        });
+        http.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        http.stop();
+    }
+
+    @Test
+    public void testForward_thenForwardedRouteProducesBody() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.get("/alias/42");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("user 42", response.body);
+    }
+
+    @Test
+    public void testForward_whenBodyWasRead_thenBodyIsShared() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.doMethod("POST", "/alias/echo", "payload");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("echo payload", response.body);
+    }
+
+    @Test
+    public void testDispatch_thenResultsAreComposedAndParamsRestored() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.get("/composed/7");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("user 1, user 2, own 7", response.body);
+    }
+
+    @Test
+    public void testForward_whenLooping_thenDepthIsLimited() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.get("/loop");
+
+        Assert.assertEquals(500, response.status);
+    }
+
+    @Test
+    public void testForward_whenNoRouteIsMapped_thenNotFound() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.get("/missing");
+
+        Assert.assertEquals(404, response.status);
+    }
+
+}
@@ -0,0 +1,150 @@
+package spark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import spark.embeddedserver.inprocess.InProcessClient;
+import spark.http.matching.InMemoryRequest;
+import spark.http.matching.InMemoryResponse;
+
+import static spark.Service.ignite;
+
+/**
+ * Tests running requests through the routes without sockets.
+ */
+public class InProcessClientTest {
+
+    private static Service http;
+    private static InProcessClient client;
+
+    private static Service decompressing;
+
+    @BeforeClass
+    public static void setup() {
+        http = ignite().inProcess();
+        http.before("/protected/*", (request, response) -> {
+            if (request.headers("Authorization") == null) {
+                http.halt(401, "unauthorized");
+            }
+        });
+        http.get("/hello/:name",
+                 (request, response) -> "hello " + request.params(":name") + request.queryParams("suffix"));
+        http.post("/echo", (request, response) -> {
+            response.type("text/plain");
+            response.header("X-Length", String.valueOf(request.body().length()));
+            return request.body();
+        });
+        http.get("/protected/data", (request, response) -> "data");
+        http.get("/fail", (request, response) -> {
+            throw new IllegalArgumentException("bad");
+        });
+        http.exception(IllegalArgumentException.class, (exception, request, response) -> {
+            response.status(400);
+            response.body(exception.getMessage());
+        });
+        http.awaitInitialization();
+
+        client = http.client();
+
+        decompressing = ignite().inProcess().requestDecompression(1024);
+        decompressing.post("/echo", (request, response) -> request.body());
+        decompressing.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        http.stop();
+        decompressing.stop();
+    }
+
+    @Test
+    public void testGet_thenRouteResponds() throws Exception {
+        InMemoryResponse response = client.get("/hello/world?suffix=!");
+
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals("hello world!", body(response));
+    }
+
+    @Test
+    public void testPost_thenBodyAndHeadersAreReturned() throws Exception {
+        InMemoryResponse response = client.request("POST", "/echo", "payload");
+
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals("payload", body(response));
+        Assert.assertEquals("7", response.getHeader("X-Length"));
+        Assert.assertEquals("text/plain", response.getContentType());
+    }
+
+    @Test
+    public void testGet_thenFiltersRun() throws Exception {
+        Assert.assertEquals(401, client.get("/protected/data").getStatus());
+
+        InMemoryResponse response = client.request("GET",
+                                                   "/protected/data",
+                                                   Collections.singletonMap("Authorization", "token"),
+                                                   null);
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals("data", body(response));
+    }
+
+    @Test
+    public void testGet_thenExceptionsAreMapped() throws Exception {
+        InMemoryResponse response = client.get("/fail");
+
+        Assert.assertEquals(400, response.getStatus());
+        Assert.assertEquals("bad", body(response));
+    }
+
+    @Test
+    public void testGet_whenNotMapped_thenNotFound() throws Exception {
+        Assert.assertEquals(404, client.get("/nowhere").getStatus());
+    }
+
+    @Test
+    public void testGet_whenRejectedBeforeTheRoutes_thenSameNotFoundAsAfterTheRoutes() throws Exception {
+        // no route starts with the first segment of the path, the request doesn't go through the routes
+        InMemoryResponse rejected = client.get("/nowhere");
+        InMemoryResponse unmatched = client.get("/hello/world/again");
+
+        Assert.assertEquals(404, unmatched.getStatus());
+        Assert.assertEquals(unmatched.headers(), rejected.headers());
+        Assert.assertEquals(body(unmatched), body(rejected));
+    }
+
+    @Test
+    public void testPost_whenCompressed_thenOnlyDecompressedByTheServiceDecompressingRequests() throws Exception {
+        InMemoryRequest request = InMemoryRequest.create("POST", "/echo")
+                .header("Content-Encoding", "gzip")
+                .body(gzip("payload"));
+
+        Assert.assertEquals("payload", body(decompressing.client().execute(request)));
+
+        request = InMemoryRequest.create("POST", "/echo")
+                .header("Content-Encoding", "gzip")
+                .body(gzip("payload"));
+
+        // the limit is set on one service only
+        Assert.assertNotEquals("payload", body(client.execute(request)));
+    }
+
+    private static byte[] gzip(String body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String body(InMemoryResponse response) {
+        return new String(response.body(), StandardCharsets.UTF_8);
+    }
+
+}
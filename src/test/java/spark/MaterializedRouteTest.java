@@ -0,0 +1,104 @@
+package spark;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import spark.utils.ConditionalUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class MaterializedRouteTest {
+
+    private final AtomicInteger version = new AtomicInteger();
+
+    private Response response;
+
+    @Before
+    public void setup() {
+        response = RequestResponseFactory.create(mock(HttpServletResponse.class));
+    }
+
+    @Test
+    public void testHandle_whenNotRefreshedYet_thenFirstRefreshIsAwaited() throws Exception {
+        MaterializedRoute route = new MaterializedRoute("/dashboard", "application/json", () -> "v" + version.incrementAndGet());
+
+        FutureTask<Object> request = new FutureTask<>(() -> route.handle(null, response));
+        new Thread(request).start();
+
+        route.refresh();
+
+        assertArrayEquals("v1".getBytes(), (byte[]) request.get(10, TimeUnit.SECONDS));
+        assertArrayEquals("v1".getBytes(), (byte[]) route.handle(null, response));
+        assertEquals(1, version.get());
+    }
+
+    @Test
+    public void testHandle_whenFirstRefreshFails_thenAwaitingRequestFails() throws Exception {
+        MaterializedRoute route = new MaterializedRoute("/dashboard", null, () -> {
+            throw new IllegalStateException("database is down");
+        });
+
+        FutureTask<Object> request = new FutureTask<>(() -> route.handle(null, response));
+        new Thread(request).start();
+
+        // a request arriving after a failed refresh waits for the next one
+        while (!request.isDone()) {
+            route.refresh();
+        }
+
+        try {
+            request.get(10, TimeUnit.SECONDS);
+            fail("Expected the failure of the first refresh");
+        } catch (ExecutionException e) {
+            assertEquals("database is down", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testHandle_whenRefreshed_thenLatestSnapshotIsServed() throws Exception {
+        MaterializedRoute route = new MaterializedRoute("/dashboard", null, () -> "v" + version.incrementAndGet());
+
+        route.refresh();
+        route.refresh();
+
+        assertArrayEquals("v2".getBytes(), (byte[]) route.handle(null, response));
+    }
+
+    @Test
+    public void testHandle_whenRefreshFails_thenPreviousSnapshotIsServed() throws Exception {
+        MaterializedRoute route = new MaterializedRoute("/dashboard", null, () -> {
+            if (version.incrementAndGet() > 1) {
+                throw new IllegalStateException("database is down");
+            }
+            return "v1";
+        });
+
+        route.refresh();
+        route.refresh();
+
+        assertArrayEquals("v1".getBytes(), (byte[]) route.handle(null, response));
+    }
+
+    @Test
+    public void testValidator_returnsETagOfSnapshot() throws Exception {
+        MaterializedRoute route = new MaterializedRoute("/dashboard", null, () -> "v1");
+
+        assertNull(route.getValidator().validate(null));
+
+        route.refresh();
+
+        assertEquals(ConditionalUtils.etag("v1".getBytes(), 0, 2), route.getValidator().validate(null).getETag());
+    }
+
+}
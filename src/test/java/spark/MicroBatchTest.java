@@ -0,0 +1,123 @@
+package spark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import spark.http.matching.MicroBatcher;
+import spark.util.SparkTestUtil;
+
+import static spark.Service.ignite;
+
+/**
+ * Tests the micro-batching routes.
+ */
+public class MicroBatchTest {
+
+    private static final int BATCH_SIZE = 4;
+
+    private static Service http;
+    private static MicroBatcher batcher;
+
+    @BeforeClass
+    public static void setup() {
+        http = ignite();
+        http.after("/batch/*", (request, response) -> {
+            response.header("X-After", "true");
+            response.header("X-After-Body", response.body());
+        });
+        batcher = http.microBatch("/batch/echo", BATCH_SIZE, 10_000, requests -> requests.stream()
+                .map(request -> request.body() + " of " + requests.size())
+                .collect(Collectors.toList()));
+        http.microBatch("/batch/partial", BATCH_SIZE, 10_000, requests -> requests.stream()
+                .map(request -> "fail".equals(request.body())
+                        ? new HaltException(422, "rejected")
+                        : request.body())
+                .collect(Collectors.toList()));
+        http.microBatch("/batch/timed", 100, 50, requests -> requests.stream()
+                .map(request -> "alone " + requests.size())
+                .collect(Collectors.toList()));
+        http.microBatch("/batch/slow", 100, 50, requests -> {
+            Thread.sleep(2_000);
+            return requests.stream().map(Request::body).collect(Collectors.toList());
+        }).timeout(200);
+        http.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        http.stop();
+    }
+
+    @Test
+    public void testPost_whenBatchIsFull_thenRouteIsInvokedOnceForAllRequests() throws Exception {
+        long batches = batcher.batches();
+
+        List<SparkTestUtil.UrlResponse> responses = postConcurrently("/batch/echo", "a", "b", "c", "d");
+
+        for (int i = 0; i < responses.size(); i++) {
+            Assert.assertEquals(200, responses.get(i).status);
+            Assert.assertEquals("abcd".charAt(i) + " of 4", responses.get(i).body);
+            Assert.assertEquals("true", responses.get(i).headers.get("X-After"));
+            Assert.assertEquals("abcd".charAt(i) + " of 4", responses.get(i).headers.get("X-After-Body"));
+        }
+        Assert.assertEquals(batches + 1, batcher.batches());
+    }
+
+    @Test
+    public void testPost_whenResultIsException_thenOnlyThatRequestFails() throws Exception {
+        List<SparkTestUtil.UrlResponse> responses = postConcurrently("/batch/partial", "a", "fail", "c", "d");
+
+        Assert.assertEquals(200, responses.get(0).status);
+        Assert.assertEquals("a", responses.get(0).body);
+        Assert.assertEquals(422, responses.get(1).status);
+        Assert.assertEquals("rejected", responses.get(1).body);
+        Assert.assertEquals(200, responses.get(2).status);
+    }
+
+    @Test
+    public void testPost_whenMaxDelayElapses_thenPartialBatchIsHandled() throws Exception {
+        SparkTestUtil.UrlResponse response = new SparkTestUtil(4567).doMethod("POST", "/batch/timed", "x");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("alone 1", response.body);
+    }
+
+    @Test
+    public void testPost_whenBatchIsNotHandledInTime_thenRequestFails() throws Exception {
+        SparkTestUtil.UrlResponse response = new SparkTestUtil(4567).doMethod("POST", "/batch/slow", "x");
+
+        Assert.assertEquals(500, response.status);
+    }
+
+    private static List<SparkTestUtil.UrlResponse> postConcurrently(String path, String... bodies) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(bodies.length);
+        try {
+            List<Future<SparkTestUtil.UrlResponse>> futures = new ArrayList<>();
+
+            for (String body : bodies) {
+                // the test client isn't thread safe, each request gets its own
+                futures.add(executor.submit(() -> new SparkTestUtil(4567).doMethod("POST", path, body)));
+                // keeps the arrival order of the requests
+                Thread.sleep(100);
+            }
+
+            List<SparkTestUtil.UrlResponse> responses = new ArrayList<>();
+            for (Future<SparkTestUtil.UrlResponse> future : futures) {
+                responses.add(future.get());
+            }
+            return responses;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -17,6 +17,8 @@
 package spark;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -55,6 +57,13 @@ public class RedirectTest {
         redirect.delete("/hiagain", "/hello", Redirect.Status.USE_PROXY);
         redirect.any("/anyagain", "/hello", Redirect.Status.USE_PROXY);
 
+        redirect.table(Collections.singletonMap("/legacy/table", "/hello"));
+        redirect.table(Collections.singletonMap("/legacy/tableagain", "/hello"), Redirect.Status.USE_PROXY);
+        redirect.load(new StringReader("# legacy urls\n"
+                                               + "/legacy/file /hello\n"
+                                               + "\n"
+                                               + "/legacy/fileagain   /hello   305\n"));
+
         Spark.awaitInitialization();
     }
 
@@ -162,4 +171,36 @@ public class RedirectTest {
         Assert.assertEquals(Redirect.Status.USE_PROXY.intValue(), response.status);
     }
 
+    @Test
+    public void testRedirectTable() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.doMethod("GET", "/legacy/table", null);
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals(REDIRECTED, response.body);
+    }
+
+    @Test
+    public void testRedirectTablePostWithSpecificCode() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.doMethod("POST", "/legacy/tableagain", "");
+        Assert.assertEquals(Redirect.Status.USE_PROXY.intValue(), response.status);
+        Assert.assertEquals("/hello", response.headers.get("Location"));
+    }
+
+    @Test
+    public void testRedirectLoadedTable() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.doMethod("PUT", "/legacy/file", "");
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals(REDIRECTED, response.body);
+    }
+
+    @Test
+    public void testRedirectLoadedTableWithSpecificCode() throws Exception {
+        SparkTestUtil.UrlResponse response = testUtil.doMethod("GET", "/legacy/fileagain", null);
+        Assert.assertEquals(Redirect.Status.USE_PROXY.intValue(), response.status);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadInvalidTable() throws Exception {
+        redirect.load(new StringReader("/legacy/invalid /hello 200\n"));
+    }
+
 }
@@ -0,0 +1,110 @@
+package spark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import spark.util.SparkTestUtil;
+
+import static spark.Service.ignite;
+
+/**
+ * Tests routes with freshness validators evaluated before the route is invoked.
+ */
+public class ValidatedRoutesTest {
+
+    private static final long LAST_MODIFIED = 1_450_000_000_000L;
+
+    private static final AtomicInteger invocations = new AtomicInteger();
+
+    private static Service http;
+    private static SparkTestUtil testUtil;
+
+    @BeforeClass
+    public static void setup() {
+        testUtil = new SparkTestUtil(4567);
+
+        http = ignite();
+        http.get("/rows/:id", request -> Freshness.etag("v" + request.params(":id")), (request, response) -> {
+            invocations.incrementAndGet();
+            return "row " + request.params(":id");
+        });
+        http.get("/report", request -> Freshness.lastModified(LAST_MODIFIED), (request, response) -> {
+            invocations.incrementAndGet();
+            return "report";
+        });
+        http.get("/unknown", request -> null, (request, response) -> {
+            invocations.incrementAndGet();
+            return "unknown";
+        });
+        http.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        http.stop();
+    }
+
+    @Before
+    public void resetInvocations() {
+        invocations.set(0);
+    }
+
+    @Test
+    public void testGet_whenETagMatches_thenNotModifiedAndRouteIsNotInvoked() throws Exception {
+        SparkTestUtil.UrlResponse response = doGet("/rows/7", "If-None-Match", "\"v7\"");
+
+        Assert.assertEquals(304, response.status);
+        Assert.assertEquals("\"v7\"", response.headers.get("ETag"));
+        Assert.assertEquals(0, invocations.get());
+    }
+
+    @Test
+    public void testGet_whenETagDoesNotMatch_thenRouteIsInvoked() throws Exception {
+        SparkTestUtil.UrlResponse response = doGet("/rows/7", "If-None-Match", "\"v6\"");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("row 7", response.body);
+        Assert.assertEquals("\"v7\"", response.headers.get("ETag"));
+        Assert.assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void testGet_whenNotModifiedSince_thenNotModifiedAndRouteIsNotInvoked() throws Exception {
+        SparkTestUtil.UrlResponse response = doGet("/report", "If-Modified-Since", "Sun, 13 Dec 2015 09:46:40 GMT");
+
+        Assert.assertEquals(304, response.status);
+        Assert.assertEquals(0, invocations.get());
+    }
+
+    @Test
+    public void testGet_whenModifiedSince_thenRouteIsInvoked() throws Exception {
+        SparkTestUtil.UrlResponse response = doGet("/report", "If-Modified-Since", "Sat, 12 Dec 2015 00:00:00 GMT");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("report", response.body);
+        Assert.assertNotNull(response.headers.get("Last-Modified"));
+        Assert.assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void testGet_whenValidatorReturnsNull_thenRouteIsInvoked() throws Exception {
+        SparkTestUtil.UrlResponse response = doGet("/unknown", "If-None-Match", "*");
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals(1, invocations.get());
+    }
+
+    private static SparkTestUtil.UrlResponse doGet(String path, String header, String value) throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(header, value);
+        return testUtil.doMethod("GET", path, null, false, "*/*", headers);
+    }
+
+}
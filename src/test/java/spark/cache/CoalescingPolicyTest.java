@@ -0,0 +1,115 @@
+package spark.cache;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CoalescingPolicyTest {
+
+    @Test
+    public void testJoin_whenFlightIsRunning_thenFollowerGetsLeadersResponse() throws Exception {
+        CoalescingPolicy policy = CoalescingPolicy.create(5_000);
+
+        CoalescingPolicy.Flight leader = policy.join("key");
+        CoalescingPolicy.Flight follower = policy.join("key");
+
+        assertTrue(leader.isLeader());
+        assertFalse(follower.isLeader());
+
+        CompletableFuture<CachedResponse> awaited = CompletableFuture.supplyAsync(() -> {
+            try {
+                return follower.await();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        CachedResponse response = response();
+        leader.complete(response);
+
+        assertSame(response, awaited.get());
+        assertEquals(1, policy.coalescedRequests());
+    }
+
+    @Test
+    public void testJoin_whenFlightCompleted_thenNewFlightIsStarted() {
+        CoalescingPolicy policy = CoalescingPolicy.create(5_000);
+
+        policy.join("key").complete(response());
+
+        assertTrue(policy.join("key").isLeader());
+    }
+
+    @Test
+    public void testAwait_whenLeaderFails_thenExceptionIsShared() {
+        CoalescingPolicy policy = CoalescingPolicy.create(5_000);
+
+        CoalescingPolicy.Flight leader = policy.join("key");
+        CoalescingPolicy.Flight follower = policy.join("key");
+
+        leader.fail(new IllegalStateException("database is down"));
+
+        try {
+            follower.await();
+            fail("Expected the leader's exception");
+        } catch (Exception e) {
+            assertEquals("database is down", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAwait_whenTimedOut_thenNull() throws Exception {
+        CoalescingPolicy policy = CoalescingPolicy.create(10);
+
+        policy.join("key");
+
+        assertNull(policy.join("key").await());
+        assertEquals(1, policy.timedOutRequests());
+    }
+
+    @Test
+    public void testKey_includesConfiguredHeaders() {
+        CoalescingPolicy policy = CoalescingPolicy.create(10, "Authorization");
+
+        HttpServletRequest first = mock(HttpServletRequest.class);
+        when(first.getHeader("Authorization")).thenReturn("Bearer a");
+        HttpServletRequest second = mock(HttpServletRequest.class);
+        when(second.getHeader("Authorization")).thenReturn("Bearer b");
+
+        assertNotEquals(policy.key(first, "GET", "/feed", true), policy.key(second, "GET", "/feed", true));
+    }
+
+    @Test
+    public void testKey_whenOnlyLeaderSendsValidators_thenWaiterDoesNotJoinItsFlight() {
+        CoalescingPolicy policy = CoalescingPolicy.create(10);
+
+        HttpServletRequest leader = mock(HttpServletRequest.class);
+        when(leader.getHeader("If-None-Match")).thenReturn("\"v1\"");
+        HttpServletRequest waiter = mock(HttpServletRequest.class);
+
+        String leaderKey = policy.key(leader, "GET", "/feed", true);
+        String waiterKey = policy.key(waiter, "GET", "/feed", true);
+
+        assertNotEquals(leaderKey, waiterKey);
+        assertTrue(policy.join(leaderKey).isLeader());
+        assertTrue(policy.join(waiterKey).isLeader());
+    }
+
+    private static CachedResponse response() {
+        return CachedResponse.create(200, "text/plain", Collections.emptyList(), "body".getBytes(), -1);
+    }
+
+}
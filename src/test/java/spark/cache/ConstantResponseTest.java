@@ -0,0 +1,73 @@
+package spark.cache;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import spark.http.matching.InMemoryRequest;
+import spark.http.matching.InMemoryResponse;
+import spark.utils.IOUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConstantResponseTest {
+
+    private static final String BODY = "User-agent: *\n"
+            + "Disallow: /private/\n"
+            + "Disallow: /private/admin/\n"
+            + "Disallow: /private/archive/\n"
+            + "Disallow: /private/drafts/\n";
+
+    private final ConstantResponse constant = ConstantResponse.create(
+            200, Collections.singletonMap("Content-Type", "text/plain"), BODY);
+
+    @Test
+    public void testWriteTo_thenHeadersAndBodyAreWritten() throws Exception {
+        InMemoryResponse response = InMemoryResponse.create();
+        constant.writeTo(InMemoryRequest.create("GET", "/robots.txt"), response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("text/plain", response.getContentType());
+        assertEquals(constant.getETag(), response.getHeader("ETag"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals(String.valueOf(BODY.length()), response.getHeader("Content-Length"));
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(BODY, new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteTo_whenGzipAccepted_thenPrecompressedBodyIsWritten() throws Exception {
+        InMemoryResponse response = InMemoryResponse.create();
+        constant.writeTo(InMemoryRequest.create("GET", "/robots.txt").header("Accept-Encoding", "gzip"), response);
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals(BODY, new String(IOUtils.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(response.body()))), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteTo_whenETagMatches_thenNotModified() throws Exception {
+        InMemoryResponse response = InMemoryResponse.create();
+        constant.writeTo(InMemoryRequest.create("GET", "/robots.txt").header("If-None-Match", constant.getETag()),
+                         response);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.body().length);
+    }
+
+    @Test
+    public void testCreate_whenTooSmallToCompress_thenGzipIsNotUsed() throws Exception {
+        InMemoryResponse response = InMemoryResponse.create();
+        ConstantResponse.create(200, null, "ok")
+                .writeTo(InMemoryRequest.create("GET", "/health").header("Accept-Encoding", "gzip"), response);
+
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("text/html; charset=utf-8", response.getContentType());
+        assertEquals("ok", new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+}
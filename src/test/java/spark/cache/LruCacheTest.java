@@ -0,0 +1,70 @@
+package spark.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class LruCacheTest {
+
+    @Test
+    public void testPut_whenMaximumWeightExceeded_thenLeastRecentlyUsedIsEvicted() {
+        LruCache<String, String> cache = LruCache.create(10, String::length);
+
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.get("a");
+        cache.put("c", "cccc");
+
+        assertEquals("aaaa", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("cccc", cache.get("c"));
+        assertEquals(8, cache.weight());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void testPut_whenValueHeavierThanMaximumWeight_thenNotCached() {
+        LruCache<String, String> cache = LruCache.create(3, String::length);
+
+        assertFalse(cache.put("a", "aaaa"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPut_whenKeyExists_thenWeightIsReplaced() {
+        LruCache<String, String> cache = LruCache.create(10, String::length);
+
+        cache.put("a", "aaaa");
+        cache.put("a", "aa");
+
+        assertEquals(2, cache.weight());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemoveIf() {
+        LruCache<String, String> cache = LruCache.create(100, String::length);
+        cache.put("/users/1", "x");
+        cache.put("/users/2", "y");
+        cache.put("/books/1", "z");
+
+        assertEquals(2, cache.removeIf((key, value) -> key.startsWith("/users/")));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.weight());
+    }
+
+    @Test
+    public void testHitAndMissCount() {
+        LruCache<String, String> cache = LruCache.create(100, String::length);
+        cache.put("a", "a");
+
+        cache.get("a");
+        cache.get("b");
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+}
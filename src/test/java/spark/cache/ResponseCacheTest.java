@@ -0,0 +1,61 @@
+package spark.cache;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void testGet_whenCached_thenHit() {
+        ResponseCache cache = ResponseCache.create();
+        cache.put("/feed", "get", response(-1));
+
+        assertNotNull(cache.get("/feed", "get"));
+        assertNull(cache.get("/feed", "other"));
+        assertEquals(0.5, cache.hitRatio(), 0.0);
+    }
+
+    @Test
+    public void testGet_whenExpired_thenMiss() {
+        ResponseCache cache = ResponseCache.create();
+        cache.put("/feed", "get", response(System.currentTimeMillis() - 1));
+
+        assertNull(cache.get("/feed", "get"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPut_whenLargerThanMaximumEntrySize_thenNotCached() {
+        ResponseCache cache = ResponseCache.create().maximumEntrySize(2);
+        cache.put("/feed", "get", response(-1));
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ResponseCache cache = ResponseCache.create();
+        cache.put("/users/1", "get", response(-1));
+        cache.put("/users/1", "get\nq=1", response(-1));
+        cache.put("/users/2", "get", response(-1));
+        cache.put("/books/1", "get", response(-1));
+
+        assertEquals(2, cache.invalidate("/users/1"));
+        assertEquals(1, cache.invalidate("/users/*"));
+        assertEquals(1, cache.size());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.memoryUsage());
+    }
+
+    private static CachedResponse response(long expiresAt) {
+        return CachedResponse.create(200, "text/plain", Collections.emptyList(), "body".getBytes(), expiresAt);
+    }
+
+}
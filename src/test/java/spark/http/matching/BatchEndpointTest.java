@@ -0,0 +1,171 @@
+package spark.http.matching;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import spark.utils.JsonUtils;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchEndpointTest {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private final BatchEndpoint endpoint = BatchEndpoint.create(10, 2);
+
+    // answers with the method, path, an inherited header and the value of a counter incremented by POST requests
+    private final Filter pipeline = new Filter() {
+        @Override
+        public void init(FilterConfig filterConfig) {
+        }
+
+        @Override
+        public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+                throws IOException {
+            HttpServletRequest request = (HttpServletRequest) servletRequest;
+            HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+            if (request.getPathInfo().equals("/_batch")) {
+                endpoint.handle(request, response, this, null);
+                return;
+            }
+            if (request.getPathInfo().equals("/fail")) {
+                throw new IOException("broken");
+            }
+            if (request.getMethod().equals("POST")) {
+                counter.incrementAndGet();
+            }
+
+            response.setContentType("text/plain; charset=utf-8");
+            response.setHeader("X-Auth", request.getHeader("Authorization"));
+            response.setHeader("X-Remote", request.getRemoteAddr());
+            response.getOutputStream().write((request.getMethod()
+                    + " " + request.getPathInfo()
+                    + " " + request.getParameter("q")
+                    + " " + request.getHeader("Accept")
+                    + " " + counter.get()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void destroy() {
+        }
+    };
+
+    @Test
+    public void testHandle_thenResultsAreInOrderAndUnsafeRequestsAreSequenced() throws Exception {
+        List<?> results = handle("[{\"path\": \"/a?q=1\"},"
+                                         + " {\"method\": \"POST\", \"path\": \"/b\", \"body\": \"x\"},"
+                                         + " {\"method\": \"GET\", \"path\": \"/c\","
+                                         + " \"headers\": {\"Accept\": \"text/plain\"}}]");
+
+        assertEquals(3, results.size());
+        assertEquals("GET /a 1 null 0", body(results, 0));
+        assertEquals("POST /b null null 1", body(results, 1));
+        assertEquals("GET /c null text/plain 1", body(results, 2));
+        assertEquals(200L, ((Map<?, ?>) results.get(0)).get("status"));
+    }
+
+    @Test
+    public void testHandle_thenHeadersOfBatchRequestAreInherited() throws Exception {
+        List<?> results = handle("[{\"path\": \"/a\"}, {\"path\": \"/b\", \"headers\": {\"authorization\": \"own\"}}]");
+
+        assertEquals("secret", ((Map<?, ?>) ((Map<?, ?>) results.get(0)).get("headers")).get("X-Auth"));
+        assertEquals("own", ((Map<?, ?>) ((Map<?, ?>) results.get(1)).get("headers")).get("X-Auth"));
+    }
+
+    @Test
+    public void testHandle_whenPipelineFails_thenOnlyThatResultIsAnError() throws Exception {
+        List<?> results = handle("[{\"path\": \"/fail\"}, {\"path\": \"/a\"}]");
+
+        assertEquals(500L, ((Map<?, ?>) results.get(0)).get("status"));
+        assertEquals(200L, ((Map<?, ?>) results.get(1)).get("status"));
+    }
+
+    @Test
+    public void testHandle_whenSubRequestTargetsBatchEndpoint_thenOnlyThatResultIsBadRequest() throws Exception {
+        List<?> results = handle("[{\"method\": \"POST\", \"path\": \"/_batch\","
+                                         + " \"body\": \"[{\\\"path\\\": \\\"/a\\\"}]\"},"
+                                         + " {\"path\": \"/a\"}]");
+
+        assertEquals(400L, ((Map<?, ?>) results.get(0)).get("status"));
+        assertEquals("Batch requests can't be nested", body(results, 0));
+        assertEquals(200L, ((Map<?, ?>) results.get(1)).get("status"));
+        assertEquals(0, counter.get());
+    }
+
+    @Test
+    public void testHandle_thenParallelSubRequestsUseACopyOfTheBatchRequest() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        HttpServletRequest batchRequest = new HttpServletRequestWrapper(batchRequest("[{\"path\": \"/a\"},"
+                                                                                         + " {\"path\": \"/b\"}]")) {
+            @Override
+            public String getRemoteAddr() {
+                threads.add(Thread.currentThread());
+                return "10.0.0.1";
+            }
+        };
+
+        InMemoryResponse response = InMemoryResponse.create();
+        endpoint.handle(batchRequest, response, pipeline, null);
+
+        List<?> results = (List<?>) JsonUtils.parse(new String(response.body(), StandardCharsets.UTF_8));
+
+        assertEquals("10.0.0.1", ((Map<?, ?>) ((Map<?, ?>) results.get(1)).get("headers")).get("X-Remote"));
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void testHandle_whenInvalid_thenBadRequest() throws Exception {
+        InMemoryResponse response = InMemoryResponse.create();
+        BatchEndpoint.create(10, 2).handle(batchRequest("{\"path\": \"/a\"}"), response, pipeline, null);
+
+        assertEquals(400, response.getStatus());
+    }
+
+    @Test
+    public void testHandle_whenTooManyRequests_thenBadRequest() throws Exception {
+        InMemoryResponse response = InMemoryResponse.create();
+        BatchEndpoint.create(1, 2)
+                .handle(batchRequest("[{\"path\": \"/a\"}, {\"path\": \"/b\"}]"), response, pipeline, null);
+
+        assertEquals(400, response.getStatus());
+    }
+
+    private List<?> handle(String batch) throws Exception {
+        InMemoryResponse response = InMemoryResponse.create();
+        endpoint.handle(batchRequest(batch), response, pipeline, null);
+
+        assertEquals(200, response.getStatus());
+        return (List<?>) JsonUtils.parse(new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    private static InMemoryRequest batchRequest(String batch) {
+        return InMemoryRequest.create("POST", "/_batch")
+                .header("Authorization", "secret")
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json")
+                .body(batch);
+    }
+
+    private static String body(List<?> results, int index) {
+        return (String) ((Map<?, ?>) results.get(index)).get("body");
+    }
+
+}
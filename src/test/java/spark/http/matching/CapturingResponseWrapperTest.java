@@ -0,0 +1,36 @@
+package spark.http.matching;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+import spark.cache.CachedResponse;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CapturingResponseWrapperTest {
+
+    @Test
+    public void testToSharedResponse_whenOk_thenShared() throws Exception {
+        CapturingResponseWrapper response = new CapturingResponseWrapper(InMemoryResponse.create(), 1024);
+        response.getOutputStream().write("feed".getBytes(StandardCharsets.UTF_8));
+
+        CachedResponse shared = response.toSharedResponse();
+
+        assertNotNull(shared);
+    }
+
+    @Test
+    public void testToSharedResponse_whenNotModified_thenNotShared() throws Exception {
+        // the leader sent 'If-None-Match', a waiter without validators needs the content
+        CapturingResponseWrapper response = new CapturingResponseWrapper(InMemoryResponse.create(), 1024);
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        response.getOutputStream().flush();
+
+        assertNull(response.toSharedResponse());
+    }
+
+}
@@ -0,0 +1,201 @@
+package spark.http.matching;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import spark.MalformedBodyException;
+import spark.PayloadTooLargeException;
+import spark.Request;
+import spark.RequestResponseFactory;
+import spark.routematch.RouteMatch;
+import spark.utils.IOUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DecompressingRequestWrapperTest {
+
+    private static final byte[] CONTENT = "{\"batch\":[1,2,3,4,5,6,7,8,9,10]}".getBytes();
+
+    private HttpServletRequest servletRequest;
+
+    @Before
+    public void setup() {
+        servletRequest = mock(HttpServletRequest.class);
+    }
+
+    @Test
+    public void testWrapIfCompressed_whenNoContentEncoding_thenRequestIsNotWrapped() {
+        assertSame(servletRequest, DecompressingRequestWrapper.wrapIfCompressed(servletRequest, 1024));
+    }
+
+    @Test
+    public void testWrapIfCompressed_whenUnsupportedContentEncoding_thenRequestIsNotWrapped() {
+        when(servletRequest.getHeader("Content-Encoding")).thenReturn("br");
+
+        assertSame(servletRequest, DecompressingRequestWrapper.wrapIfCompressed(servletRequest, 1024));
+    }
+
+    @Test
+    public void testGetInputStream_whenGzip_thenBodyIsInflated() throws Exception {
+        when(servletRequest.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(servletRequest.getInputStream()).thenReturn(servletInputStream(gzip(CONTENT)));
+
+        HttpServletRequest wrapped = DecompressingRequestWrapper.wrapIfCompressed(servletRequest, 1024);
+
+        assertArrayEquals(CONTENT, IOUtils.toByteArray(wrapped.getInputStream()));
+        assertNull("Content-Encoding should be hidden from handlers", wrapped.getHeader("Content-Encoding"));
+        assertEquals(-1, wrapped.getContentLength());
+    }
+
+    @Test
+    public void testGetInputStream_whenDeflate_thenBodyIsInflated() throws Exception {
+        when(servletRequest.getHeader("Content-Encoding")).thenReturn("deflate");
+        when(servletRequest.getInputStream()).thenReturn(servletInputStream(deflate(CONTENT)));
+
+        HttpServletRequest wrapped = DecompressingRequestWrapper.wrapIfCompressed(servletRequest, 1024);
+
+        assertArrayEquals(CONTENT, IOUtils.toByteArray(wrapped.getInputStream()));
+    }
+
+    @Test(expected = PayloadTooLargeException.class)
+    public void testGetInputStream_whenInflatedBodyExceedsLimit_thenPayloadTooLarge() throws Exception {
+        when(servletRequest.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(servletRequest.getInputStream()).thenReturn(servletInputStream(gzip(new byte[64 * 1024])));
+
+        HttpServletRequest wrapped = DecompressingRequestWrapper.wrapIfCompressed(servletRequest, 1024);
+
+        IOUtils.toByteArray(wrapped.getInputStream());
+    }
+
+    @Test(expected = MalformedBodyException.class)
+    public void testGetInputStream_whenNotGzip_thenBadRequest() throws Exception {
+        when(servletRequest.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(servletRequest.getInputStream()).thenReturn(servletInputStream(CONTENT));
+
+        HttpServletRequest wrapped = DecompressingRequestWrapper.wrapIfCompressed(servletRequest, 1024);
+
+        IOUtils.toByteArray(wrapped.getInputStream());
+    }
+
+    @Test
+    public void testGetInputStream_whenTruncatedOrCorrupt_thenBadRequest() throws Exception {
+        byte[] gzipped = gzip(CONTENT);
+
+        byte[] corrupt = gzipped.clone();
+        corrupt[12] ^= 0xFF;
+
+        for (byte[] body : new byte[][] {Arrays.copyOf(gzipped, gzipped.length / 2), corrupt}) {
+            when(servletRequest.getHeader("Content-Encoding")).thenReturn("gzip");
+            when(servletRequest.getInputStream()).thenReturn(servletInputStream(body));
+
+            HttpServletRequest wrapped = DecompressingRequestWrapper.wrapIfCompressed(servletRequest, 1024);
+
+            try {
+                IOUtils.toByteArray(wrapped.getInputStream());
+                fail("A malformed body should halt the request");
+            } catch (MalformedBodyException e) {
+                assertEquals(400, e.statusCode());
+            }
+        }
+    }
+
+    @Test
+    public void testGetInputStream_whenCalledAgain_thenSameStream() throws Exception {
+        when(servletRequest.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(servletRequest.getInputStream()).thenReturn(servletInputStream(gzip(CONTENT)));
+
+        HttpServletRequest wrapped = DecompressingRequestWrapper.wrapIfCompressed(servletRequest, 1024);
+
+        assertSame(wrapped.getInputStream(), wrapped.getInputStream());
+        assertSame(wrapped.getReader(), wrapped.getReader());
+    }
+
+    @Test
+    public void testBody_whenReadByAnotherRequest_thenEmptyInsteadOfMalformed() throws Exception {
+        when(servletRequest.getHeader("Content-Encoding")).thenReturn("gzip");
+        when(servletRequest.getInputStream()).thenReturn(servletInputStream(gzip(CONTENT)));
+
+        HttpServletRequest wrapped = DecompressingRequestWrapper.wrapIfCompressed(servletRequest, 1024);
+        RouteMatch match = new RouteMatch(null, "/", "/", "text/html");
+
+        // e.g. two before filters, each with a request of its own
+        assertEquals(new String(CONTENT), RequestResponseFactory.create(match, wrapped).body());
+        assertEquals("", RequestResponseFactory.create(match, wrapped).body());
+    }
+
+    @Test
+    public void testBody_whenMalformed_thenRequestIsHalted() throws Exception {
+        when(servletRequest.getHeader("Content-Encoding")).thenReturn("deflate");
+        when(servletRequest.getInputStream()).thenReturn(servletInputStream(new byte[] {0x78, (byte) 0x9C, 1, 2, 3}));
+
+        Request request = RequestResponseFactory.create(new RouteMatch(null, "/", "/", "text/html"),
+                                                        DecompressingRequestWrapper.wrapIfCompressed(servletRequest,
+                                                                                                     1024));
+
+        try {
+            request.body();
+            fail("The route should not get a body");
+        } catch (MalformedBodyException e) {
+            assertEquals(400, e.statusCode());
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out)) {
+            deflate.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static ServletInputStream servletInputStream(byte[] bytes) {
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+
+        return new ServletInputStream() {
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+            }
+        };
+    }
+
+}
@@ -0,0 +1,29 @@
+package spark.http.matching;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NotFoundLogTest {
+
+    @Test
+    public void testLog_whenLoggedWithinInterval_thenNotLoggedAgain() {
+        NotFoundLog log = NotFoundLog.create(LoggerFactory.getLogger(NotFoundLogTest.class), 60_000);
+
+        assertTrue(log.log("/first"));
+        assertFalse(log.log("/second"));
+        assertFalse(log.log("/third"));
+    }
+
+    @Test
+    public void testLog_whenIntervalElapsed_thenLoggedAgain() throws Exception {
+        NotFoundLog log = NotFoundLog.create(LoggerFactory.getLogger(NotFoundLogTest.class), 10);
+
+        assertTrue(log.log("/first"));
+        Thread.sleep(20);
+        assertTrue(log.log("/second"));
+    }
+
+}
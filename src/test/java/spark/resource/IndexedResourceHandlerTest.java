@@ -0,0 +1,80 @@
+package spark.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedResourceHandlerTest {
+
+    private Path folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("spark-index");
+        Files.createDirectories(folder.resolve("css"));
+        Files.createFile(folder.resolve("css/site.css"));
+        Files.createDirectories(folder.resolve("docs"));
+        Files.createFile(folder.resolve("docs/index.html"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testGetResource_thenResolvedFromIndexWithWelcomeFiles() throws Exception {
+        IndexedResourceHandler handler = new IndexedResourceHandler(
+                new ExternalResourceHandler(folder.toString(), "index.html"), folder.toFile(), false, true);
+
+        assertEquals(4, handler.size());
+        assertTrue(handler.getResource("/css/site.css").getFile().getPath().endsWith("site.css"));
+        assertTrue(handler.getResource("/docs/").getFile().getPath().endsWith("index.html"));
+        assertTrue(handler.getResource("/docs").getFile().getPath().endsWith("index.html"));
+        assertNotNull(handler.getResource("/docs/../css/site.css"));
+        assertNull(handler.getResource("/css/"));
+        assertNull(handler.getResource("/../etc/passwd"));
+    }
+
+    @Test
+    public void testGetResource_whenComplete_thenNewFilesAreNotFound() throws Exception {
+        IndexedResourceHandler handler = new IndexedResourceHandler(
+                new ExternalResourceHandler(folder.toString(), "index.html"), folder.toFile(), false, true);
+
+        Files.createFile(folder.resolve("new.txt"));
+
+        assertNull(handler.getResource("/new.txt"));
+    }
+
+    @Test
+    public void testGetResource_whenModifiable_thenNotFoundPathsAreLookedUpAgainAfterASecond() throws Exception {
+        IndexedResourceHandler handler = new IndexedResourceHandler(
+                new ExternalResourceHandler(folder.toString(), "index.html"), folder.toFile(), true, true);
+
+        assertNull(handler.getResource("/new.txt"));
+
+        Files.createFile(folder.resolve("new.txt"));
+        assertNull(handler.getResource("/new.txt"));
+
+        Thread.sleep(1100);
+        assertNotNull(handler.getResource("/new.txt"));
+
+        Files.delete(folder.resolve("css/site.css"));
+        assertNull(handler.getResource("/css/site.css"));
+    }
+
+}
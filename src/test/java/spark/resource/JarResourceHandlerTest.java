@@ -0,0 +1,123 @@
+package spark.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import spark.http.matching.InMemoryRequest;
+import spark.utils.IOUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class JarResourceHandlerTest {
+
+    private Path jar;
+    private URL location;
+
+    @Before
+    public void setUp() throws IOException {
+        jar = Files.createTempFile("spark-static", ".jar");
+
+        try (JarOutputStream stream = new JarOutputStream(Files.newOutputStream(jar))) {
+            // no entries for the parent directories of these files
+            put(stream, "public/index.html", "<html>home</html>");
+            put(stream, "public/css/site.css", "body { color: red; }");
+            put(stream, "public/docs/index.html", "<html>docs</html>");
+            stream.putNextEntry(new JarEntry("public/empty/"));
+            stream.closeEntry();
+            put(stream, "other/secret.txt", "secret");
+        }
+        location = new URL("jar:" + jar.toUri() + "!/public");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        URL root = new URL("jar:" + jar.toUri() + "!/");
+        ((JarURLConnection) root.openConnection()).getJarFile().close();
+        Files.deleteIfExists(jar);
+    }
+
+    @Test
+    public void testGetResourcePath_thenResolvedFromIndex() throws Exception {
+        JarResourceHandler handler = new JarResourceHandler("/public", "index.html", location, true);
+
+        assertEquals("/public/css/site.css", path(handler, "/css/site.css"));
+        assertEquals("/public/index.html", path(handler, "/"));
+        assertEquals("/public/docs/index.html", path(handler, "/docs/"));
+        assertEquals("/public/docs/index.html", path(handler, "/docs"));
+        assertEquals("/public/css/site.css", path(handler, "/docs/../css/site.css"));
+
+        assertNull(path(handler, "/css/missing.css"));
+        assertNull(path(handler, "/css/"));
+        assertNull(path(handler, "/empty/"));
+        assertNull(path(handler, "/secret.txt"));
+        assertNull(path(handler, "/../other/secret.txt"));
+    }
+
+    @Test
+    public void testGetResourcePath_whenNotExclusive_thenMissingPathsAreLoadedFromTheClassPath() throws Exception {
+        JarResourceHandler handler = new JarResourceHandler("/public", "index.html", location, false);
+
+        assertEquals("/public/css/site.css", path(handler, "/css/site.css"));
+
+        // only in the test resources, another class path entry holding '/public'
+        assertEquals("/public/page.html", path(handler, "/page.html"));
+        try (InputStream stream = handler.getResourceStream("/public/page.html")) {
+            assertEquals("<html><body>Hello Static Files World!</body></html>",
+                         new String(IOUtils.toByteArray(stream), StandardCharsets.UTF_8));
+        }
+        assertNull(handler.getResourceStream("/public/css/missing.css"));
+    }
+
+    @Test
+    public void testGetResourceStream_whenInflated_thenServedFromMemory() throws Exception {
+        JarResourceHandler handler = new JarResourceHandler("/public", "index.html", location, true);
+
+        JarResourceHandler.Entry entry = handler.getEntry("/public/css/site.css");
+        assertNotNull(entry);
+        assertEquals(20, entry.size());
+        assertNull(entry.inflated());
+
+        // only the entries up to 18 bytes
+        assertEquals(34, handler.inflate(18, 1000));
+        assertNull(entry.inflated());
+        assertArrayEquals("<html>docs</html>".getBytes(StandardCharsets.UTF_8),
+                          handler.getEntry("/public/docs/index.html").inflated());
+
+        // and up to the total size
+        assertEquals(34, handler.inflate(100, 40));
+        assertNull(entry.inflated());
+
+        try (InputStream stream = handler.getResourceStream("/public/css/site.css")) {
+            assertEquals("body { color: red; }", new String(IOUtils.toByteArray(stream), StandardCharsets.UTF_8));
+        }
+        try (InputStream stream = handler.getResourceStream("/public/docs/index.html")) {
+            assertEquals("<html>docs</html>", new String(IOUtils.toByteArray(stream), StandardCharsets.UTF_8));
+        }
+        assertNull(handler.getResourceStream("/public/css/site.css.gz"));
+    }
+
+    private static String path(JarResourceHandler handler, String path) throws Exception {
+        return handler.getResourcePath(InMemoryRequest.create("GET", path));
+    }
+
+    private static void put(JarOutputStream stream, String name, String content) throws IOException {
+        stream.putNextEntry(new JarEntry(name));
+        stream.write(content.getBytes(StandardCharsets.UTF_8));
+        stream.closeEntry();
+    }
+
+}
@@ -6,7 +6,11 @@ import java.util.List;
 import org.junit.Test;
 import org.powermock.reflect.Whitebox;
 
+import spark.utils.SparkUtils;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class RoutesTest {
@@ -51,4 +55,63 @@ public class RoutesTest {
         assertEquals("Should return 0 because test is not a valid http method, so the route is not added to the list",
                      routes.size(), 0);
     }
+
+    @Test
+    public void testFindOption_whenPathMatches_thenReturnOption() {
+        Routes routes = Routes.create();
+        routes.addOption(HttpMethod.get, "/users/:id", "option");
+
+        assertEquals("option", routes.findOption(HttpMethod.get, "/users/42", String.class));
+        assertNull(routes.findOption(HttpMethod.post, "/users/42", String.class));
+        assertNull(routes.findOption(HttpMethod.get, "/books/42", String.class));
+        assertNull(routes.findOption(HttpMethod.get, "/users/42", Integer.class));
+    }
+
+    @Test
+    public void testFindOption_whenAddedForAllPaths_thenReturnOptionForAnyPath() {
+        Routes routes = Routes.create();
+        routes.addOption(HttpMethod.get, SparkUtils.ALL_PATHS, "option");
+
+        assertEquals("option", routes.findOption(HttpMethod.get, "/", String.class));
+        assertEquals("option", routes.findOption(HttpMethod.get, "/a/b/c", String.class));
+    }
+
+    @Test
+    public void testFindExact_thenOnlyExactPathMatchesAndAddingReplaces() {
+        Routes routes = Routes.create();
+        routes.addExact("/robots.txt", "first");
+        routes.addExact("/robots.txt", "second");
+
+        assertEquals("second", routes.findExact("/robots.txt"));
+        assertNull(routes.findExact("/robots.txt/"));
+        assertNull(routes.findExact(null));
+
+        routes.removeExact("/robots.txt");
+        assertNull(routes.findExact("/robots.txt"));
+    }
+
+    @Test
+    public void testMayMatch_thenOnlyPathsWithAMappedFirstSegmentMayMatch() {
+        Routes routes = Routes.create();
+        routes.add("get '/api/users/:id'", "*/*", "users");
+        routes.add("before '/admin/*'", "*/*", "auth");
+        routes.addOption(HttpMethod.post, "/batch", "batch");
+        routes.addOption(HttpMethod.get, SparkUtils.ALL_PATHS, "conditional");
+
+        assertTrue(routes.mayMatch("/api/users/1"));
+        assertTrue(routes.mayMatch("/admin/"));
+        assertTrue(routes.mayMatch("/batch"));
+        assertTrue(routes.mayMatch("/"));
+        assertFalse(routes.mayMatch("/wp-login.php"));
+        assertFalse(routes.mayMatch("/API/users/1"));
+
+        routes.add("get '/:page'", "*/*", "page");
+        assertTrue(routes.mayMatch("/wp-login.php"));
+
+        routes.clear();
+        assertFalse(routes.mayMatch("/api/users/1"));
+
+        routes.add("after '" + SparkUtils.ALL_PATHS + "'", "*/*", "after");
+        assertTrue(routes.mayMatch("/wp-login.php"));
+    }
 }
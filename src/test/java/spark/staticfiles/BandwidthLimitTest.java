@@ -0,0 +1,77 @@
+package spark.staticfiles;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BandwidthLimitTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testTokenBucket_thenRefilledAtItsRateUpToATenthOfASecond() {
+        TokenBucket bucket = TokenBucket.create(1000, 0);
+
+        assertEquals(100, bucket.capacity());
+        assertEquals(100, bucket.take(500, 1, 0));
+        assertEquals(0, bucket.take(1, 1, 0));
+        assertEquals(MILLIS, bucket.nanosUntilAvailable(1, 0));
+        assertEquals(20 * MILLIS, bucket.nanosUntilAvailable(20, 0));
+
+        // not before the minimum is available
+        assertEquals(0, bucket.take(500, 60, 50 * MILLIS));
+        assertEquals(50, bucket.take(500, 1, 50 * MILLIS));
+
+        bucket.giveBack(20);
+        assertEquals(20, bucket.take(500, 1, 50 * MILLIS));
+
+        // never more than its capacity
+        assertEquals(100, bucket.take(500, 1, 10_000 * MILLIS));
+    }
+
+    @Test
+    public void testAcquire_whenTotalLimited_thenSharedByTheDownloads() {
+        BandwidthLimit limit = BandwidthLimit.create().total(1_000_000).minimumSize(1000);
+
+        assertFalse(limit.appliesTo(999));
+        assertTrue(limit.appliesTo(1000));
+
+        try (BandwidthLimit.Throttle first = limit.open();
+             BandwidthLimit.Throttle second = limit.open()) {
+            long now = System.nanoTime();
+
+            assertEquals(50_000, first.acquire(64 * 1024, now));
+            assertEquals(50_000, second.acquire(64 * 1024, now));
+
+            // until the total bucket has a chunk again
+            assertEquals(0, first.acquire(64 * 1024, now));
+            assertEquals(TimeUnit.MICROSECONDS.toNanos(8192), first.pauseNanos(now));
+        }
+
+        assertEquals(2, limit.throttledResponses());
+        assertEquals(100_000, limit.throttledBytes());
+        assertEquals(1, limit.pauses());
+    }
+
+    @Test
+    public void testAcquire_whenPerConnectionLimited_thenEachDownloadHasItsOwnRate() {
+        BandwidthLimit limit = BandwidthLimit.create().perConnection(100_000);
+
+        try (BandwidthLimit.Throttle first = limit.open();
+             BandwidthLimit.Throttle second = limit.open()) {
+            long now = System.nanoTime();
+
+            assertEquals(10_000, first.acquire(64 * 1024, now));
+            assertEquals(10_000, second.acquire(64 * 1024, now));
+            assertEquals(0, first.acquire(64 * 1024, now));
+        }
+
+        assertEquals(1, limit.pauses());
+        assertFalse(BandwidthLimit.create().appliesTo(Long.MAX_VALUE));
+    }
+
+}
@@ -0,0 +1,106 @@
+package spark.staticfiles;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import spark.Service;
+import spark.util.SparkTestUtil;
+
+import static spark.Service.ignite;
+
+/**
+ * Tests sending static files through Jetty without copying them, see {@link FileTransfer}.
+ */
+public class FileTransferTest {
+
+    private static final String PAGE = "<html><body>Hello Static Files World!</body></html>";
+
+    private static Service http;
+    private static Path folder;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        folder = Files.createTempDirectory("spark-transfer");
+
+        http = ignite();
+        http.staticFiles.location("/public");
+        http.staticFiles.externalLocation(folder.toString());
+        http.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        http.stop();
+
+        for (File file : folder.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(folder);
+    }
+
+    @Test
+    public void testSend_thenWholeFileIsSent() throws Exception {
+        SparkTestUtil.UrlResponse response = get("/page.html", null);
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals(PAGE, response.body);
+        Assert.assertEquals(String.valueOf(PAGE.length()), response.headers.get("Content-Length"));
+    }
+
+    @Test
+    public void testSend_whenRangeRequested_thenOnlyTheRangeIsSent() throws Exception {
+        SparkTestUtil.UrlResponse response = get("/page.html", "bytes=6-11");
+
+        Assert.assertEquals(206, response.status);
+        Assert.assertEquals("<body>", response.body);
+        Assert.assertEquals("bytes 6-11/" + PAGE.length(), response.headers.get("Content-Range"));
+    }
+
+    @Test
+    public void testSend_whenExternalFileIsModified_thenItsCurrentContentIsSent() throws Exception {
+        Path file = folder.resolve("transfer.bin");
+
+        Files.write(file, repeat("0123456789", 10_000).getBytes(StandardCharsets.US_ASCII));
+        Assert.assertEquals(100_000, get("/transfer.bin", null).body.length());
+
+        // truncated, as another process could do while the file is sent
+        Files.write(file, "short".getBytes(StandardCharsets.US_ASCII));
+        SparkTestUtil.UrlResponse response = get("/transfer.bin", null);
+
+        Assert.assertEquals(200, response.status);
+        Assert.assertEquals("short", response.body);
+
+        response = get("/transfer.bin", "bytes=1-3");
+
+        Assert.assertEquals(206, response.status);
+        Assert.assertEquals("hor", response.body);
+    }
+
+    private static SparkTestUtil.UrlResponse get(String path, String range) throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        // a compressed response would be written by the output stream
+        headers.put("Accept-Encoding", "identity");
+        if (range != null) {
+            headers.put("Range", range);
+        }
+        return new SparkTestUtil(4567).doMethod("GET", path, null, false, "*/*", headers);
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder(value.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+}
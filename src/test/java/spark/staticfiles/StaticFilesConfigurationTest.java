@@ -0,0 +1,642 @@
+package spark.staticfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.text.SimpleDateFormat;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import spark.http.matching.InMemoryRequest;
+import spark.http.matching.InMemoryResponse;
+import spark.utils.IOUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StaticFilesConfigurationTest {
+
+    private Path folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("spark-static");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testMayContain_whenNotConfigured_thenFalse() {
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+
+        assertFalse(staticFiles.mayContain(InMemoryRequest.create("GET", "/index.html")));
+    }
+
+    @Test
+    public void testMayContain_thenOnlyPathsStartingWithARootEntryMayBeStaticFiles() throws Exception {
+        Files.createFile(Files.createDirectory(folder.resolve("css")).resolve("site.css"));
+        Files.createFile(folder.resolve("robots.txt"));
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+
+        assertTrue(staticFiles.mayContain(InMemoryRequest.create("GET", "/css/site.css")));
+        assertTrue(staticFiles.mayContain(InMemoryRequest.create("GET", "/css/missing.css")));
+        assertTrue(staticFiles.mayContain(InMemoryRequest.create("GET", "/ROBOTS.TXT")));
+        assertTrue(staticFiles.mayContain(InMemoryRequest.create("GET", "/")));
+        assertTrue(staticFiles.mayContain(InMemoryRequest.create("GET", "/probe/../css/site.css")));
+
+        assertFalse(staticFiles.mayContain(InMemoryRequest.create("GET", "/wp-login.php")));
+        assertFalse(staticFiles.mayContain(InMemoryRequest.create("GET", "/js/app.js")));
+
+        staticFiles.clear();
+        assertFalse(staticFiles.mayContain(InMemoryRequest.create("GET", "/css/site.css")));
+    }
+
+    @Test
+    public void testMayContain_whenFolderInSeveralClassPathEntries_thenEntriesOfAllOfThemMayBeStaticFiles()
+            throws Exception {
+        Path first = Files.createDirectories(folder.resolve("first/public/css"));
+        Path second = Files.createDirectories(folder.resolve("second/public/js"));
+
+        Thread thread = Thread.currentThread();
+        ClassLoader classLoader = thread.getContextClassLoader();
+
+        try (URLClassLoader classPath = new URLClassLoader(new URL[] {
+                folder.resolve("first").toUri().toURL(), folder.resolve("second").toUri().toURL()}, null)) {
+            thread.setContextClassLoader(classPath);
+
+            StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+            staticFiles.configure("/public");
+
+            assertTrue(staticFiles.mayContain(InMemoryRequest.create("GET", "/css/site.css")));
+            assertTrue(staticFiles.mayContain(InMemoryRequest.create("GET", "/js/app.js")));
+            assertFalse(staticFiles.mayContain(InMemoryRequest.create("GET", "/wp-login.php")));
+        } finally {
+            thread.setContextClassLoader(classLoader);
+        }
+    }
+
+    @Test
+    public void testConsume_whenContentCached_thenServedFromMemoryUntilModified() throws Exception {
+        Path css = Files.write(folder.resolve("site.css"), "body { color: red; }".getBytes(StandardCharsets.UTF_8));
+        // older than the modification check interval, so the cached content is trusted
+        Files.setLastModifiedTime(css, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.enableContentCache(1024, 512, true, true);
+
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css"), response));
+        assertEquals("body { color: red; }", new String(response.body(), StandardCharsets.UTF_8));
+        assertEquals("20", response.getHeader("Content-Length"));
+
+        // the cached content is served while the file is unmodified
+        Files.write(css, "body { color: blue; }".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(css, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css"), response));
+        assertEquals("body { color: red; }", new String(response.body(), StandardCharsets.UTF_8));
+
+        // and loaded again once the modification is checked
+        Thread.sleep(1100);
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css"), response));
+        assertEquals("body { color: blue; }", new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testConsume_whenContentCachedAndGzipAccepted_thenCompressedOnce() throws Exception {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            script.append("console.log('static content');\n");
+        }
+        byte[] bytes = script.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(folder.resolve("app.js"), bytes);
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.enableContentCache(64 * 1024, 64 * 1024, true, false);
+
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/app.js").header("Accept-Encoding", "gzip"),
+                                       response));
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            assertArrayEquals(bytes, IOUtils.toByteArray(gzip));
+        }
+    }
+
+    @Test
+    public void testConsume_whenLargerThanMaximumEntrySize_thenStreamed() throws Exception {
+        Files.write(folder.resolve("large.txt"), new byte[2048]);
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.enableContentCache(64 * 1024, 1024, true, true);
+
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/large.txt"), response));
+        assertEquals(2048, response.body().length);
+    }
+
+    @Test
+    public void testConsume_whenPrefixesIncludedAndExcluded_thenOnlyMatchingPathsAreLookedUp() throws Exception {
+        Files.createFile(Files.createDirectory(folder.resolve("assets")).resolve("app.js"));
+        Files.createFile(Files.createDirectory(folder.resolve("api")).resolve("users"));
+        Files.createFile(Files.createDirectory(folder.resolve("private")).resolve("key.txt"));
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.include("/assets/", "/private/");
+        staticFiles.exclude("/private/");
+
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/assets/app.js"), InMemoryResponse.create()));
+        assertFalse(staticFiles.consume(InMemoryRequest.create("GET", "/api/users"), InMemoryResponse.create()));
+        assertFalse(staticFiles.consume(InMemoryRequest.create("GET", "/private/key.txt"),
+                                        InMemoryResponse.create()));
+        assertFalse(staticFiles.consume(InMemoryRequest.create("GET", "/assets/../private/key.txt"),
+                                        InMemoryResponse.create()));
+
+        assertTrue(staticFiles.mayContain(InMemoryRequest.create("GET", "/assets/app.js")));
+        assertFalse(staticFiles.mayContain(InMemoryRequest.create("GET", "/api/users")));
+    }
+
+    @Test
+    public void testConsume_whenRangeRequested_thenPartialContent() throws Exception {
+        Files.write(folder.resolve("video.bin"), "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8));
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/video.bin").header("Range", "bytes=15-"),
+                                       response));
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 15-19/20", response.getHeader("Content-Range"));
+        assertEquals("5", response.getHeader("Content-Length"));
+        assertEquals("fghij", new String(response.body(), StandardCharsets.UTF_8));
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/video.bin").header("Range", "bytes=20-"),
+                                       response));
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader("Content-Range"));
+
+        // a range of a modified file is not sent
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/video.bin")
+                                                      .header("Range", "bytes=0-1")
+                                                      .header("If-Range", "Thu, 01 Jan 1970 00:00:10 GMT"),
+                                       response));
+        assertEquals(200, response.getStatus());
+        assertEquals(20, response.body().length);
+    }
+
+    @Test
+    public void testConsume_whenSeveralRangesOfCachedContent_thenMultipartByteRanges() throws Exception {
+        Files.write(folder.resolve("data.txt"), "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8));
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.enableContentCache(1024, 1024, true, true);
+
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/data.txt")
+                                                      .header("Range", "bytes=0-1,-2")
+                                                      .header("Accept-Encoding", "gzip"),
+                                       response));
+        assertEquals(206, response.getStatus());
+        assertEquals(null, response.getHeader("Content-Encoding"));
+
+        String contentType = response.getContentType();
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+        String body = new String(response.body(), StandardCharsets.ISO_8859_1);
+        assertEquals("--" + boundary + "\r\n"
+                             + "Content-Type: text/plain\r\n"
+                             + "Content-Range: bytes 0-1/20\r\n\r\n"
+                             + "01\r\n"
+                             + "--" + boundary + "\r\n"
+                             + "Content-Type: text/plain\r\n"
+                             + "Content-Range: bytes 18-19/20\r\n\r\n"
+                             + "ij\r\n"
+                             + "--" + boundary + "--\r\n",
+                     body);
+        assertEquals(String.valueOf(response.body().length), response.getHeader("Content-Length"));
+    }
+
+    @Test
+    public void testConsume_whenClientCopyIsUpToDate_thenNotModified() throws Exception {
+        Files.write(folder.resolve("site.css"), "body { color: red; }".getBytes(StandardCharsets.UTF_8));
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css"), response));
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        assertTrue(etag.startsWith("W/\""));
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css").header("If-None-Match", etag),
+                                       response));
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.body().length);
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css")
+                                                      .header("If-Modified-Since", lastModified),
+                                       response));
+        assertEquals(304, response.getStatus());
+
+        // the cached content has an entity tag of its own
+        staticFiles.enableContentCache(1024, 1024, true, true);
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css"), response));
+        String contentEtag = response.getHeader("ETag");
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css").header("If-None-Match", contentEtag),
+                                       response));
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    public void testConsume_whenExpireTimeSet_thenExpiresIsRelativeToTheResponse() throws Exception {
+        Files.write(folder.resolve("site.css"), "body { color: red; }".getBytes(StandardCharsets.UTF_8));
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.setExpireTimeSeconds(600);
+
+        Thread.sleep(1100);
+
+        InMemoryResponse response = InMemoryResponse.create();
+        long before = System.currentTimeMillis() / 1000 * 1000;
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css"), response));
+
+        assertEquals("private, max-age=600", response.getHeader("Cache-Control"));
+        long expires = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US)
+                .parse(response.getHeader("Expires")).getTime();
+        assertTrue(expires >= before + 600_000);
+    }
+
+    @Test
+    public void testConsume_whenPrecompressedSiblingExists_thenItIsSent() throws Exception {
+        Path script = Files.write(folder.resolve("app.js"), "console.log('static content');".getBytes(StandardCharsets.UTF_8));
+        byte[] precompressed = StaticContentCache.compress(new String(new char[100]).replace("\0", "x").getBytes());
+        Files.write(folder.resolve("app.js.gz"), precompressed);
+        Files.setLastModifiedTime(script, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/app.js").header("Accept-Encoding", "gzip"),
+                                       response));
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertArrayEquals(precompressed, response.body());
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/app.js"), response));
+        assertEquals(null, response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals("console.log('static content');", new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testConsume_whenCompressedFormat_thenNotCompressedAgain() throws Exception {
+        Files.write(folder.resolve("image.png"), new byte[4096]);
+        Files.write(folder.resolve("data.txt"), new byte[4096]);
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/image.png").header("Accept-Encoding", "gzip"),
+                                       response));
+        assertEquals(null, response.getHeader("Content-Encoding"));
+        assertEquals(null, response.getHeader("Vary"));
+        assertEquals(4096, response.body().length);
+
+        // compressed once, then sent from memory
+        for (int i = 0; i < 2; i++) {
+            response = InMemoryResponse.create();
+            assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/data.txt").header("Accept-Encoding", "gzip"),
+                                           response));
+            assertEquals("gzip", response.getHeader("Content-Encoding"));
+            assertEquals(String.valueOf(response.body().length), response.getHeader("Content-Length"));
+            try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+                assertArrayEquals(new byte[4096], IOUtils.toByteArray(gzip));
+            }
+        }
+    }
+
+    @Test
+    public void testConsume_thenContentTypeFromExtension() throws Exception {
+        Files.write(folder.resolve("site.css"), "body { color: red; }".getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.resolve("data.csv"), "a,b".getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.resolve("README"), "read me".getBytes(StandardCharsets.UTF_8));
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.registerMimeType("CSV", "text/x-comma-separated-values");
+
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css"), response));
+        assertEquals("text/css", response.getContentType());
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/data.csv"), response));
+        assertEquals("text/x-comma-separated-values", response.getContentType());
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/README"), response));
+        assertEquals(null, response.getContentType());
+
+        // and cached with the content
+        staticFiles.enableContentCache(1024, 1024, true, true);
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/site.css"), response));
+        assertEquals("text/css", response.getContentType());
+    }
+
+    @Test
+    public void testConsume_whenAsyncTransferEnabled_thenLargeFilesWrittenWhenTheClientIsReady() throws Exception {
+        byte[] bytes = new byte[200_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        Files.write(folder.resolve("release.bin"), bytes);
+        Files.write(folder.resolve("small.bin"), new byte[1000]);
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.enableAsyncTransfer(100_000);
+
+        AsyncExchange exchange = new AsyncExchange(InMemoryRequest.create("GET", "/release.bin"));
+        assertTrue(staticFiles.consume(exchange.request, exchange.response));
+        assertEquals("200000", exchange.inMemoryResponse.getHeader("Content-Length"));
+        assertEquals(0, exchange.body.size());
+
+        // a chunk whenever the client took the previous one
+        int writes = 0;
+        while (!exchange.completed) {
+            exchange.writePossible();
+            writes++;
+        }
+        assertTrue(writes > 2);
+        assertArrayEquals(bytes, exchange.body.toByteArray());
+
+        // smaller files are sent right away
+        exchange = new AsyncExchange(InMemoryRequest.create("GET", "/small.bin"));
+        assertTrue(staticFiles.consume(exchange.request, exchange.response));
+        assertNull(exchange.writeListener);
+        assertEquals(1000, exchange.body.size());
+    }
+
+    @Test
+    public void testConsume_whenAsyncTransferEnabled_thenLargeFilesAreSentAsTheyAre() throws Exception {
+        byte[] bytes = new byte[200_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+        Files.write(folder.resolve("release.txt"), bytes);
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.enableAsyncTransfer(100_000);
+
+        // not compressed while sent
+        AsyncExchange exchange = new AsyncExchange(InMemoryRequest.create("GET", "/release.txt")
+                                                           .header("Accept-Encoding", "gzip"));
+        assertTrue(staticFiles.consume(exchange.request, exchange.response));
+        assertNull(exchange.inMemoryResponse.getHeader("Content-Encoding"));
+        while (!exchange.completed) {
+            exchange.writePossible();
+        }
+        assertArrayEquals(bytes, exchange.body.toByteArray());
+
+        // the whole file instead of several ranges
+        exchange = new AsyncExchange(InMemoryRequest.create("GET", "/release.txt")
+                                             .header("Range", "bytes=0-9, 100-109"));
+        assertTrue(staticFiles.consume(exchange.request, exchange.response));
+        assertEquals(200, exchange.inMemoryResponse.getStatus());
+        assertEquals("200000", exchange.inMemoryResponse.getHeader("Content-Length"));
+        while (!exchange.completed) {
+            exchange.writePossible();
+        }
+        assertArrayEquals(bytes, exchange.body.toByteArray());
+
+        // a single range is sent in chunks too
+        exchange = new AsyncExchange(InMemoryRequest.create("GET", "/release.txt")
+                                             .header("Range", "bytes=0-149999"));
+        assertTrue(staticFiles.consume(exchange.request, exchange.response));
+        assertEquals(206, exchange.inMemoryResponse.getStatus());
+        assertEquals(0, exchange.body.size());
+    }
+
+    @Test
+    public void testConsume_whenBandwidthLimited_thenLargeFilesArePaced() throws Exception {
+        Files.write(folder.resolve("release.bin"), new byte[150_000]);
+        Files.write(folder.resolve("small.bin"), new byte[1000]);
+
+        BandwidthLimit limit = BandwidthLimit.create().perConnection(1_000_000).minimumSize(10_000);
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.setBandwidthLimit(limit);
+
+        // a tenth of a second of the rate right away, the rest at the rate
+        long start = System.nanoTime();
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/release.bin"), response));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+        assertEquals(150_000, response.body().length);
+        assertEquals("150000", response.getHeader("Content-Length"));
+
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/small.bin"), response));
+        assertEquals(1000, response.body().length);
+
+        assertEquals(1, limit.throttledResponses());
+        assertEquals(150_000, limit.throttledBytes());
+        assertTrue(limit.pauses() > 0);
+    }
+
+    @Test
+    public void testConsume_whenBandwidthLimited_thenLargeFilesAreSentAsTheyAreUnderTheLimit() throws Exception {
+        byte[] bytes = new byte[150_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+        Files.write(folder.resolve("release.txt"), bytes);
+
+        BandwidthLimit limit = BandwidthLimit.create().perConnection(10_000_000).minimumSize(10_000);
+
+        StaticFilesConfiguration staticFiles = StaticFilesConfiguration.create();
+        staticFiles.configureExternal(folder.toString());
+        staticFiles.setBandwidthLimit(limit);
+
+        // not compressed while sent
+        InMemoryResponse response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/release.txt").header("Accept-Encoding", "gzip"),
+                                       response));
+        assertNull(response.getHeader("Content-Encoding"));
+        assertArrayEquals(bytes, response.body());
+        assertEquals(150_000, limit.throttledBytes());
+
+        // the whole file instead of several ranges
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("GET", "/release.txt")
+                                               .header("Range", "bytes=0-9, 100-109"),
+                                       response));
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(bytes, response.body());
+        assertEquals(300_000, limit.throttledBytes());
+
+        // the headers only
+        response = InMemoryResponse.create();
+        assertTrue(staticFiles.consume(InMemoryRequest.create("HEAD", "/release.txt"), response));
+        assertEquals("150000", response.getHeader("Content-Length"));
+        assertEquals(0, response.body().length);
+        assertEquals(2, limit.throttledResponses());
+    }
+
+    @Test
+    public void testIsCompressible_thenFromContentType() {
+        assertTrue(CompressedVariants.isCompressible("text/html"));
+        assertTrue(CompressedVariants.isCompressible("application/javascript"));
+        assertTrue(CompressedVariants.isCompressible("image/svg+xml"));
+        assertTrue(CompressedVariants.isCompressible("application/ld+json; charset=utf-8"));
+        assertTrue(CompressedVariants.isCompressible(null));
+
+        assertFalse(CompressedVariants.isCompressible("image/png"));
+        assertFalse(CompressedVariants.isCompressible("video/mp4"));
+        assertFalse(CompressedVariants.isCompressible("application/zip"));
+        assertFalse(CompressedVariants.isCompressible("font/woff2"));
+    }
+
+    /**
+     * An exchange processed asynchronously, for a client that takes a chunk only when told so.
+     */
+    private static final class AsyncExchange {
+
+        private final InMemoryResponse inMemoryResponse = InMemoryResponse.create();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+
+        private WriteListener writeListener;
+        private boolean ready = true;
+        private boolean completed;
+
+        AsyncExchange(InMemoryRequest inMemoryRequest) {
+            AsyncContext asyncContext = (AsyncContext) Proxy.newProxyInstance(
+                    AsyncContext.class.getClassLoader(),
+                    new Class<?>[] {AsyncContext.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("complete")) {
+                            completed = true;
+                        }
+                        return null;
+                    });
+
+            ServletOutputStream outputStream = new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return ready;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                    writeListener = listener;
+                }
+
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    body.write(b, off, len);
+                    ready = false;
+                }
+            };
+
+            request = new HttpServletRequestWrapper(inMemoryRequest) {
+                @Override
+                public boolean isAsyncSupported() {
+                    return true;
+                }
+
+                @Override
+                public boolean isAsyncStarted() {
+                    return false;
+                }
+
+                @Override
+                public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+                    return asyncContext;
+                }
+            };
+            response = new HttpServletResponseWrapper(inMemoryResponse) {
+                @Override
+                public ServletOutputStream getOutputStream() {
+                    return outputStream;
+                }
+            };
+        }
+
+        void writePossible() throws IOException {
+            ready = true;
+            writeListener.onWritePossible();
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package spark.utils;
+
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveCompressionTest {
+
+    private AdaptiveCompression adaptiveCompression = AdaptiveCompression.create()
+            .normalLevel(Deflater.DEFAULT_COMPRESSION)
+            .reducedLevel(Deflater.BEST_SPEED)
+            .skipBelow(1024)
+            .thresholds(0.7, 0.9)
+            .sampleInterval(60 * 60 * 1000);
+
+    @Test
+    public void testLevel_whenNotUnderLoad_thenNormalLevel() {
+        adaptiveCompression.update(0.2);
+
+        assertEquals(AdaptiveCompression.Decision.NORMAL, adaptiveCompression.decision());
+        assertEquals(Deflater.DEFAULT_COMPRESSION, adaptiveCompression.level(100, true));
+    }
+
+    @Test
+    public void testLevel_whenBusy_thenReducedLevel() {
+        adaptiveCompression.update(0.75);
+
+        assertEquals(AdaptiveCompression.Decision.REDUCED, adaptiveCompression.decision());
+        assertEquals(Deflater.BEST_SPEED, adaptiveCompression.level(100, true));
+        assertEquals(1, adaptiveCompression.reducedResponses());
+    }
+
+    @Test
+    public void testLevel_whenSaturated_thenSkipMidSizedBodies() {
+        adaptiveCompression.update(0.95);
+
+        assertEquals(AdaptiveCompression.Decision.SATURATED, adaptiveCompression.decision());
+        assertEquals(AdaptiveCompression.NO_COMPRESSION, adaptiveCompression.level(100, true));
+        assertEquals(Deflater.BEST_SPEED, adaptiveCompression.level(100, false));
+        assertEquals(Deflater.BEST_SPEED, adaptiveCompression.level(-1, true));
+        assertEquals(Deflater.BEST_SPEED, adaptiveCompression.level(4096, true));
+        assertEquals(1, adaptiveCompression.skippedResponses());
+    }
+
+    @Test
+    public void testUpdate_whenLoadDropsSlightly_thenKeepDecision() {
+        adaptiveCompression.update(0.95);
+        adaptiveCompression.update(0.85);
+        assertEquals(AdaptiveCompression.Decision.SATURATED, adaptiveCompression.decision());
+
+        adaptiveCompression.update(0.65);
+        assertEquals(AdaptiveCompression.Decision.REDUCED, adaptiveCompression.decision());
+
+        adaptiveCompression.update(0.5);
+        assertEquals(AdaptiveCompression.Decision.NORMAL, adaptiveCompression.decision());
+    }
+
+    @Test
+    public void testLevel_whenWorkerPoolIsBusy_thenSaturated() {
+        AdaptiveCompression busy = AdaptiveCompression.create().sampleInterval(0).workerPool(() -> 1.0);
+
+        busy.level(100, true);
+
+        assertEquals(AdaptiveCompression.Decision.SATURATED, busy.decision());
+        assertEquals(1.0, busy.load(), 0.0);
+    }
+
+}
@@ -0,0 +1,72 @@
+package spark.utils;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConditionalUtilsTest {
+
+    @Test
+    public void testETag_whenSameBytes_thenSameTag() {
+        byte[] bytes = "{\"id\":1}".getBytes();
+
+        assertEquals(ConditionalUtils.etag(bytes, 0, bytes.length), ConditionalUtils.etag(bytes.clone(), 0, bytes.length));
+    }
+
+    @Test
+    public void testETag_whenDifferentBytes_thenDifferentTag() {
+        byte[] first = "{\"id\":1}".getBytes();
+        byte[] second = "{\"id\":2}".getBytes();
+
+        assertNotEquals(ConditionalUtils.etag(first, 0, first.length), ConditionalUtils.etag(second, 0, second.length));
+    }
+
+    @Test
+    public void testETag_isQuoted() {
+        String etag = ConditionalUtils.etag(new byte[0], 0, 0);
+
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+    }
+
+    @Test
+    public void testWeak() {
+        assertEquals("W/\"a\"", ConditionalUtils.weak("\"a\""));
+        assertEquals("W/\"a\"", ConditionalUtils.weak("W/\"a\""));
+        assertTrue(ConditionalUtils.matches("\"a\"", ConditionalUtils.weak("\"a\"")));
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue(ConditionalUtils.matches("\"a\"", "\"a\""));
+        assertTrue(ConditionalUtils.matches("\"x\", W/\"a\"", "\"a\""));
+        assertTrue(ConditionalUtils.matches("*", "\"a\""));
+        assertFalse(ConditionalUtils.matches("\"b\"", "\"a\""));
+        assertFalse(ConditionalUtils.matches(null, "\"a\""));
+    }
+
+    @Test
+    public void testIsNotModified_whenIfModifiedSinceIsNotBeforeLastModified_thenNotModified() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(10_000L);
+
+        assertTrue(ConditionalUtils.isNotModified(request, null, 10_500L));
+        assertFalse(ConditionalUtils.isNotModified(request, null, 11_000L));
+    }
+
+    @Test
+    public void testIsNotModified_whenIfNoneMatchIsPresent_thenIfModifiedSinceIsIgnored() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("If-None-Match")).thenReturn("\"b\"");
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(10_000L);
+
+        assertFalse(ConditionalUtils.isNotModified(request, "\"a\"", 10_000L));
+    }
+
+}
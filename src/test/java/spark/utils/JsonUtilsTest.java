@@ -0,0 +1,60 @@
+package spark.utils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonUtilsTest {
+
+    @Test
+    public void testParse_whenNested_thenMapsAndLists() {
+        Object json = JsonUtils.parse(" [{\"method\": \"GET\", \"n\": -12, \"d\": 1.5e2, \"ok\": true, \"x\": null,"
+                                              + " \"h\": {\"a\": \"b\"}}, []] ");
+
+        List<?> array = (List<?>) json;
+        Map<?, ?> object = (Map<?, ?>) array.get(0);
+
+        assertEquals(2, array.size());
+        assertEquals("GET", object.get("method"));
+        assertEquals(-12L, object.get("n"));
+        assertEquals(150.0, object.get("d"));
+        assertEquals(Boolean.TRUE, object.get("ok"));
+        assertNull(object.get("x"));
+        assertEquals("b", ((Map<?, ?>) object.get("h")).get("a"));
+    }
+
+    @Test
+    public void testParse_whenEscaped_thenUnescaped() {
+        assertEquals("a\"b\\c\n\u00e9", JsonUtils.parse("\"a\\\"b\\\\c\\n\\u00e9\""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_whenUnterminated_thenThrows() {
+        JsonUtils.parse("[{\"a\": 1}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_whenTrailingCharacters_thenThrows() {
+        JsonUtils.parse("{} x");
+    }
+
+    @Test
+    public void testToJson_thenRoundTrips() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        object.put("status", 200);
+        object.put("body", "line\n\"quoted\"\u0001");
+        object.put("values", Arrays.asList("a", "b"));
+
+        String json = JsonUtils.toJson(object);
+
+        assertEquals("{\"status\":200,\"body\":\"line\\n\\\"quoted\\\"\\u0001\",\"values\":[\"a\",\"b\"]}", json);
+        assertEquals(200L, ((Map<?, ?>) JsonUtils.parse(json)).get("status"));
+    }
+
+}
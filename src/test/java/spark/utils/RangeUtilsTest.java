@@ -0,0 +1,91 @@
+package spark.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import spark.http.matching.InMemoryRequest;
+import spark.utils.RangeUtils.ByteRange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RangeUtilsTest {
+
+    @Test
+    public void testParse_whenSingleRange_thenLastIsBoundedByLength() {
+        assertEquals(Collections.singletonList(new ByteRange(0, 99)), RangeUtils.parse("bytes=0-99", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(900, 999)), RangeUtils.parse("bytes=900-", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(900, 999)), RangeUtils.parse("bytes=900-5000", 1000));
+    }
+
+    @Test
+    public void testParse_whenSuffixRange_thenLastBytes() {
+        assertEquals(Collections.singletonList(new ByteRange(800, 999)), RangeUtils.parse("bytes=-200", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(0, 999)), RangeUtils.parse("bytes=-5000", 1000));
+    }
+
+    @Test
+    public void testParse_whenSeveralRanges_thenInRequestedOrder() {
+        assertEquals(Arrays.asList(new ByteRange(500, 599), new ByteRange(0, 9)),
+                     RangeUtils.parse("bytes=500-599, 0-9", 1000));
+    }
+
+    @Test
+    public void testParse_whenRangesOverlapOrAreAdjacent_thenCoalesced() {
+        assertEquals(Collections.singletonList(new ByteRange(0, 999)),
+                     RangeUtils.parse("bytes=0-999, 0-999, 0-999", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(0, 199)), RangeUtils.parse("bytes=100-199, 0-99", 1000));
+        assertEquals(Arrays.asList(new ByteRange(0, 149), new ByteRange(500, 599)),
+                     RangeUtils.parse("bytes=500-599, 100-149, 0-120", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(900, 999)), RangeUtils.parse("bytes=-100, 950-", 1000));
+    }
+
+    @Test
+    public void testParse_whenNoRangeIsSatisfiable_thenEmpty() {
+        assertTrue(RangeUtils.parse("bytes=1000-1999", 1000).isEmpty());
+        assertTrue(RangeUtils.parse("bytes=0-", 0).isEmpty());
+    }
+
+    @Test
+    public void testParse_whenInvalid_thenNull() {
+        assertNull(RangeUtils.parse(null, 1000));
+        assertNull(RangeUtils.parse("items=0-9", 1000));
+        assertNull(RangeUtils.parse("bytes=9-0", 1000));
+        assertNull(RangeUtils.parse("bytes=a-b", 1000));
+        assertNull(RangeUtils.parse("bytes=10", 1000));
+    }
+
+    @Test
+    public void testParse_whenTooManyRanges_thenNull() {
+        StringBuilder range = new StringBuilder("bytes=0-0");
+        for (int i = 1; i < 20; i++) {
+            range.append(',').append(i).append('-').append(i);
+        }
+        assertNull(RangeUtils.parse(range.toString(), 1000));
+    }
+
+    @Test
+    public void testIsIfRangeSatisfied() {
+        assertTrue(RangeUtils.isIfRangeSatisfied(InMemoryRequest.create("GET", "/"), "\"a\"", 0));
+
+        assertTrue(RangeUtils.isIfRangeSatisfied(InMemoryRequest.create("GET", "/").header("If-Range", "\"a\""),
+                                                 "\"a\"",
+                                                 -1));
+        assertFalse(RangeUtils.isIfRangeSatisfied(InMemoryRequest.create("GET", "/").header("If-Range", "\"b\""),
+                                                  "\"a\"",
+                                                  -1));
+        assertFalse(RangeUtils.isIfRangeSatisfied(InMemoryRequest.create("GET", "/").header("If-Range", "W/\"a\""),
+                                                  "W/\"a\"",
+                                                  -1));
+
+        InMemoryRequest dated = InMemoryRequest.create("GET", "/").header("If-Range", "Thu, 01 Jan 1970 00:00:10 GMT");
+        assertTrue(RangeUtils.isIfRangeSatisfied(dated, null, 10_500L));
+        assertFalse(RangeUtils.isIfRangeSatisfied(dated, null, 11_000L));
+        assertFalse(RangeUtils.isIfRangeSatisfied(dated, null, -1));
+    }
+
+}